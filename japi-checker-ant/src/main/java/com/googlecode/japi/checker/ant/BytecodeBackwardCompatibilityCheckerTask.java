@@ -19,6 +19,8 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.tools.ant.BuildException;
 import org.apache.tools.ant.Project;
@@ -27,6 +29,7 @@ import org.apache.tools.ant.types.Path;
 
 import com.googlecode.japi.checker.BCChecker;
 import com.googlecode.japi.checker.MuxReporter;
+import com.googlecode.japi.checker.ParseProfile;
 import com.googlecode.japi.checker.Rule;
 import com.googlecode.japi.checker.SeverityCountReporter;
 
@@ -35,6 +38,9 @@ public class BytecodeBackwardCompatibilityCheckerTask extends Task {
 	private File referenceFile;
 	private File file;
 	private boolean failOnError = true;
+	private ParseProfile parseProfile;
+	private boolean streaming;
+	private int threads = 1;
 	private List<Path> classpaths = new ArrayList<Path>();
 	private List<Path> referenceClasspaths = new ArrayList<Path>();
 	private List<RuleSet> ruleSets = new ArrayList<RuleSet>();
@@ -59,6 +65,37 @@ public class BytecodeBackwardCompatibilityCheckerTask extends Task {
 		this.failOnError = failOnError;
 	}
 
+	/**
+	 * Defines how much of the class files is parsed: API_ONLY, ALL_MEMBERS or FULL.
+	 * By default the cheapest profile required by the rules is used.
+	 */
+	public void setParseProfile(String parseProfile) {
+		try {
+			this.parseProfile = ParseProfile.valueOf(parseProfile.toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new BuildException("Invalid parse profile: " + parseProfile);
+		}
+	}
+
+	/**
+	 * Compares the archives class by class to limit the memory usage,
+	 * the classes are then reported in name order.
+	 */
+	public void setStreaming(boolean streaming) {
+		this.streaming = streaming;
+	}
+
+	/**
+	 * Defines the number of threads used to load and check the archives,
+	 * by default everything runs on a single thread.
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1) {
+			throw new BuildException("Invalid number of threads: " + threads);
+		}
+		this.threads = threads;
+	}
+
 	public Path createReferenceClassPath() {
 		Path path = new Path(this.getProject());
 		referenceClasspaths.add(path);
@@ -125,7 +162,18 @@ public class BytecodeBackwardCompatibilityCheckerTask extends Task {
             // Running the check...
             checker.setReporter(mux);
             checker.setRules(rules);
-			checker.checkBacwardCompatibility(getReferenceFile(), getFile());
+            checker.setParseProfile(parseProfile);
+            checker.setStreaming(streaming);
+            log("Parse profile: " + checker.getParseProfile(), Project.MSG_VERBOSE);
+            ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+            try {
+                checker.setExecutor(executor);
+                checker.checkBacwardCompatibility(getReferenceFile(), getFile());
+            } finally {
+                if (executor != null) {
+                    executor.shutdown();
+                }
+            }
 			
 			// Summary, failing ant in case of error...
             if (ec.hasSeverity()) {
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.googlecode.japi.checker.utils.AntPatternMatcher;
+import com.googlecode.japi.checker.utils.AntPatternSet;
+
+/**
+ * Include/exclude pattern matching against the class file names of an artifact,
+ * with a single matcher and with a compiled set of patterns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AntPatternMatcherBenchmark {
+    @Param({"1000"})
+    private int classes;
+    @Param({"**/*.class", "com/googlecode/**/p3/*.class", "**/Class1*.class"})
+    private String pattern;
+    private AntPatternMatcher matcher;
+    private AntPatternSet patternSet;
+    private AntPatternSet manyPatterns;
+    private List<String> paths;
+
+    @Setup
+    public void setup() {
+        matcher = new AntPatternMatcher(pattern);
+        patternSet = new AntPatternSet(Collections.singletonList(matcher), Collections.<AntPatternMatcher>emptyList());
+        // one include per package, plus the benchmarked pattern.
+        List<AntPatternMatcher> includes = new ArrayList<AntPatternMatcher>();
+        for (int i = 0; i < 100; i++) {
+            includes.add(new AntPatternMatcher(SyntheticArtifacts.PACKAGE + "p" + i + "/Class" + i + "*.class"));
+        }
+        includes.add(matcher);
+        manyPatterns = new AntPatternSet(includes, Collections.<AntPatternMatcher>emptyList());
+        paths = new ArrayList<String>(classes);
+        for (int i = 0; i < classes; i++) {
+            paths.add(SyntheticArtifacts.getClassName(i) + ".class");
+        }
+    }
+
+    @Benchmark
+    public void matches(Blackhole blackhole) {
+        for (String path : paths) {
+            blackhole.consume(matcher.matches(path));
+        }
+    }
+
+    @Benchmark
+    public void patternSet(Blackhole blackhole) {
+        for (String path : paths) {
+            blackhole.consume(patternSet.matches(path));
+        }
+    }
+
+    @Benchmark
+    public void manyPatterns(Blackhole blackhole) {
+        for (String path : paths) {
+            blackhole.consume(manyPatterns.matches(path));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker.benchmarks;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.googlecode.japi.checker.BCChecker;
+import com.googlecode.japi.checker.Reporter;
+import com.googlecode.japi.checker.Rule;
+import com.googlecode.japi.checker.rules.AllRules;
+
+/**
+ * A whole check using AllRules, from reading the jars to reporting.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BCCheckerBenchmark {
+    @Param({"1000"})
+    private int classes;
+    @Param({"1", "32"})
+    private int depth;
+    /** The number of threads of the executor, 0 runs without executor. */
+    @Param({"0", "4"})
+    private int threads;
+    private SyntheticArtifacts artifacts;
+    private ExecutorService executor;
+    private List<Rule> rules = Collections.<Rule>singletonList(new AllRules());
+
+    @Setup
+    public void setup() throws IOException {
+        artifacts = SyntheticArtifacts.create(classes, depth);
+        if (threads > 0) {
+            executor = Executors.newFixedThreadPool(threads);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+        artifacts.delete();
+    }
+
+    @Benchmark
+    public void checkBackwardCompatibility(final Blackhole blackhole) throws IOException {
+        BCChecker checker = new BCChecker();
+        checker.setRules(rules);
+        checker.setExecutor(executor);
+        checker.setReporter(new Reporter() {
+            @Override
+            public void report(Report report) {
+                blackhole.consume(report);
+            }
+        });
+        checker.checkBacwardCompatibility(artifacts.getReferenceJar(), artifacts.getNewJar());
+    }
+}
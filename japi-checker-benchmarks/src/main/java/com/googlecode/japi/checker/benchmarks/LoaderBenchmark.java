@@ -0,0 +1,121 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.googlecode.japi.checker.ClassHierarchy;
+import com.googlecode.japi.checker.DefaultClassDataLoader;
+import com.googlecode.japi.checker.RuleHelpers;
+import com.googlecode.japi.checker.model.ClassData;
+import com.googlecode.japi.checker.model.MethodData;
+
+/**
+ * Class lookups by name and walks through the class hierarchies,
+ * as done by the rules.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoaderBenchmark {
+    @Param({"1000"})
+    private int classes;
+    @Param({"1", "32"})
+    private int depth;
+    private SyntheticArtifacts artifacts;
+    private DefaultClassDataLoader loader;
+    private List<String> names;
+    private List<ClassData> leaves = new ArrayList<ClassData>();
+    private MethodData rootMethod;
+
+    @Setup
+    public void setup() throws IOException {
+        artifacts = SyntheticArtifacts.create(classes, depth);
+        loader = new DefaultClassDataLoader();
+        loader.read(artifacts.getReferenceJar().toURI());
+        names = artifacts.getClassNames();
+        for (String name : artifacts.getLeafClassNames()) {
+            leaves.add(loader.fromName(name));
+        }
+        // method0 of the top of the hierarchy, overridden by all the classes.
+        for (MethodData method : loader.fromName(names.get(0)).getMethods()) {
+            if (method.getName().equals("method0")) {
+                rootMethod = method;
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        artifacts.delete();
+    }
+
+    @Benchmark
+    public void fromName(Blackhole blackhole) {
+        for (String name : names) {
+            blackhole.consume(loader.fromName(name));
+        }
+    }
+
+    @Benchmark
+    public void isClassPartOfClassTree(Blackhole blackhole) {
+        for (ClassData leaf : leaves) {
+            blackhole.consume(RuleHelpers.isClassPartOfClassTree(loader, names.get(0), leaf.getName()));
+        }
+    }
+
+    @Benchmark
+    public void isSubtypeOf(Blackhole blackhole) {
+        ClassHierarchy hierarchy = ClassHierarchy.of(loader);
+        for (ClassData leaf : leaves) {
+            blackhole.consume(hierarchy.isSubtypeOf(leaf.getName(), "java/io/Serializable"));
+        }
+    }
+
+    @Benchmark
+    public void getClassMethodRecursive(Blackhole blackhole) {
+        for (ClassData leaf : leaves) {
+            blackhole.consume(RuleHelpers.getClassMethodRecursive(leaf));
+        }
+    }
+
+    @Benchmark
+    public void findClassMethodRecursive(Blackhole blackhole) {
+        for (ClassData leaf : leaves) {
+            blackhole.consume(RuleHelpers.findClassMethodRecursive(leaf, rootMethod));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.googlecode.japi.checker.DefaultClassDataLoader;
+import com.googlecode.japi.checker.DirectoryReader;
+import com.googlecode.japi.checker.JarReader;
+import com.googlecode.japi.checker.model.ClassData;
+
+/**
+ * Parsing of a whole artifact, either from a jar or from a directory.
+ * Run it with the gc profiler (-prof gc) to get the allocation rate and
+ * the bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReaderBenchmark {
+    @Param({"1000", "10000"})
+    private int classes;
+    private SyntheticArtifacts artifacts;
+
+    @Setup
+    public void setup() throws IOException {
+        artifacts = SyntheticArtifacts.create(classes, 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        artifacts.delete();
+    }
+
+    @Benchmark
+    public List<ClassData> jarReader() throws IOException {
+        JarReader reader = new JarReader(artifacts.getReferenceJar(), new DefaultClassDataLoader());
+        reader.read();
+        return reader.getClasses();
+    }
+
+    @Benchmark
+    public List<ClassData> directoryReader() throws IOException {
+        DirectoryReader reader = new DirectoryReader(artifacts.getReferenceDirectory(), new DefaultClassDataLoader());
+        reader.read();
+        return reader.getClasses();
+    }
+}
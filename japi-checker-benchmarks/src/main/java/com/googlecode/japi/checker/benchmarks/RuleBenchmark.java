@@ -0,0 +1,131 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.googlecode.japi.checker.DefaultClassDataLoader;
+import com.googlecode.japi.checker.Reporter;
+import com.googlecode.japi.checker.Rule;
+import com.googlecode.japi.checker.model.ClassData;
+import com.googlecode.japi.checker.rules.AllRules;
+import com.googlecode.japi.checker.rules.CheckMethodVariableArity;
+
+/**
+ * The rules applied to all the class pairs of an artifact, the classes
+ * being loaded upfront. The class pairs are checked the same way the
+ * BCChecker does.
+ *
+ * The rules are the ones of AllRules, plus the ones the command line adds.
+ * They are all applied by default, a single one is selected by its class
+ * name, e.g: <code>-p rule=CheckRemovedMethod</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class RuleBenchmark {
+    private static final String ALL = "all";
+    @Param({"1000"})
+    private int classes;
+    @Param({"1", "32"})
+    private int depth;
+    @Param({ALL})
+    private String rule;
+    private SyntheticArtifacts artifacts;
+    private List<Rule> rules;
+    private List<ClassData> references = new ArrayList<ClassData>();
+    private List<ClassData> newClasses = new ArrayList<ClassData>();
+
+    @Setup
+    public void setup() throws IOException {
+        rules = selectRules(rule);
+        artifacts = SyntheticArtifacts.create(classes, depth);
+        DefaultClassDataLoader referenceLoader = new DefaultClassDataLoader();
+        referenceLoader.read(artifacts.getReferenceJar().toURI());
+        DefaultClassDataLoader newLoader = new DefaultClassDataLoader();
+        newLoader.read(artifacts.getNewJar().toURI());
+        for (ClassData reference : referenceLoader.getClasses()) {
+            ClassData newClass = newLoader.fromName(reference.getName());
+            if (newClass != null) {
+                references.add(reference);
+                newClasses.add(newClass);
+            }
+        }
+    }
+
+    /**
+     * Get the rules to benchmark.
+     * @param name the class name of the rule, or all.
+     * @return the rules.
+     */
+    private static List<Rule> selectRules(String name) {
+        List<Rule> available = new ArrayList<Rule>(new AllRules().getRules());
+        available.add(new CheckMethodVariableArity());
+        if (ALL.equals(name)) {
+            return available;
+        }
+        List<String> names = new ArrayList<String>();
+        for (Rule rule : available) {
+            if (rule.getClass().getSimpleName().equals(name)) {
+                return Collections.singletonList(rule);
+            }
+            names.add(rule.getClass().getSimpleName());
+        }
+        throw new IllegalArgumentException("Unknown rule " + name + ", expected " + ALL + " or one of " + names);
+    }
+
+    @TearDown
+    public void tearDown() {
+        artifacts.delete();
+    }
+
+    @Benchmark
+    public void check(final Blackhole blackhole) {
+        Reporter reporter = new Reporter() {
+            @Override
+            public void report(Report report) {
+                blackhole.consume(report);
+            }
+        };
+        for (int i = 0; i < references.size(); i++) {
+            for (Rule rule : rules) {
+                rule.checkBackwardCompatibility(reporter, references.get(i), newClasses.get(i));
+            }
+            newClasses.get(i).checkBackwardCompatibility(reporter, references.get(i), rules);
+        }
+    }
+}
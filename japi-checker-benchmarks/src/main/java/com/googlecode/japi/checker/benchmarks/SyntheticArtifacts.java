@@ -0,0 +1,238 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker.benchmarks;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Generates a reference and a new version of an artifact, both as a jar
+ * and as a directory, so the benchmarks do not depend on external jars.
+ *
+ * The classes are organised in inheritance chains of the given depth.
+ * The new version contains a fixed proportion of incompatible changes
+ * (removed methods and classes, fields made static, new exceptions,
+ * classes made final), so every rule has some work to report.
+ */
+public final class SyntheticArtifacts {
+    /** The package of the generated classes. */
+    public static final String PACKAGE = "com/googlecode/japi/checker/benchmarks/generated/";
+    private final File root;
+    private final int classCount;
+    private final int depth;
+
+    private SyntheticArtifacts(File root, int classCount, int depth) {
+        this.root = root;
+        this.classCount = classCount;
+        this.depth = depth;
+    }
+
+    /**
+     * Generate the artifacts in a new temporary directory.
+     * @param classCount the number of classes in the reference.
+     * @param depth the depth of the inheritance chains.
+     * @return the generated artifacts.
+     * @throws IOException
+     */
+    public static SyntheticArtifacts create(int classCount, int depth) throws IOException {
+        if (classCount < 1 || depth < 1) {
+            throw new IllegalArgumentException("classCount and depth must be positive.");
+        }
+        File root = File.createTempFile("japi-checker-benchmarks-", "");
+        if (!root.delete() || !root.mkdirs()) {
+            throw new IOException("Could not create directory " + root);
+        }
+        SyntheticArtifacts artifacts = new SyntheticArtifacts(root, classCount, depth);
+        artifacts.write(false);
+        artifacts.write(true);
+        return artifacts;
+    }
+
+    public File getReferenceJar() {
+        return new File(root, "reference.jar");
+    }
+
+    public File getReferenceDirectory() {
+        return new File(root, "reference");
+    }
+
+    public File getNewJar() {
+        return new File(root, "new.jar");
+    }
+
+    public File getNewDirectory() {
+        return new File(root, "new");
+    }
+
+    /**
+     * @return the names of all the classes of the reference.
+     */
+    public List<String> getClassNames() {
+        List<String> names = new ArrayList<String>(classCount);
+        for (int i = 0; i < classCount; i++) {
+            names.add(getClassName(i));
+        }
+        return names;
+    }
+
+    /**
+     * @return the names of the classes at the bottom of each inheritance chain.
+     */
+    public List<String> getLeafClassNames() {
+        List<String> names = new ArrayList<String>();
+        for (int i = 0; i < classCount; i++) {
+            if (i % depth == depth - 1 || i == classCount - 1) {
+                names.add(getClassName(i));
+            }
+        }
+        return Collections.unmodifiableList(names);
+    }
+
+    /**
+     * Remove all the generated files.
+     */
+    public void delete() {
+        delete(root);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * @param index the index of a generated class.
+     * @return the name of the class.
+     */
+    public static String getClassName(int index) {
+        return PACKAGE + "p" + (index % 16) + "/Class" + index;
+    }
+
+    private void write(boolean changed) throws IOException {
+        File directory = changed ? getNewDirectory() : getReferenceDirectory();
+        ZipOutputStream jar = new ZipOutputStream(new FileOutputStream(changed ? getNewJar() : getReferenceJar()));
+        try {
+            for (int i = 0; i < classCount; i++) {
+                if (changed && i % 19 == 1) {
+                    // removed class
+                    continue;
+                }
+                String name = getClassName(i);
+                byte[] data = generate(i, changed);
+                jar.putNextEntry(new ZipEntry(name + ".class"));
+                jar.write(data);
+                jar.closeEntry();
+                File file = new File(directory, name + ".class");
+                if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) {
+                    throw new IOException("Could not create directory " + file.getParentFile());
+                }
+                OutputStream os = new FileOutputStream(file);
+                try {
+                    os.write(data);
+                } finally {
+                    os.close();
+                }
+            }
+        } finally {
+            jar.close();
+        }
+    }
+
+    private byte[] generate(int index, boolean changed) {
+        String name = getClassName(index);
+        boolean root = index % depth == 0;
+        String superName = root ? "java/lang/Object" : getClassName(index - 1);
+        String[] interfaces = root ? new String[] {"java/io/Serializable"} : new String[0];
+        int access = Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER;
+        if (changed && index % 17 == 2) {
+            access |= Opcodes.ACC_FINAL;
+        }
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(Opcodes.V1_6, access, name, null, superName, interfaces);
+        cw.visitSource(name.substring(name.lastIndexOf('/') + 1) + ".java", null);
+
+        FieldVisitor fv = cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL,
+                "serialVersionUID", "J", null, Long.valueOf(index));
+        fv.visitEnd();
+        for (int k = 0; k < 2; k++) {
+            int fieldAccess = Opcodes.ACC_PUBLIC;
+            if (changed && k == 1 && index % 11 == 5) {
+                fieldAccess |= Opcodes.ACC_STATIC;
+            }
+            fv = cw.visitField(fieldAccess, "field" + k, "Ljava/lang/String;", null, null);
+            fv.visitEnd();
+        }
+        fv = cw.visitField(Opcodes.ACC_PROTECTED, "counter", "I", null, null);
+        fv.visitEnd();
+
+        method(cw, Opcodes.ACC_PUBLIC, "<init>", "()V", null, 10);
+        for (int k = 0; k < 4; k++) {
+            if (changed && k == 3 && index % 7 == 3) {
+                // removed method
+                continue;
+            }
+            method(cw, Opcodes.ACC_PUBLIC, "method" + k, "()V", null, 20 + k);
+        }
+        method(cw, Opcodes.ACC_PUBLIC, "get", "()Ljava/lang/Object;", null, 30);
+        String[] exceptions = changed && index % 13 == 0
+                ? new String[] {"java/io/IOException", "java/lang/Exception"} : new String[] {"java/io/IOException"};
+        method(cw, Opcodes.ACC_PUBLIC, "run", "([Ljava/lang/String;)V", exceptions, 40);
+        method(cw, Opcodes.ACC_PRIVATE, "internal", "(I)I", null, 50);
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * Write a method doing nothing, with a line number so the debug
+     * information gets parsed as well.
+     */
+    private static void method(ClassWriter cw, int access, String name, String desc, String[] exceptions, int line) {
+        MethodVisitor mv = cw.visitMethod(access, name, desc, null, exceptions);
+        mv.visitCode();
+        Label start = new Label();
+        mv.visitLabel(start);
+        mv.visitLineNumber(line, start);
+        if (desc.endsWith("V")) {
+            mv.visitInsn(Opcodes.RETURN);
+        } else if (desc.endsWith("I")) {
+            mv.visitInsn(Opcodes.ICONST_0);
+            mv.visitInsn(Opcodes.IRETURN);
+        } else {
+            mv.visitInsn(Opcodes.ACONST_NULL);
+            mv.visitInsn(Opcodes.ARETURN);
+        }
+        mv.visitMaxs(1, 2);
+        mv.visitEnd();
+    }
+}
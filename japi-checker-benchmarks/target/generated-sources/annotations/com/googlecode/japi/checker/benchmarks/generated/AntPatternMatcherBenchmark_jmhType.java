@@ -0,0 +1,4 @@
+package com.googlecode.japi.checker.benchmarks.generated;
+public class AntPatternMatcherBenchmark_jmhType extends AntPatternMatcherBenchmark_jmhType_B3 {
+}
+
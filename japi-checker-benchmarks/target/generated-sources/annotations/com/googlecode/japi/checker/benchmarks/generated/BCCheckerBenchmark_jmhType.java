@@ -0,0 +1,4 @@
+package com.googlecode.japi.checker.benchmarks.generated;
+public class BCCheckerBenchmark_jmhType extends BCCheckerBenchmark_jmhType_B3 {
+}
+
@@ -0,0 +1,4 @@
+package com.googlecode.japi.checker.benchmarks.generated;
+public class LoaderBenchmark_jmhType extends LoaderBenchmark_jmhType_B3 {
+}
+
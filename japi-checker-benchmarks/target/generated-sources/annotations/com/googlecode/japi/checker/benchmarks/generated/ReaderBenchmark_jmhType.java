@@ -0,0 +1,4 @@
+package com.googlecode.japi.checker.benchmarks.generated;
+public class ReaderBenchmark_jmhType extends ReaderBenchmark_jmhType_B3 {
+}
+
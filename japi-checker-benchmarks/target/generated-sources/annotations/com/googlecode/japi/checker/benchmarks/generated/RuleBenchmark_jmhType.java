@@ -0,0 +1,4 @@
+package com.googlecode.japi.checker.benchmarks.generated;
+public class RuleBenchmark_jmhType extends RuleBenchmark_jmhType_B3 {
+}
+
@@ -23,6 +23,8 @@ import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -34,7 +36,9 @@ import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.FileSystemException;
 import org.apache.commons.vfs2.VFS;
 
+import com.googlecode.japi.checker.ApiSnapshot;
 import com.googlecode.japi.checker.BCChecker;
+import com.googlecode.japi.checker.ParseProfile;
 import com.googlecode.japi.checker.Rule;
 import com.googlecode.japi.checker.Severity;
 import com.googlecode.japi.checker.Utils;
@@ -48,7 +52,8 @@ import com.googlecode.japi.checker.rules.CheckMethodVariableArity;
  * 
  */
 public class Main {
-    private static final String HELP_CMDLINE = "japi-checker-cli [-bin] [-cp <arg>] [-h] [-rcp <arg>] REFERENCE_LIBRARY NEW_LIBRARY";
+    private static final String HELP_CMDLINE = "japi-checker-cli [-bin] [-cp <arg>] [-h] [-profile <arg>] [-rcp <arg>] [-streaming] [-threads <arg>] REFERENCE_LIBRARY NEW_LIBRARY\n"
+            + "       japi-checker-cli -export <arg> [-h] [-profile <arg>] [-rcp <arg>] [-threads <arg>] REFERENCE_LIBRARY";
     private static final String HELP_HEADER = "Check API and ABI compatiblity of Java libraries.";
     private String[] args;
 
@@ -105,12 +110,24 @@ public class Main {
                 + " - https://code.google.com/p/japi-checker/");
         System.out.println("");
         boolean reportSourceIncompatibilities = true;
+        ParseProfile parseProfile = null;
+        boolean streaming = false;
+        int threads = 1;
+        File export = null;
         // configuring the CLI options
         Options options = new Options();
         options.addOption("bin", false,
                 "check only binary compatibility (default - source and binary compatibility)");
         options.addOption("rcp", true, "reference classpath.");
         options.addOption("cp", true, "classpath.");
+        options.addOption("profile", true,
+                "parse profile: API_ONLY, ALL_MEMBERS or FULL (default - the cheapest profile required by the rules).");
+        options.addOption("streaming", false,
+                "compare the libraries class by class to limit the memory usage, the classes are reported in name order.");
+        options.addOption("threads", true,
+                "number of threads used to load and check the libraries (default - 1).");
+        options.addOption("export", true,
+                "write an API snapshot of REFERENCE_LIBRARY and its classpath to the given file, it can later be used as REFERENCE_LIBRARY.");
         options.addOption("h", "help", false, "This help message.");
 
         CommandLineParser parser = new GnuParser();
@@ -122,13 +139,41 @@ public class Main {
                 formatter.printHelp(HELP_CMDLINE, getHeader(), options, null);
                 return 0;
             }
-            if (cmdLine.getArgs().length != 2) {
+            if (cmdLine.hasOption("export")) {
+                export = new File(cmdLine.getOptionValue("export"));
+                if (cmdLine.getArgs().length != 1) {
+                    throw new ParseException(
+                            "Only REFERENCE_LIBRARY is expected when exporting a snapshot.");
+                }
+            } else if (cmdLine.getArgs().length != 2) {
                 throw new ParseException(
                         "Missing REFERENCE_LIBRARY and/or NEW_LIBRARY.");
             }
             if (cmdLine.hasOption("bin")) {
                 reportSourceIncompatibilities = false;
             }
+            if (cmdLine.hasOption("streaming")) {
+                streaming = true;
+            }
+            if (cmdLine.hasOption("threads")) {
+                try {
+                    threads = Integer.parseInt(cmdLine.getOptionValue("threads"));
+                } catch (NumberFormatException e) {
+                    threads = 0;
+                }
+                if (threads < 1) {
+                    throw new ParseException("Invalid number of threads: "
+                            + cmdLine.getOptionValue("threads"));
+                }
+            }
+            if (cmdLine.hasOption("profile")) {
+                try {
+                    parseProfile = ParseProfile.valueOf(cmdLine.getOptionValue("profile").toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new ParseException("Invalid parse profile: "
+                            + cmdLine.getOptionValue("profile"));
+                }
+            }
         } catch (ParseException e) {
             System.err.println("Error parsing command line: " + e.getMessage());
             HelpFormatter formatter = new HelpFormatter();
@@ -146,23 +191,52 @@ public class Main {
          */
 
         String referencePath = cmdLine.getArgs()[0];
-        String newPath = cmdLine.getArgs()[1];
         File reference = new File(referencePath);
-        File newArtifact = new File(newPath);
-        if (!reference.isDirectory() && !Utils.isArchive(reference)) {
+        if (!reference.isDirectory() && !Utils.isArchive(reference) && !ApiSnapshot.isSnapshot(reference)) {
             try {
                 FileObject fo = VFS.getManager().resolveFile(referencePath);
                 reference = writeToTempFile(fo);
             } catch (FileSystemException e) {
                 System.err.println("Error: " + e.getMessage()
                         + " - reference can be either a directory"
-                        + ", a jar (or a zip kind of archive) file, or a URL.");
+                        + ", a jar (or a zip kind of archive) file, an API snapshot or a URL.");
                 return -1;
             } catch (IOException e) {
                 System.err.println("Error: " + e.getMessage());
                 return -1;
             }
         }
+
+        BCChecker checker = new BCChecker();
+
+        // Populating the reference classpath.
+        if (cmdLine.hasOption("rcp")) {
+            for (String filename : cmdLine.getOptionValues("rcp")) {
+                checker.addToReferenceClasspath(new File(filename));
+            }
+        }
+
+        if (export != null) {
+            ExecutorService executor = newExecutor(threads);
+            try {
+                checker.setExecutor(executor);
+                checker.setParseProfile(parseProfile);
+                checker.exportReferenceSnapshot(reference, export);
+                System.out.println("Snapshot written to " + export);
+            } catch (IOException e) {
+                System.err.println("Error: " + e.getMessage());
+                return -1;
+            } catch (IllegalArgumentException e) {
+                System.err.println("Error: " + e.getMessage());
+                return -1;
+            } finally {
+                shutdown(executor);
+            }
+            return 0;
+        }
+
+        String newPath = cmdLine.getArgs()[1];
+        File newArtifact = new File(newPath);
         if (!newArtifact.isDirectory() && !Utils.isArchive(newArtifact)) {
             try {
                 FileObject fo = VFS.getManager().resolveFile(newPath);
@@ -178,15 +252,7 @@ public class Main {
             }
         }
 
-        BCChecker checker = new BCChecker();
-
-        // Populating the classpaths, reference and then for tested artifact.
-        if (cmdLine.hasOption("rcp")) {
-            for (String filename : cmdLine.getOptionValues("rcp")) {
-                checker.addToReferenceClasspath(new File(filename));
-            }
-        }
-
+        // Populating the classpath of the tested artifact.
         if (cmdLine.hasOption("cp")) {
             for (String filename : cmdLine.getOptionValues("cp")) {
                 checker.addToNewArtifactClasspath(new File(filename));
@@ -206,9 +272,14 @@ public class Main {
             rules.add(new CheckMethodVariableArity());
         }
         // Running the check...
+        ExecutorService executor = newExecutor(threads);
         try {
+            checker.setExecutor(executor);
             checker.setReporter(reporter);
             checker.setRules(rules);
+            checker.setParseProfile(parseProfile);
+            checker.setStreaming(streaming);
+            System.out.println("Parse profile: " + checker.getParseProfile());
             checker.checkBacwardCompatibility(reference, newArtifact);
             System.out.println("Error count: "
                     + reporter.getCount(Severity.ERROR));
@@ -220,10 +291,22 @@ public class Main {
         } catch (IOException e) {
             System.err.println("Error: " + e.getMessage());
             return -1;
+        } finally {
+            shutdown(executor);
         }
         return 0;
     }
 
+    private static ExecutorService newExecutor(int threads) {
+        return threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+    }
+
+    private static void shutdown(ExecutorService executor) {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
     public static void main(String[] args) {
         System.exit(new Main(args).run());
     }
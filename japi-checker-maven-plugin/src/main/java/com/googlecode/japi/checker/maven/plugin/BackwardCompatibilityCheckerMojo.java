@@ -37,6 +37,7 @@ import org.apache.maven.project.artifact.InvalidDependencyVersionException;
 import com.googlecode.japi.checker.BCChecker;
 import com.googlecode.japi.checker.MuxReporter;
 import com.googlecode.japi.checker.Rule;
+import com.googlecode.japi.checker.ParseProfile;
 import com.googlecode.japi.checker.SeverityCountReporter;
 
 import java.io.File;
@@ -45,6 +46,8 @@ import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Goal which check the backward compatibility between generated
@@ -94,12 +97,39 @@ public class BackwardCompatibilityCheckerMojo
     private List<String> excludes = new ArrayList<String>();
     
     /**
-     * Reference version
+     * Reference version, not needed if a reference snapshot is provided.
      * @parameter
-     * @required
      */
     private ArtifactItem reference;
 
+    /**
+     * API snapshot to use as reference instead of resolving the reference
+     * artifact and its dependencies. Such snapshot can be written using
+     * the japi-checker-cli -export option.
+     * @parameter
+     */
+    private File referenceSnapshot;
+
+    /**
+     * How much of the class files is parsed: API_ONLY, ALL_MEMBERS or FULL.
+     * By default the cheapest profile required by the rules is used.
+     * @parameter
+     */
+    private String parseProfile;
+
+    /**
+     * Compare the archives class by class to limit the memory usage,
+     * the classes are then reported in name order.
+     * @parameter default-value="false"
+     */
+    private boolean streaming;
+
+    /**
+     * The number of threads used to load and check the archives.
+     * @parameter default-value="1"
+     */
+    private int threads = 1;
+
     /**
      * @parameter expression="${project}"
      * @readonly
@@ -177,9 +207,9 @@ public class BackwardCompatibilityCheckerMojo
         
         if (artifact.getFile() != null && artifact.getFile().exists()) {
             
-            // Retrieving the reference artifact.
-            updateArtifact(reference);
-            Artifact referenceArtifact = reference.getArtifact();
+            if (reference == null && referenceSnapshot == null) {
+                throw new MojoExecutionException("Either reference or referenceSnapshot must be defined.");
+            }
 
             try {
                 // Creating a new checker which compare the generated artifact against the provided reference.
@@ -189,9 +219,22 @@ public class BackwardCompatibilityCheckerMojo
                     this.getLog().debug("Adding new artifact dependency: " + artifact.getFile().toString());
                     checker.addToNewArtifactClasspath(artifact.getFile());
                 }
-                for (Artifact artifact : this.getDependencyList(reference.getGroupId(), reference.getArtifactId(), reference.getVersion())) {
-                    this.getLog().debug("Adding reference dependency: " + artifact.getFile().toString());
-                    checker.addToReferenceClasspath(artifact.getFile());
+
+                // Retrieving the reference artifact, unless a snapshot is used.
+                File referenceFile;
+                String referenceName;
+                if (referenceSnapshot != null) {
+                    referenceFile = referenceSnapshot;
+                    referenceName = referenceSnapshot.toString();
+                } else {
+                    updateArtifact(reference);
+                    Artifact referenceArtifact = reference.getArtifact();
+                    referenceFile = referenceArtifact.getFile();
+                    referenceName = referenceArtifact.toString();
+                    for (Artifact artifact : this.getDependencyList(reference.getGroupId(), reference.getArtifactId(), reference.getVersion())) {
+                        this.getLog().debug("Adding reference dependency: " + artifact.getFile().toString());
+                        checker.addToReferenceClasspath(artifact.getFile());
+                    }
                 }
                 
                 
@@ -202,9 +245,12 @@ public class BackwardCompatibilityCheckerMojo
                 mux.add(ec);
             
                 // Configuring the check...
-                this.getLog().info("Checking backward compatibility of " + artifact.toString() + " against " + referenceArtifact.toString());
+                this.getLog().info("Checking backward compatibility of " + artifact.toString() + " against " + referenceName);
                 checker.setReporter(mux);
                 checker.setRules(getRuleInstances());
+                checker.setParseProfile(getParseProfile());
+                checker.setStreaming(streaming);
+                this.getLog().info("Parse profile: " + checker.getParseProfile());
                 for (String include : getIncludes()) {
                     checker.addInclude(include);
                 }
@@ -213,7 +259,18 @@ public class BackwardCompatibilityCheckerMojo
                 }
                 
                 // Running the check...
-                checker.checkBacwardCompatibility(referenceArtifact.getFile(), artifact.getFile());
+                if (threads < 1) {
+                    throw new MojoExecutionException("Invalid number of threads: " + threads);
+                }
+                ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+                try {
+                    checker.setExecutor(executor);
+                    checker.checkBacwardCompatibility(referenceFile, artifact.getFile());
+                } finally {
+                    if (executor != null) {
+                        executor.shutdown();
+                    }
+                }
                 if (ec.hasSeverity()) {
                     getLog().error("You have " + ec.getCount() + " backward compatibility issues.");
                     throw new MojoFailureException("You have " + ec.getCount() + " backward compatibility issues.");
@@ -249,6 +306,17 @@ public class BackwardCompatibilityCheckerMojo
         }        
     }
 
+    private ParseProfile getParseProfile() throws MojoExecutionException {
+        if (parseProfile == null) {
+            return null;
+        }
+        try {
+            return ParseProfile.valueOf(parseProfile.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new MojoExecutionException("Invalid parse profile: " + parseProfile, e);
+        }
+    }
+
     private List<Rule> getRuleInstances() throws MojoExecutionException {
         List<Rule> rules = new ArrayList<Rule>();
         for (String classname : this.rules) {
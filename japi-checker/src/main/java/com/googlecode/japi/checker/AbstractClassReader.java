@@ -18,15 +18,21 @@ package com.googlecode.japi.checker;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Hashtable;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.objectweb.asm.ClassReader;
 
 import com.googlecode.japi.checker.model.ClassData;
 import com.googlecode.japi.checker.utils.AntPatternMatcher;
+import com.googlecode.japi.checker.utils.AntPatternSet;
 
 /**
  * This abstract class provide basic behavior for the BCChecker to extract ClassData
@@ -35,7 +41,12 @@ import com.googlecode.japi.checker.utils.AntPatternMatcher;
  * 
  */
 public abstract class AbstractClassReader {
-    private Map<String, List<ClassData>> classes = new Hashtable<String, List<ClassData>>();
+    private Map<String, List<ClassData>> classes = new LinkedHashMap<String, List<ClassData>>();
+    private final Queue<ReadClassException> errors = new ConcurrentLinkedQueue<ReadClassException>();
+    private ClassFilter filter = ClassFilter.ALL;
+    private volatile ConcurrentMap<String, ClassData> onDemand = new ConcurrentHashMap<String, ClassData>();
+    // the names requested on demand which could not be found or read.
+    private volatile Set<String> missing = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
     /**
      * This method should implement the extraction of the classes out of its container.
@@ -52,15 +63,200 @@ public abstract class AbstractClassReader {
      * @throws ReadClassException
      */
     protected void readClass(ClassDumper visitor, String name, byte[] data) throws ReadClassException {
+        this.put(name, parseClass(visitor, name, data));
+    }
+
+    /**
+     * Parse a class file using a visitor of a pool.
+     * @param visitors the pool.
+     * @param name
+     * @param data
+     * @return the classes extracted from the class file.
+     * @throws ReadClassException
+     */
+    protected List<ClassData> parseClass(ClassDumper.Pool visitors, String name, byte[] data) throws ReadClassException {
+        ClassDumper visitor = visitors.take();
         try {
+            return parseClass(visitor, name, data);
+        } finally {
+            visitors.release(visitor);
+        }
+    }
+
+    /**
+     * Parse a class file without adding it to the cache. This method
+     * does not modify the reader state, so it can be called concurrently
+     * as long as each call uses its own visitor.
+     * @param visitor
+     * @param name
+     * @param data
+     * @return the classes extracted from the class file.
+     * @throws ReadClassException
+     */
+    protected List<ClassData> parseClass(ClassDumper visitor, String name, byte[] data) throws ReadClassException {
+        try {
+            visitor.setClassFile(this, name);
             ClassReader cr = new ClassReader(data);
-            cr.accept(visitor, 0);
-            this.put(name, visitor.getClasses());
+            cr.accept(visitor, visitor.getParseProfile().getParsingOptions());
+            List<ClassData> classes = visitor.getClasses();
+            for (ClassData clazz : classes) {
+                AnnotationDumper.bind(cr, clazz);
+            }
+            return classes;
         } catch (RuntimeException exc) {
             throw new ReadClassException("Error occurred while loading class " + name + ": " + exc.toString(), exc);
         }
     }
-    
+
+    /**
+     * Release the files held by this reader. The classes already parsed
+     * remain available. This does nothing by default.
+     * @throws IOException in case of error while closing.
+     */
+    void close() throws IOException {
+    }
+
+    /**
+     * Record an error which occurred while reading a class on demand, such
+     * an error cannot be thrown to the rule which requested the class.
+     * @param error the error.
+     */
+    void addError(ReadClassException error) {
+        errors.add(error);
+    }
+
+    /**
+     * Get the errors recorded while reading classes on demand, and forget them.
+     * @return the errors in the order they occurred.
+     */
+    List<ReadClassException> takeErrors() {
+        List<ReadClassException> result = new ArrayList<ReadClassException>();
+        ReadClassException error;
+        while ((error = errors.poll()) != null) {
+            result.add(error);
+        }
+        return result;
+    }
+
+    /**
+     * Read a class file again, e.g: to get the debug information which is
+     * not parsed with the rest of the class.
+     * @param entry the name of the class file, as given to {@link #parseClass(ClassDumper, String, byte[])}.
+     * @return the content of the class file, or null if it cannot be read again.
+     * @throws IOException in case of reading error.
+     */
+    byte[] readEntry(String entry) throws IOException {
+        return null;
+    }
+
+    /**
+     * Defines the class files to read, the other ones are skipped before
+     * being read and only parsed on demand, see {@link #getOnDemandClass(String)}.
+     * @param filter the filter, applied by the next {@link #read()}.
+     */
+    void setFilter(ClassFilter filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * @return the filter of the class files to read.
+     */
+    ClassFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Get the names of the classes known by this reader, but only parsed
+     * when requested by name, e.g: the classes skipped by the filter.
+     * @return the class names, empty by default.
+     */
+    Set<String> getOnDemandClassNames() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * Get a class which is only parsed when requested by name.
+     * @param name the class name.
+     * @return the class, or null if not available on demand.
+     */
+    ClassData getOnDemandClass(String name) {
+        return null;
+    }
+
+    /**
+     * @return true if some directories have been skipped without being
+     *         listed, their classes can only be found using {@link #getOnDemandClass(String)}.
+     */
+    boolean hasPrunedDirectories() {
+        return false;
+    }
+
+    /**
+     * Parse a class skipped by the filter, the class is kept once parsed.
+     * A class which cannot be read is recorded as an error once, see
+     * {@link #takeErrors()}.
+     * @param visitor the visitor to use.
+     * @param name the class name.
+     * @return the class, or null if not found or not readable.
+     */
+    ClassData readOnDemand(ClassDumper visitor, String name) {
+        try {
+            return parseOnDemand(visitor, name);
+        } catch (ReadClassException e) {
+            failed(name, e);
+        } catch (IOException e) {
+            failed(name, new ReadClassException("Error occurred while loading class " + name + ": " + e.toString(), e));
+        }
+        return null;
+    }
+
+    private void failed(String name, ReadClassException error) {
+        if (missing.add(name)) {
+            addError(error);
+        }
+    }
+
+    /**
+     * Parse a class skipped by the filter using a visitor of a pool, the
+     * class is kept once parsed.
+     * @param visitors the pool.
+     * @param name the class name.
+     * @return the class, or null if not found.
+     * @throws IOException in case of reading error.
+     */
+    ClassData parseOnDemand(ClassDumper.Pool visitors, String name) throws IOException {
+        ClassData clazz = onDemand.get(name);
+        if (clazz != null) {
+            return clazz;
+        }
+        ClassDumper visitor = visitors.take();
+        try {
+            return parseOnDemand(visitor, name);
+        } finally {
+            visitors.release(visitor);
+        }
+    }
+
+    private ClassData parseOnDemand(ClassDumper visitor, String name) throws IOException {
+        ClassData clazz = onDemand.get(name);
+        if (clazz != null || missing.contains(name)) {
+            return clazz;
+        }
+        byte[] data = readEntry(name + ".class");
+        if (data == null) {
+            // e.g: a name looked up in the pruned directories, it is not probed again.
+            missing.add(name);
+            return null;
+        }
+        for (ClassData parsed : parseClass(visitor, name + ".class", data)) {
+            if (name.equals(parsed.getName())) {
+                ClassData previous = onDemand.putIfAbsent(name, parsed);
+                return previous != null ? previous : parsed;
+            }
+        }
+        return null;
+    }
+
     /**
      * Get all the discovered classes.
      * @return a list of all the discovered classes.
@@ -77,54 +273,46 @@ public abstract class AbstractClassReader {
      */
     public List<ClassData> getClasses(List<AntPatternMatcher> includes, List<AntPatternMatcher> excludes) {
         List<ClassData> result = new ArrayList<ClassData>();
+        AntPatternSet patterns = AntPatternSet.of(includes, excludes);
         for (Entry<String, List<ClassData>> entry : this.classes.entrySet()) {
-            if (shouldInclude(entry.getKey(), includes, excludes)) {
+            if (patterns.matches(entry.getKey())) {
                 result.addAll(entry.getValue());
             }
         }
         return result;
     }
     
+    /**
+     * Get the classes which can be resolved by name from this reader, while
+     * not being part of its content, e.g: the dependencies recorded in a snapshot.
+     * @return the list of external classes, empty by default.
+     */
+    List<ClassData> getExternalClasses() {
+        return Collections.emptyList();
+    }
+
     /**
      * Empty this class data cache.
      */
     protected void clear() {
         classes.clear();
+        onDemand = new ConcurrentHashMap<String, ClassData>();
+        missing = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
     }
     
     /**
-     * Add a new class definition to the cache.
+     * Add a new class definition to the cache. The list is kept as is,
+     * so it must not be modified by the caller afterwards.
      * @param name the filename
      * @param classes the classes related to this filename.
      */
     protected void put(String name, List<ClassData> classes) {
-        if (this.classes.containsKey(name)) {
-            this.classes.get(name).addAll(classes);
-        } else {
-            this.classes.put(name, new ArrayList<ClassData>(classes));
-        }
-    }
-    
-    /**
-     * Should a path be included based on the patterns.
-     * @param subpath the path to check
-     * @param includes the include patterns
-     * @param excludes the exclude patterns.
-     * @return Returns true if the if should be included into the list, false otherwise.
-     */
-    protected boolean shouldInclude(String subpath, List<AntPatternMatcher> includes, List<AntPatternMatcher> excludes) {
-        boolean included = includes.size() == 0 ? true : false;
-        for (AntPatternMatcher inc : includes) {
-            if (inc.matches(subpath)) {
-                included = true;
-                break;
-            }
-        }
-        for (AntPatternMatcher exc : excludes) {
-            if (exc.matches(subpath)) {
-                return false;
-            }
+        List<ClassData> previous = this.classes.put(name, classes);
+        if (previous != null) {
+            List<ClassData> merged = new ArrayList<ClassData>(previous.size() + classes.size());
+            merged.addAll(previous);
+            merged.addAll(classes);
+            this.classes.put(name, merged);
         }
-        return included;
     }
 }
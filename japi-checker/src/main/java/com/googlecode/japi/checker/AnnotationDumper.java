@@ -15,28 +15,468 @@
  */
 package com.googlecode.japi.checker;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.objectweb.asm.AnnotationVisitor;
-import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
 
 import com.googlecode.japi.checker.model.AnnotationData;
-import com.googlecode.japi.checker.model.JavaItem;
+import com.googlecode.japi.checker.model.ClassData;
+import com.googlecode.japi.checker.model.MethodData;
 
-class AnnotationDumper extends AnnotationVisitor {
-    private Logger logger = Logger.getLogger(AnnotationDumper.class.getName());
-    private AnnotationData annotation;
+/**
+ * Decode the element values of the annotations of a class file on demand.
+ *
+ * The class is parsed without the annotation values, then
+ * {@link #bind(ClassReader, List, List)} walks the annotation attributes of
+ * the class file. Each annotation having values gets its own dumper, holding
+ * a copy of its element values and of the constant pool entries they use,
+ * so the class file itself is not kept. The constant indexes of the copy
+ * are renumbered to the copied entries.
+ *
+ * The values are decoded the same way the ASM ClassReader does: constants,
+ * classes and arrays of primitives are kept, enums, nested annotations and
+ * other arrays are skipped.
+ */
+class AnnotationDumper {
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int FLOAT = 4;
+    private static final int LONG = 5;
+    private static final int DOUBLE = 6;
+    private static Logger logger = Logger.getLogger(AnnotationDumper.class.getName());
+    // the element value pairs, starting with their count.
+    private final byte[] values;
+    // the content of the constant pool entries, without their tag.
+    private final byte[] constants;
+    private final int[] offsets;
+
+    private AnnotationDumper(byte[] values, byte[] constants, int[] offsets) {
+        this.values = values;
+        this.constants = constants;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Record the annotation values of a class and its methods out of its
+     * class file. The annotations must have been created while parsing
+     * the same class file.
+     * @param cr the reader of the class file.
+     * @param clazz the class parsed out of it.
+     */
+    static void bind(ClassReader cr, ClassData clazz) {
+        bind(cr, clazz.getAnnotations(), clazz.getMethods());
+    }
+
+    /**
+     * Record the annotation values of a class and its methods, given as
+     * parsed, so the class being populated is not accessed.
+     * @param cr the reader of the class file.
+     * @param annotations the annotations of the class.
+     * @param methods the methods of the class.
+     */
+    static void bind(ClassReader cr, List<AnnotationData> annotations, List<MethodData> methods) {
+        if (!hasLazyAnnotations(annotations, methods)) {
+            return;
+        }
+        Map<String, MethodData> methodsByKey = new HashMap<String, MethodData>(methods.size() * 4 / 3 + 1);
+        for (MethodData method : methods) {
+            String key = method.getName() + method.getDescriptor();
+            if (!methodsByKey.containsKey(key)) {
+                methodsByKey.put(key, method);
+            }
+        }
+        char[] buf = new char[cr.getMaxStringLength()];
+        int u = cr.header + 6;
+        u += 2 + 2 * cr.readUnsignedShort(u);
+        // u + 2 is the offset of the current member, the annotations of the fields are not kept.
+        for (int i = cr.readUnsignedShort(u); i > 0; i--) {
+            u = bindAttributes(cr, u + 8, null, buf) - 2;
+        }
+        u += 2;
+        for (int i = cr.readUnsignedShort(u); i > 0; i--) {
+            MethodData method = methodsByKey.get(cr.readUTF8(u + 4, buf) + cr.readUTF8(u + 6, buf));
+            u = bindAttributes(cr, u + 8, method != null ? method.getAnnotations() : null, buf) - 2;
+        }
+        bindAttributes(cr, u + 2, annotations, buf);
+    }
+
+    private static boolean hasLazyAnnotations(List<AnnotationData> annotations, List<MethodData> methods) {
+        if (!annotations.isEmpty()) {
+            return true;
+        }
+        for (MethodData method : methods) {
+            if (!method.getAnnotations().isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Bind the annotations found in the attributes of a class or a member.
+     * @param cr the reader of the class file.
+     * @param u the offset of the attributes count.
+     * @param annotations the annotations of the item the attributes belong to, null if not kept.
+     * @param buf the buffer used to read the strings.
+     * @return the offset following the attributes.
+     */
+    private static int bindAttributes(ClassReader cr, int u, List<AnnotationData> annotations, char[] buf) {
+        int visible = 0;
+        int invisible = 0;
+        int count = cr.readUnsignedShort(u);
+        u += 2;
+        for (int i = 0; i < count; i++) {
+            String name = cr.readUTF8(u, buf);
+            if ("RuntimeVisibleAnnotations".equals(name)) {
+                visible = u + 6;
+            } else if ("RuntimeInvisibleAnnotations".equals(name)) {
+                invisible = u + 6;
+            }
+            u += 6 + cr.readInt(u + 2);
+        }
+        if (annotations != null) {
+            // the ClassReader visits the visible annotations first.
+            int index = bindAnnotations(cr, visible, annotations, 0);
+            bindAnnotations(cr, invisible, annotations, index);
+        }
+        return u;
+    }
+
+    private static int bindAnnotations(ClassReader cr, int offset, List<AnnotationData> annotations, int index) {
+        if (offset == 0) {
+            return index;
+        }
+        int v = offset + 2;
+        for (int i = cr.readUnsignedShort(offset); i > 0 && index < annotations.size(); i--) {
+            AnnotationData annotation = annotations.get(index++);
+            v += 2;
+            int count = cr.readUnsignedShort(v);
+            int end = skipValues(cr.b, v + 2, count, true);
+            if (count > 0 && annotation instanceof LazyAnnotationData) {
+                ((LazyAnnotationData)annotation).setValues(copy(cr, v, end));
+            }
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine("    (annotation) " + annotation.getDesc() + " " + annotation.isVisible());
+            }
+            v = end;
+        }
+        return index;
+    }
+
+    /**
+     * Copy the element values of an annotation and the constants they use.
+     * @param cr the reader of the class file.
+     * @param start the offset of the element values count.
+     * @param end the offset following the element values.
+     * @return the dumper of the copy.
+     */
+    private static AnnotationDumper copy(ClassReader cr, int start, int end) {
+        byte[] values = Arrays.copyOfRange(cr.b, start, end);
+        ConstantCopy copy = new ConstantCopy(cr);
+        int v = 2;
+        for (int i = readUnsignedShort(values, 0); i > 0; i--) {
+            copy.renumber(values, v);
+            v = copy.renumberValue(values, v + 2);
+        }
+        return new AnnotationDumper(values, Arrays.copyOf(copy.constants, copy.length),
+                Arrays.copyOf(copy.offsets, copy.count));
+    }
+
+    /**
+     * The constant pool entries used by the element values of an annotation.
+     */
+    private static final class ConstantCopy {
+        private final ClassReader cr;
+        private final Map<Integer, Integer> indexes = new HashMap<Integer, Integer>();
+        private byte[] constants = new byte[64];
+        private int length;
+        private int[] offsets = new int[8];
+        private int count;
+
+        ConstantCopy(ClassReader cr) {
+            this.cr = cr;
+        }
+
+        /**
+         * Renumber the constants of an element value, only the ones the
+         * decoding reads are copied.
+         * @return the offset following the value.
+         */
+        int renumberValue(byte[] values, int v) {
+            switch (values[v] & 0xFF) {
+            case 'B':
+            case 'C':
+            case 'I':
+            case 'S':
+            case 'Z':
+            case 'D':
+            case 'F':
+            case 'J':
+            case 's':
+            case 'c':
+                renumber(values, v + 1);
+                return v + 3;
+            case '[':
+                int size = readUnsignedShort(values, v + 1);
+                if (size > 0 && isPrimitive(values[v + 3] & 0xFF)) {
+                    for (int i = 0; i < size; i++) {
+                        renumber(values, v + 4 + 3 * i);
+                    }
+                    return v + 3 + 3 * size;
+                }
+                return skipValues(values, v + 3, size, false);
+            default:
+                return skipValue(values, v);
+            }
+        }
+
+        /**
+         * Copy the constant an index refers to, and replace the index by
+         * the one of the copy.
+         */
+        void renumber(byte[] values, int v) {
+            int index = readUnsignedShort(values, v);
+            Integer local = indexes.get(index);
+            if (local == null) {
+                int item = cr.getItem(index);
+                int size;
+                switch (cr.b[item - 1]) {
+                case UTF8:
+                    size = 2 + cr.readUnsignedShort(item);
+                    break;
+                case INTEGER:
+                case FLOAT:
+                    size = 4;
+                    break;
+                case LONG:
+                case DOUBLE:
+                    size = 8;
+                    break;
+                default:
+                    size = 0;
+                }
+                if (length + size > constants.length) {
+                    constants = Arrays.copyOf(constants, Math.max(length + size, constants.length * 2));
+                }
+                System.arraycopy(cr.b, item, constants, length, size);
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                offsets[count] = length;
+                length += size;
+                local = count++;
+                indexes.put(index, local);
+            }
+            values[v] = (byte)(local.intValue() >>> 8);
+            values[v + 1] = (byte)local.intValue();
+        }
+    }
+
+    /**
+     * Decode the values of an annotation.
+     * @param annotation the annotation to populate.
+     */
+    void decode(AnnotationData annotation) {
+        int v = 2;
+        for (int i = readUnsignedShort(values, 0); i > 0; i--) {
+            String name = readUTF8(readUnsignedShort(values, v));
+            v = decodeValue(v + 2, name, annotation);
+        }
+    }
+
+    private int decodeValue(int v, String name, AnnotationData annotation) {
+        int tag = values[v++] & 0xFF;
+        switch (tag) {
+        case 'B':
+            annotation.put(name, Byte.valueOf((byte)readInt(constant(v))));
+            return v + 2;
+        case 'Z':
+            annotation.put(name, Boolean.valueOf(readInt(constant(v)) != 0));
+            return v + 2;
+        case 'S':
+            annotation.put(name, Short.valueOf((short)readInt(constant(v))));
+            return v + 2;
+        case 'C':
+            annotation.put(name, Character.valueOf((char)readInt(constant(v))));
+            return v + 2;
+        case 'I':
+            annotation.put(name, Integer.valueOf(readInt(constant(v))));
+            return v + 2;
+        case 'J':
+            annotation.put(name, Long.valueOf(readLong(constant(v))));
+            return v + 2;
+        case 'F':
+            annotation.put(name, Float.valueOf(Float.intBitsToFloat(readInt(constant(v)))));
+            return v + 2;
+        case 'D':
+            annotation.put(name, Double.valueOf(Double.longBitsToDouble(readLong(constant(v)))));
+            return v + 2;
+        case 's':
+            annotation.put(name, readUTF8(readUnsignedShort(values, v)));
+            return v + 2;
+        case 'c':
+            annotation.put(name, Type.getType(readUTF8(readUnsignedShort(values, v))));
+            return v + 2;
+        case '[':
+            return decodeArray(v, name, annotation);
+        default:
+            return skipValue(values, v - 1);
+        }
+    }
+
+    private int decodeArray(int v, String name, AnnotationData annotation) {
+        int size = readUnsignedShort(values, v);
+        if (size == 0) {
+            return v + 2;
+        }
+        // the elements are a tag followed by a constant index.
+        int tag = values[v + 2] & 0xFF;
+        int u = v + 3;
+        Object array;
+        switch (tag) {
+        case 'B':
+            byte[] bytes = new byte[size];
+            for (int i = 0; i < size; i++, u += 3) {
+                bytes[i] = (byte)readInt(constant(u));
+            }
+            array = bytes;
+            break;
+        case 'Z':
+            boolean[] booleans = new boolean[size];
+            for (int i = 0; i < size; i++, u += 3) {
+                booleans[i] = readInt(constant(u)) != 0;
+            }
+            array = booleans;
+            break;
+        case 'S':
+            short[] shorts = new short[size];
+            for (int i = 0; i < size; i++, u += 3) {
+                shorts[i] = (short)readInt(constant(u));
+            }
+            array = shorts;
+            break;
+        case 'C':
+            char[] chars = new char[size];
+            for (int i = 0; i < size; i++, u += 3) {
+                chars[i] = (char)readInt(constant(u));
+            }
+            array = chars;
+            break;
+        case 'I':
+            int[] ints = new int[size];
+            for (int i = 0; i < size; i++, u += 3) {
+                ints[i] = readInt(constant(u));
+            }
+            array = ints;
+            break;
+        case 'J':
+            long[] longs = new long[size];
+            for (int i = 0; i < size; i++, u += 3) {
+                longs[i] = readLong(constant(u));
+            }
+            array = longs;
+            break;
+        case 'F':
+            float[] floats = new float[size];
+            for (int i = 0; i < size; i++, u += 3) {
+                floats[i] = Float.intBitsToFloat(readInt(constant(u)));
+            }
+            array = floats;
+            break;
+        case 'D':
+            double[] doubles = new double[size];
+            for (int i = 0; i < size; i++, u += 3) {
+                doubles[i] = Double.longBitsToDouble(readLong(constant(u)));
+            }
+            array = doubles;
+            break;
+        default:
+            return skipValues(values, v + 2, size, false);
+        }
+        annotation.put(name, array);
+        return u - 1;
+    }
+
+    /**
+     * @param v the offset of a constant index in the values.
+     * @return the offset of the constant in the copied entries.
+     */
+    private int constant(int v) {
+        return offsets[readUnsignedShort(values, v)];
+    }
+
+    private int readInt(int u) {
+        byte[] b = constants;
+        return ((b[u] & 0xFF) << 24) | ((b[u + 1] & 0xFF) << 16) | ((b[u + 2] & 0xFF) << 8) | (b[u + 3] & 0xFF);
+    }
+
+    private long readLong(int u) {
+        return ((long)readInt(u) << 32) | (readInt(u + 4) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Decode a modified UTF-8 constant, as the ClassReader does.
+     * @param index the index of the copied constant.
+     * @return the string.
+     */
+    private String readUTF8(int index) {
+        int u = offsets[index];
+        int end = u + 2 + readUnsignedShort(constants, u);
+        u += 2;
+        char[] chars = new char[end - u];
+        int length = 0;
+        while (u < end) {
+            int c = constants[u++] & 0xFF;
+            if (c < 0x80) {
+                chars[length++] = (char)c;
+            } else if (c < 0xE0) {
+                chars[length++] = (char)(((c & 0x1F) << 6) | (constants[u++] & 0x3F));
+            } else {
+                chars[length++] = (char)(((c & 0x0F) << 12) | ((constants[u++] & 0x3F) << 6) | (constants[u++] & 0x3F));
+            }
+        }
+        return new String(chars, 0, length);
+    }
+
+    private static boolean isPrimitive(int tag) {
+        return tag == 'B' || tag == 'Z' || tag == 'S' || tag == 'C' || tag == 'I' || tag == 'J' || tag == 'F' || tag == 'D';
+    }
+
+    private static int readUnsignedShort(byte[] b, int u) {
+        return ((b[u] & 0xFF) << 8) | (b[u + 1] & 0xFF);
+    }
 
-    public AnnotationDumper(JavaItem owner, String desc, boolean visible) {
-        super(Opcodes.ASM4);
-        logger.fine("    (annotation) " + desc + " " + visible);
-        this.annotation = new AnnotationData(desc, visible); 
-        owner.add(annotation);
+    /**
+     * Skip element values.
+     * @param b the bytes holding the values.
+     * @param v the offset of the first value.
+     * @param count the number of values.
+     * @param named true if each value is preceded by its name.
+     * @return the offset following the values.
+     */
+    private static int skipValues(byte[] b, int v, int count, boolean named) {
+        for (int i = 0; i < count; i++) {
+            v = skipValue(b, named ? v + 2 : v);
+        }
+        return v;
     }
 
-    @Override
-    public void visit(String name, Object value) {
-        this.annotation.put(name, value);
+    private static int skipValue(byte[] b, int v) {
+        switch (b[v] & 0xFF) {
+        case 'e':
+            return v + 5;
+        case '@':
+            return skipValues(b, v + 5, readUnsignedShort(b, v + 3), true);
+        case '[':
+            return skipValues(b, v + 3, readUnsignedShort(b, v + 1), false);
+        default:
+            return v + 3;
+        }
     }
-    
-}
\ No newline at end of file
+}
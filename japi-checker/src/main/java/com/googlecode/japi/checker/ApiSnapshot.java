@@ -0,0 +1,436 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.objectweb.asm.Type;
+
+import com.googlecode.japi.checker.model.AnnotationData;
+import com.googlecode.japi.checker.model.AttributeData;
+import com.googlecode.japi.checker.model.ClassData;
+import com.googlecode.japi.checker.model.FieldData;
+import com.googlecode.japi.checker.model.JavaItem;
+import com.googlecode.japi.checker.model.MethodData;
+
+/**
+ * Binary snapshot of the API of an artifact, which can be used as
+ * reference instead of the artifact and its dependencies.
+ *
+ * A snapshot contains the model of all the classes of the artifact, and
+ * the classes of its dependencies reachable through the super classes,
+ * interfaces and declared exceptions of the artifact classes.
+ *
+ * The format is a header (magic number, format version and parse
+ * profile), a string table, then the artifact and the dependency classes.
+ * Strings are written once in the table and referenced by index. The
+ * items keep all their ASM access flags, including the synthetic, bridge
+ * and enum ones. The method line numbers are not kept, only the ones of
+ * the new version are reported.
+ */
+public final class ApiSnapshot {
+    static final int MAGIC = 0x4A415049; // JAPI
+    static final int FORMAT_VERSION = 1;
+
+    static final byte NULL = 0;
+    static final byte BYTE = 'B';
+    static final byte BOOLEAN = 'Z';
+    static final byte CHAR = 'C';
+    static final byte SHORT = 'S';
+    static final byte INT = 'I';
+    static final byte LONG = 'J';
+    static final byte FLOAT = 'F';
+    static final byte DOUBLE = 'D';
+    static final byte STRING = 's';
+    static final byte TYPE = 'T';
+    static final byte ARRAY = '[';
+
+    private ApiSnapshot() { }
+
+    /**
+     * Check if a file is an API snapshot, based on its magic number.
+     * @param file the file to check.
+     * @return true if the file is a snapshot.
+     */
+    public static boolean isSnapshot(File file) {
+        if (!file.isFile()) {
+            return false;
+        }
+        DataInputStream is = null;
+        try {
+            is = new DataInputStream(new FileInputStream(file));
+            return is.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            if (is != null) {
+                try {
+                    is.close();
+                } catch (IOException e) {
+                    // swallow the exception...
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the snapshot of an artifact into a file.
+     * @param loader the loader which read the artifact and its dependencies.
+     * @param artifact the artifact URI.
+     * @param profile the profile the loader used to parse the classes.
+     * @param snapshot the file to write.
+     * @throws IOException in case of writing error.
+     */
+    public static void write(ClassDataLoader loader, URI artifact, ParseProfile profile, File snapshot) throws IOException {
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(snapshot));
+        try {
+            write(loader, artifact, profile, os);
+        } finally {
+            os.close();
+        }
+    }
+
+    /**
+     * Write the snapshot of an artifact to a stream.
+     * @param loader the loader which read the artifact and its dependencies.
+     * @param artifact the artifact URI.
+     * @param profile the profile the loader used to parse the classes.
+     * @param os the stream to write to, it is not closed.
+     * @throws IOException in case of writing error.
+     */
+    public static void write(ClassDataLoader loader, URI artifact, ParseProfile profile, OutputStream os) throws IOException {
+        List<ClassData> classes = loader.getClasses(artifact);
+        List<ClassData> dependencies = getHierarchyClosure(loader, classes);
+        Writer writer = new Writer();
+        writer.writeClasses(classes);
+        writer.writeClasses(dependencies);
+        DataOutputStream dos = new DataOutputStream(os);
+        dos.writeInt(MAGIC);
+        dos.writeShort(FORMAT_VERSION);
+        dos.writeUTF(profile.name());
+        writer.writeTo(dos);
+        dos.flush();
+    }
+
+    /**
+     * Get the classes outside of the artifact which are reachable from the
+     * artifact classes through inheritance and declared exceptions.
+     * @param loader the loader to resolve the classes from.
+     * @param classes the artifact classes.
+     * @return the dependency classes.
+     */
+    private static List<ClassData> getHierarchyClosure(ClassDataLoader loader, List<ClassData> classes) {
+        Set<String> visited = new HashSet<String>();
+        LinkedList<String> pending = new LinkedList<String>();
+        for (ClassData clazz : classes) {
+            visited.add(clazz.getName());
+        }
+        for (ClassData clazz : classes) {
+            addHierarchy(clazz, pending);
+            for (MethodData method : clazz.getMethods()) {
+                pending.addAll(method.getExceptions());
+            }
+        }
+        List<ClassData> result = new ArrayList<ClassData>();
+        while (!pending.isEmpty()) {
+            String name = pending.removeFirst();
+            if (name != null && visited.add(name)) {
+                ClassData clazz = loader.fromName(name);
+                if (clazz != null) {
+                    result.add(clazz);
+                    addHierarchy(clazz, pending);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void addHierarchy(ClassData clazz, List<String> pending) {
+        pending.add(clazz.getSuperName());
+        pending.addAll(clazz.getInterfaces());
+    }
+
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed snapshot: invalid integer.");
+    }
+
+    /**
+     * Serialize the classes, collecting the strings on the way.
+     */
+    private static class Writer {
+        private final Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(buffer);
+
+        void writeTo(DataOutputStream dos) throws IOException {
+            writeVarInt(dos, strings.size());
+            for (String str : strings.keySet()) {
+                dos.writeUTF(str);
+            }
+            out.flush();
+            buffer.writeTo(dos);
+        }
+
+        void writeClasses(List<ClassData> classes) throws IOException {
+            writeVarInt(out, classes.size());
+            for (ClassData clazz : classes) {
+                writeString(clazz.getName());
+                out.writeInt(clazz.getAccess());
+                writeString(clazz.getSignature());
+                writeString(clazz.getSuperName());
+                writeStrings(clazz.getInterfaces());
+                out.writeInt(clazz.getVersion());
+                writeString(clazz.getSource());
+                writeAnnotations(clazz);
+                writeVarInt(out, clazz.getFields().size());
+                for (FieldData field : clazz.getFields()) {
+                    writeString(field.getName());
+                    out.writeInt(field.getAccess());
+                    writeString(field.getDescriptor());
+                    writeString(field.getSignature());
+                    writeValue(field.getValue());
+                    writeAnnotations(field);
+                }
+                writeVarInt(out, clazz.getMethods().size());
+                for (MethodData method : clazz.getMethods()) {
+                    writeString(method.getName());
+                    out.writeInt(method.getAccess());
+                    writeString(method.getDescriptor());
+                    writeString(method.getSignature());
+                    writeStrings(method.getExceptions());
+                    writeAnnotations(method);
+                }
+                writeVarInt(out, clazz.getAttributes().size());
+                for (AttributeData attribute : clazz.getAttributes()) {
+                    writeString(attribute.getName());
+                    out.writeInt(attribute.getAccess());
+                }
+            }
+        }
+
+        private void writeAnnotations(JavaItem item) throws IOException {
+            writeVarInt(out, item.getAnnotations().size());
+            for (AnnotationData annotation : item.getAnnotations()) {
+                writeString(annotation.getDesc());
+                out.writeBoolean(annotation.isVisible());
+                writeVarInt(out, annotation.size());
+                for (Map.Entry<String, Object> entry : annotation.entrySet()) {
+                    writeString(entry.getKey());
+                    writeValue(entry.getValue());
+                }
+            }
+        }
+
+        private void writeStrings(List<String> values) throws IOException {
+            writeVarInt(out, values.size());
+            for (String value : values) {
+                writeString(value);
+            }
+        }
+
+        /**
+         * Write a string reference, 0 stands for null.
+         */
+        private void writeString(String str) throws IOException {
+            if (str == null) {
+                writeVarInt(out, 0);
+                return;
+            }
+            Integer index = strings.get(str);
+            if (index == null) {
+                index = strings.size() + 1;
+                strings.put(str, index);
+            }
+            writeVarInt(out, index);
+        }
+
+        private void writeValue(Object value) throws IOException {
+            if (value == null) {
+                out.writeByte(NULL);
+            } else if (value instanceof Byte) {
+                out.writeByte(BYTE);
+                out.writeByte((Byte)value);
+            } else if (value instanceof Boolean) {
+                out.writeByte(BOOLEAN);
+                out.writeBoolean((Boolean)value);
+            } else if (value instanceof Character) {
+                out.writeByte(CHAR);
+                out.writeChar((Character)value);
+            } else if (value instanceof Short) {
+                out.writeByte(SHORT);
+                out.writeShort((Short)value);
+            } else if (value instanceof Integer) {
+                out.writeByte(INT);
+                out.writeInt((Integer)value);
+            } else if (value instanceof Long) {
+                out.writeByte(LONG);
+                out.writeLong((Long)value);
+            } else if (value instanceof Float) {
+                out.writeByte(FLOAT);
+                out.writeFloat((Float)value);
+            } else if (value instanceof Double) {
+                out.writeByte(DOUBLE);
+                out.writeDouble((Double)value);
+            } else if (value instanceof String) {
+                out.writeByte(STRING);
+                writeString((String)value);
+            } else if (value instanceof Type) {
+                out.writeByte(TYPE);
+                writeString(((Type)value).getDescriptor());
+            } else if (value.getClass().isArray() && value.getClass().getComponentType().isPrimitive()) {
+                // ASM only provides arrays of primitive types.
+                out.writeByte(ARRAY);
+                out.writeByte(Type.getDescriptor(value.getClass().getComponentType()).charAt(0));
+                int length = Array.getLength(value);
+                writeVarInt(out, length);
+                for (int i = 0; i < length; i++) {
+                    writeValue(Array.get(value, i));
+                }
+            } else {
+                throw new IOException("Unsupported value type: " + value.getClass().getName());
+            }
+        }
+    }
+
+    /**
+     * Read the strings and the values of a snapshot.
+     */
+    static class Reader {
+        private final DataInput in;
+        private final String[] strings;
+
+        Reader(DataInput in, SymbolTable symbols) throws IOException {
+            this.in = in;
+            strings = new String[readVarInt(in) + 1];
+            for (int i = 1; i < strings.length; i++) {
+                strings[i] = symbols.intern(in.readUTF());
+            }
+        }
+
+        String readString() throws IOException {
+            int index = readVarInt(in);
+            if (index >= strings.length) {
+                throw new IOException("Malformed snapshot: invalid string reference.");
+            }
+            return strings[index];
+        }
+
+        String[] readStrings() throws IOException {
+            String[] result = new String[readVarInt(in)];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = readString();
+            }
+            return result;
+        }
+
+        Object readValue() throws IOException {
+            byte tag = in.readByte();
+            switch (tag) {
+            case NULL:
+                return null;
+            case BYTE:
+                return in.readByte();
+            case BOOLEAN:
+                return in.readBoolean();
+            case CHAR:
+                return in.readChar();
+            case SHORT:
+                return in.readShort();
+            case INT:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case FLOAT:
+                return in.readFloat();
+            case DOUBLE:
+                return in.readDouble();
+            case STRING:
+                return readString();
+            case TYPE:
+                return Type.getType(readString());
+            case ARRAY:
+                return readArray();
+            default:
+                throw new IOException("Malformed snapshot: unknown value type " + tag + ".");
+            }
+        }
+
+        private Object readArray() throws IOException {
+            Class<?> type = PRIMITIVES.get(in.readByte());
+            if (type == null) {
+                throw new IOException("Malformed snapshot: invalid array type.");
+            }
+            int length = readVarInt(in);
+            Object array = Array.newInstance(type, length);
+            try {
+                for (int i = 0; i < length; i++) {
+                    Array.set(array, i, readValue());
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Malformed snapshot: invalid array element.");
+            }
+            return array;
+        }
+    }
+
+    private static final Map<Byte, Class<?>> PRIMITIVES = new HashMap<Byte, Class<?>>();
+    static {
+        PRIMITIVES.put(BYTE, byte.class);
+        PRIMITIVES.put(BOOLEAN, boolean.class);
+        PRIMITIVES.put(CHAR, char.class);
+        PRIMITIVES.put(SHORT, short.class);
+        PRIMITIVES.put(INT, int.class);
+        PRIMITIVES.put(LONG, long.class);
+        PRIMITIVES.put(FLOAT, float.class);
+        PRIMITIVES.put(DOUBLE, double.class);
+    }
+}
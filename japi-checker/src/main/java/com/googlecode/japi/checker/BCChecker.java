@@ -15,11 +15,21 @@
  */
 package com.googlecode.japi.checker;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.googlecode.japi.checker.Severity;
 import com.googlecode.japi.checker.Reporter.Report;
@@ -35,11 +45,16 @@ import com.googlecode.japi.checker.utils.AntPatternMatcher;
  * 
  */
 public class BCChecker {
+    // the number of classes parsed and checked ahead of the reporting.
+    private static final int PIPELINE_DEPTH = 64;
     private List<File> referenceClasspath = new ArrayList<File>();
     private List<File> newArtifactClasspath = new ArrayList<File>();
     private List<AntPatternMatcher> includes = new ArrayList<AntPatternMatcher>();
     private List<AntPatternMatcher> excludes = new ArrayList<AntPatternMatcher>();
-    private ClassDataLoaderFactory classDataLoaderFactory = new DefaultClassDataLoaderFactory();
+    private ClassDataLoaderFactory classDataLoaderFactory;
+    private Executor executor;
+    private ParseProfile parseProfile;
+    private boolean streaming;
     private boolean warnOnDependencyLoadingError;
     private Reporter reporter;
     private List<Rule> rules = Collections.emptyList();
@@ -106,27 +121,675 @@ public class BCChecker {
         this.rules = rules;
     }
 
+    /**
+     * Defines the factory used to create the ClassDataLoader of the reference
+     * and the new artifact. By default the checker uses its own implementation,
+     * configured with the executor and the parse profile of this checker.
+     * When the reference is an API snapshot, the loaders of the factory must
+     * be able to read it, e.g: the ones of a {@link SnapshotClassDataLoaderFactory}.
+     * @param classDataLoaderFactory the factory to use, null to use the default one.
+     */
+    public void setClassDataLoaderFactory(ClassDataLoaderFactory classDataLoaderFactory) {
+        this.classDataLoaderFactory = classDataLoaderFactory;
+    }
+
+    /**
+     * Get the factory used to create the ClassDataLoader instances.
+     * @return the factory.
+     */
+    public ClassDataLoaderFactory getClassDataLoaderFactory() {
+        if (classDataLoaderFactory == null) {
+            return new DefaultClassDataLoaderFactory(executor, getParseProfile());
+        }
+        return classDataLoaderFactory;
+    }
+
+    /**
+     * Defines the executor used to load both sides and their classpath
+     * entries, to parse archive entries and to check the classes
+     * concurrently, see {@link Rule} for the rules contract.
+     * The reporter is only called from the thread running the check, the
+     * loading messages and errors come in the same order as without executor.
+     * The checker does not shutdown the executor, this remains the caller
+     * responsibility. If not defined, everything runs on the calling thread.
+     * @param executor the executor to use, or null.
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Get the executor used to parse archive entries and check the classes.
+     * @return the executor, or null if none is defined.
+     */
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Defines how much of the class files is parsed. If not defined, the
+     * cheapest profile satisfying all the rules is used.
+     * @param parseProfile the profile to use, or null to select it from the rules.
+     */
+    public void setParseProfile(ParseProfile parseProfile) {
+        this.parseProfile = parseProfile;
+    }
+
+    /**
+     * Get the profile used to parse the class files.
+     * @return the configured profile, or the one required by the rules.
+     */
+    public ParseProfile getParseProfile() {
+        if (parseProfile == null) {
+            return ParseProfile.of(rules);
+        }
+        return parseProfile;
+    }
+
+    /**
+     * Defines if archives are compared in streaming mode. In this mode the
+     * classes of the reference and the new archive are walked in sorted
+     * name order, each pair being parsed, checked and released in turn.
+     * Only the classes resolved by name from the rules, e.g: the super
+     * classes, are kept in memory. The reports are in class name order.
+     * When an executor is defined, the pairs are parsed and checked as a
+     * pipeline: a bounded number of pairs is processed ahead by the
+     * executor while the reports of the completed pairs are delivered, so
+     * the first reports do not wait for the whole archives.
+     * Directories, snapshots and custom ClassDataLoader implementations
+     * are always loaded in memory.
+     * @param streaming true to enable the streaming mode.
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    /**
+     * @return true if archives are compared in streaming mode.
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
     /**
      * Run the check between the reference and the newArtifact.
+     * The reference can also be an API snapshot written by
+     * {@link #exportReferenceSnapshot(File, File)}, in which case the
+     * reference classpath is not needed.
      * @param reference
      * @param newArtifact
      * @throws IOException
      */
-    public void checkBacwardCompatibility(File reference, File newArtifact) throws IOException {
+    public void checkBacwardCompatibility(final File reference, final File newArtifact) throws IOException {
         if (reference == null) {
             throw new IllegalArgumentException("The reference parameter cannot be null.");
         }
         if (newArtifact == null) {
             throw new IllegalArgumentException("The newArtifact parameter cannot be null.");
         }
-        if (!reference.isDirectory() && !Utils.isArchive(reference)) {
+        boolean snapshot = ApiSnapshot.isSnapshot(reference);
+        if (!snapshot && !reference.isDirectory() && !Utils.isArchive(reference)) {
             throw new IllegalArgumentException("reference must be either a directory" +
-                    " or a jar (or a zip kind of archive) file");
+                    ", a jar (or a zip kind of archive) file or an API snapshot");
         }
         if (!newArtifact.isDirectory() && !Utils.isArchive(newArtifact)) {
             throw new IllegalArgumentException("new artifact must be either a directory" + 
                     " or a jar (or a zip kind of archive) file");
         }
+        Reporter reporter = getReporterOrStub();
+        // the names read on both sides are shared for the duration of the check.
+        SymbolTable symbols = new SymbolTable();
+        // as well as the dependency archives found on both classpaths.
+        SharedArchives archives = new SharedArchives();
+        ClassDataLoaderFactory factory = classDataLoaderFactory;
+        if (factory == null) {
+            factory = new DefaultClassDataLoaderFactory(executor, getParseProfile(), symbols, archives);
+        }
+        if (streaming && !snapshot && !reference.isDirectory() && !newArtifact.isDirectory()) {
+            final ClassDataLoader referenceDataLoader = factory.createClassDataLoader();
+            final ClassDataLoader newArtifactDataLoader = factory.createClassDataLoader();
+            if (referenceDataLoader instanceof DefaultClassDataLoader && newArtifactDataLoader instanceof DefaultClassDataLoader) {
+                try {
+                    checkStreaming(reference, referenceDataLoader, newArtifact, newArtifactDataLoader, reporter);
+                } finally {
+                    close(referenceDataLoader, newArtifactDataLoader);
+                    close(archives);
+                }
+                return;
+            }
+        }
+        final ClassDataLoaderFactory newArtifactFactory = factory;
+        final ClassDataLoaderFactory referenceFactory = snapshot && classDataLoaderFactory == null
+                ? new SnapshotClassDataLoaderFactory(executor, getParseProfile(), symbols, archives) : factory;
+        ClassDataLoader referenceDataLoader = referenceFactory.createClassDataLoader();
+        ClassDataLoader newArtifactDataLoader = newArtifactFactory.createClassDataLoader();
+        try {
+            check(reference, referenceDataLoader, snapshot, newArtifact, newArtifactDataLoader, reporter);
+        } finally {
+            close(referenceDataLoader, newArtifactDataLoader);
+            close(archives);
+        }
+    }
+
+    /**
+     * Compare two archives in streaming mode, see {@link #setStreaming(boolean)}.
+     * @param reference the reference archive.
+     * @param referenceDataLoader the reference loader.
+     * @param newArtifact the new archive.
+     * @param newArtifactDataLoader the new artifact loader.
+     * @param reporter the reporter.
+     * @throws IOException
+     */
+    private void checkStreaming(final File reference, final ClassDataLoader referenceDataLoader,
+            final File newArtifact, final ClassDataLoader newArtifactDataLoader, Reporter reporter) throws IOException {
+        load(reporter, new Loading() {
+            @Override
+            public ClassDataLoader load(Reporter reporter) throws IOException {
+                return BCChecker.this.load(referenceDataLoader, reference, true, ClassFilter.ALL, referenceClasspath, reporter,
+                        "Streaming reference artifact: ", "Reading reference dependency: ");
+            }
+        }, new Loading() {
+            @Override
+            public ClassDataLoader load(Reporter reporter) throws IOException {
+                return BCChecker.this.load(newArtifactDataLoader, newArtifact, true, ClassFilter.ALL, newArtifactClasspath, reporter,
+                        "Streaming artifact: ", "Reading dependency: ");
+            }
+        });
+        checkStreaming(((DefaultClassDataLoader)referenceDataLoader).getLazyReader(reference.toURI()),
+                ((DefaultClassDataLoader)newArtifactDataLoader).getLazyReader(newArtifact.toURI()), reporter);
+        handleReadErrors(reporter, referenceDataLoader, newArtifactDataLoader);
+    }
+
+    /**
+     * Compare the reference and the new artifact, once both are loaded.
+     * @param reference the reference directory, archive or snapshot.
+     * @param referenceDataLoader the reference loader.
+     * @param snapshot true if the reference is a snapshot.
+     * @param newArtifact the new artifact.
+     * @param newArtifactDataLoader the new artifact loader.
+     * @param reporter the reporter.
+     * @throws IOException
+     */
+    private void check(final File reference, final ClassDataLoader referenceDataLoader, boolean snapshot,
+            final File newArtifact, final ClassDataLoader newArtifactDataLoader, Reporter reporter) throws IOException {
+        final String referenceMessage = snapshot ? "Reading reference snapshot: " : "Reading reference artifact: ";
+        // the class files which are not checked are only parsed if needed by the rules.
+        final ClassFilter filter = new ClassFilter(includes, excludes);
+        // with an executor, the reference classes are only listed, the pipeline parses them.
+        final ClassFilter referenceFilter = executor != null && !snapshot ? filter.deferAll() : filter;
+        // both sides are independent until the classes get paired.
+        ClassDataLoader[] loaders = load(reporter, new Loading() {
+            @Override
+            public ClassDataLoader load(Reporter reporter) throws IOException {
+                return BCChecker.this.load(referenceDataLoader, reference, false, referenceFilter, referenceClasspath, reporter,
+                        referenceMessage, "Reading reference dependency: ");
+            }
+        }, new Loading() {
+            @Override
+            public ClassDataLoader load(Reporter reporter) throws IOException {
+                return BCChecker.this.load(newArtifactDataLoader, newArtifact, false, filter, newArtifactClasspath, reporter,
+                        "Reading artifact: ", "Reading dependency: ");
+            }
+        });
+        List<ClassData> newData = newArtifactDataLoader.getClasses(newArtifact.toURI(), includes, excludes);
+        final Map<String, ClassData> newIndex = indexByName(newData);
+        AbstractClassReader referenceReader = null;
+        if (referenceFilter != filter && referenceDataLoader instanceof DefaultClassDataLoader) {
+            referenceReader = ((DefaultClassDataLoader)referenceDataLoader).getReader(reference.toURI());
+        }
+        // the artifact is read again as a whole if it is part of its own classpath.
+        if (referenceReader != null && referenceReader.getFilter() == referenceFilter) {
+            checkPipelined((DefaultClassDataLoader)referenceDataLoader, referenceReader, filter, newIndex, reporter);
+        } else if (executor == null || !isThreadSafe(rules)) {
+            for (ClassData clazz : referenceDataLoader.getClasses(reference.toURI(), includes, excludes)) {
+                check(reporter, clazz, newIndex.get(clazz.getName()));
+            }
+        } else {
+            // pairs are checked concurrently, each one reporting to its own buffer
+            // so the reports can be replayed in order from this thread.
+            final List<ClassData> referenceData = referenceDataLoader.getClasses(reference.toURI(), includes, excludes);
+            final List<List<Report>> reports = new ArrayList<List<Report>>(Collections.<List<Report>>nCopies(referenceData.size(), null));
+            ParallelTasks.execute(executor, referenceData.size(), new ParallelTasks.Task() {
+                @Override
+                public void run(int index) {
+                    BufferedReporter buffer = new BufferedReporter();
+                    ClassData clazz = referenceData.get(index);
+                    check(buffer, clazz, newIndex.get(clazz.getName()));
+                    reports.set(index, buffer.getReports());
+                }
+            });
+            for (List<Report> pairReports : reports) {
+                for (Report report : pairReports) {
+                    reporter.report(report);
+                }
+            }
+        }
+        handleReadErrors(reporter, referenceDataLoader, newArtifactDataLoader);
+    }
+
+    /**
+     * Check the classes of the reference artifact while they are parsed.
+     * The reference loader has only listed them, each class is parsed, and
+     * checked if the rules allow it, as a stage of the pipeline; the stages
+     * are completed in the order of the reference artifact.
+     * @param referenceLoader the reference loader.
+     * @param reader the reader of the reference artifact.
+     * @param filter the filter of the checked classes.
+     * @param newIndex the classes of the new artifact, by name.
+     * @param reporter the reporter.
+     * @throws IOException
+     */
+    private void checkPipelined(DefaultClassDataLoader referenceLoader, AbstractClassReader reader, ClassFilter filter,
+            Map<String, ClassData> newIndex, Reporter reporter) throws IOException {
+        ClassDumper.Pool dumpers = new ClassDumper.Pool(referenceLoader, referenceLoader.getParseProfile());
+        boolean concurrent = isThreadSafe(rules);
+        Pipeline pipeline = new Pipeline(reporter);
+        try {
+            for (String name : reader.getOnDemandClassNames()) {
+                if (filter.matches(name + ".class")) {
+                    pipeline.add(new DeferredClass(name, reader, dumpers, newIndex, concurrent));
+                }
+            }
+            pipeline.finish();
+        } finally {
+            pipeline.close();
+        }
+    }
+
+    /**
+     * Compare two archives class by class, walking their class names in
+     * sorted order. With an executor each pair is parsed, and checked if
+     * the rules allow it, as a stage of the pipeline.
+     * @param referenceReader the reader of the reference archive.
+     * @param newReader the reader of the new archive.
+     * @param reporter the reporter.
+     * @throws IOException
+     */
+    private void checkStreaming(LazyJarReader referenceReader, LazyJarReader newReader, Reporter reporter) throws IOException {
+        boolean concurrent = executor != null && isThreadSafe(rules);
+        List<String> newNames = newReader.getSortedClassNames(includes, excludes);
+        // the visitors are reused by the stages, and dropped with the pipeline.
+        ClassDumper.Pool referenceDumpers = referenceReader.newDumperPool();
+        ClassDumper.Pool newDumpers = newReader.newDumperPool();
+        Pipeline pipeline = new Pipeline(reporter);
+        try {
+            int next = 0;
+            for (String name : referenceReader.getSortedClassNames(includes, excludes)) {
+                while (next < newNames.size() && newNames.get(next).compareTo(name) < 0) {
+                    next++;
+                }
+                boolean paired = next < newNames.size() && newNames.get(next).equals(name);
+                pipeline.add(new StreamedClass(name, referenceReader, referenceDumpers,
+                        paired ? newReader : null, newDumpers, concurrent));
+            }
+            pipeline.finish();
+        } finally {
+            pipeline.close();
+        }
+    }
+
+    /**
+     * The stages run ahead of the reporting. With an executor, a stage is
+     * given to the executor when added, and completed on this thread once
+     * the pipeline is full or finished; the bounded pipeline keeps the
+     * memory usage of the streaming mode. Without executor, each stage is
+     * completed when added.
+     */
+    private final class Pipeline {
+        private final Deque<Stage> stages = new ArrayDeque<Stage>(PIPELINE_DEPTH);
+        private final Reporter reporter;
+
+        Pipeline(Reporter reporter) {
+            this.reporter = reporter;
+        }
+
+        void add(Stage stage) throws IOException {
+            if (executor == null) {
+                stage.complete(reporter);
+                return;
+            }
+            if (stages.size() == PIPELINE_DEPTH) {
+                stages.poll().complete(reporter);
+            }
+            stages.add(stage);
+            try {
+                executor.execute(stage);
+            } catch (RejectedExecutionException e) {
+                // the stage is run by this thread when completed.
+            }
+        }
+
+        /**
+         * Complete the remaining stages, in order.
+         * @throws IOException the error of a stage, if any.
+         */
+        void finish() throws IOException {
+            while (!stages.isEmpty()) {
+                stages.poll().complete(reporter);
+            }
+        }
+
+        /**
+         * Discard the stages left by a failure: the ones which have not
+         * started are not run, the running ones are waited for, so no
+         * stage runs once the check is over.
+         */
+        void close() {
+            boolean interrupted = false;
+            for (Stage stage : stages) {
+                interrupted |= stage.discard();
+            }
+            stages.clear();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * A stage of the pipeline: some reference classes and the index of their
+     * new versions. They are loaded, and checked if the rules allow it, by
+     * the thread running the stage, and reported by the thread completing it.
+     * A stage is run once, by the executor or by the thread completing it,
+     * whichever comes first.
+     */
+    private abstract class Stage implements Runnable {
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final boolean checkOnRun;
+        private BufferedReporter reports;
+        private Throwable failure;
+        List<ClassData> classes;
+        Map<String, ClassData> newIndex;
+
+        /**
+         * @param checkOnRun true to check the classes when they are loaded.
+         */
+        Stage(boolean checkOnRun) {
+            this.checkOnRun = checkOnRun;
+        }
+
+        /**
+         * Load the reference classes and the index of their new versions.
+         * @throws IOException in case of reading error.
+         */
+        abstract void load() throws IOException;
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                load();
+                if (checkOnRun) {
+                    BufferedReporter buffer = new BufferedReporter();
+                    check(buffer);
+                    reports = buffer;
+                }
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                done.countDown();
+            }
+        }
+
+        /**
+         * Run the stage on this thread if not started yet, wait for it
+         * and report it.
+         * @param reporter the reporter.
+         * @throws IOException the error of the stage, if any.
+         */
+        void complete(Reporter reporter) throws IOException {
+            run();
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while checking the classes.");
+            }
+            if (failure instanceof IOException) {
+                throw (IOException)failure;
+            } else if (failure instanceof RuntimeException) {
+                throw (RuntimeException)failure;
+            } else if (failure instanceof Error) {
+                throw (Error)failure;
+            } else if (failure != null) {
+                throw new IOException(failure);
+            }
+            if (reports == null) {
+                check(reporter);
+            } else {
+                for (Report report : reports.getReports()) {
+                    reporter.report(report);
+                }
+            }
+        }
+
+        /**
+         * Prevent the stage from running, or wait for it if already running.
+         * @return true if the waiting thread has been interrupted.
+         */
+        boolean discard() {
+            if (claimed.compareAndSet(false, true)) {
+                return false;
+            }
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    return interrupted;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+
+        private void check(Reporter reporter) {
+            for (ClassData clazz : classes) {
+                BCChecker.this.check(reporter, clazz, newIndex.get(clazz.getName()));
+            }
+        }
+    }
+
+    /**
+     * A class of the reference archive and its new version, streamed from
+     * the archives.
+     */
+    private final class StreamedClass extends Stage {
+        private final String name;
+        private final LazyJarReader referenceReader;
+        private final ClassDumper.Pool referenceDumpers;
+        private final LazyJarReader newReader;
+        private final ClassDumper.Pool newDumpers;
+
+        /**
+         * @param name the class name.
+         * @param referenceReader the reader of the reference archive.
+         * @param referenceDumpers the visitors parsing the reference archive.
+         * @param newReader the reader of the new archive, null if it does not contain the class.
+         * @param newDumpers the visitors parsing the new archive.
+         * @param checkOnRun true to check the class when it is parsed.
+         */
+        StreamedClass(String name, LazyJarReader referenceReader, ClassDumper.Pool referenceDumpers,
+                LazyJarReader newReader, ClassDumper.Pool newDumpers, boolean checkOnRun) {
+            super(checkOnRun);
+            this.name = name;
+            this.referenceReader = referenceReader;
+            this.referenceDumpers = referenceDumpers;
+            this.newReader = newReader;
+            this.newDumpers = newDumpers;
+        }
+
+        @Override
+        void load() throws IOException {
+            // the names of both versions are shared, for as long as they are kept.
+            SymbolTable symbols = new SymbolTable();
+            newIndex = Collections.emptyMap();
+            if (newReader != null) {
+                newIndex = indexByName(newReader.readClass(newDumpers, symbols, name));
+            }
+            classes = referenceReader.readClass(referenceDumpers, symbols, name);
+        }
+    }
+
+    /**
+     * A class of the reference artifact, listed but not parsed by the
+     * reference loader, and paired with the new artifact read as a whole.
+     */
+    private final class DeferredClass extends Stage {
+        private final String name;
+        private final AbstractClassReader reader;
+        private final ClassDumper.Pool dumpers;
+
+        /**
+         * @param name the class name.
+         * @param reader the reader of the reference artifact.
+         * @param dumpers the visitors parsing the reference artifact.
+         * @param newIndex the classes of the new artifact, by name.
+         * @param checkOnRun true to check the class when it is parsed.
+         */
+        DeferredClass(String name, AbstractClassReader reader, ClassDumper.Pool dumpers,
+                Map<String, ClassData> newIndex, boolean checkOnRun) {
+            super(checkOnRun);
+            this.name = name;
+            this.reader = reader;
+            this.dumpers = dumpers;
+            this.newIndex = newIndex;
+        }
+
+        @Override
+        void load() throws IOException {
+            ClassData clazz = reader.parseOnDemand(dumpers, name);
+            classes = clazz == null ? Collections.<ClassData>emptyList() : Collections.singletonList(clazz);
+        }
+    }
+
+    /**
+     * Check a reference class against its new version.
+     * @param reporter the reporter.
+     * @param clazz the reference class.
+     * @param newClazz the new version of the class, or null if it has been removed.
+     */
+    private void check(Reporter reporter, ClassData clazz, ClassData newClazz) {
+        if (newClazz != null) {
+            for (Rule rule : rules) {
+                rule.checkBackwardCompatibility(reporter, clazz, newClazz);
+            }
+            newClazz.checkBackwardCompatibility(reporter, clazz, rules);
+        } else if (clazz.getVisibility() == Scope.PUBLIC) {
+            reporter.report(new Report(Severity.ERROR, "Public class " + clazz.getName() + " has been removed.", clazz, null));
+        }
+    }
+
+    /**
+     * Check if the rules can be run concurrently.
+     * @param rules the rules.
+     * @return false if any of the rules is a SerialRule, including
+     *         the rules aggregated by a CompositeRule.
+     */
+    private static boolean isThreadSafe(List<Rule> rules) {
+        for (Rule rule : rules) {
+            if (rule instanceof SerialRule) {
+                return false;
+            }
+            if (rule instanceof CompositeRule && !isThreadSafe(((CompositeRule)rule).getRules())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Keep the reports of a single class pair.
+     */
+    private static class BufferedReporter implements Reporter {
+        private final List<Report> reports = new ArrayList<Report>();
+
+        @Override
+        public void report(Report report) {
+            reports.add(report);
+        }
+
+        List<Report> getReports() {
+            return reports;
+        }
+    }
+
+    /**
+     * Write an API snapshot of the reference, which can later be used as
+     * reference without its classpath. The snapshot contains the whole
+     * reference and the classes from the reference classpath part of its
+     * class hierarchy. Unless a parse profile is defined, the snapshot is
+     * written using the FULL profile, so the source files it records are
+     * parsed along with the classes.
+     * @param reference the reference directory or archive.
+     * @param snapshot the snapshot file to write.
+     * @throws IOException
+     */
+    public void exportReferenceSnapshot(File reference, File snapshot) throws IOException {
+        if (reference == null) {
+            throw new IllegalArgumentException("The reference parameter cannot be null.");
+        }
+        if (snapshot == null) {
+            throw new IllegalArgumentException("The snapshot parameter cannot be null.");
+        }
+        if (!reference.isDirectory() && !Utils.isArchive(reference)) {
+            throw new IllegalArgumentException("reference must be either a directory" +
+                    " or a jar (or a zip kind of archive) file");
+        }
+        ParseProfile profile = parseProfile;
+        if (profile == null) {
+            // the snapshot records the source files, so they are parsed with the classes.
+            profile = ParseProfile.FULL;
+        }
+        ClassDataLoaderFactory factory = classDataLoaderFactory;
+        if (factory == null) {
+            factory = new DefaultClassDataLoaderFactory(executor, profile);
+        }
+        Reporter reporter = getReporterOrStub();
+        ClassDataLoader loader = factory.createClassDataLoader();
+        try {
+            load(loader, reference, false, ClassFilter.ALL, this.referenceClasspath, reporter,
+                    "Reading reference artifact: ", "Reading reference dependency: ");
+            reporter.report(new Report(Severity.INFO, "Writing reference snapshot: " + snapshot));
+            ApiSnapshot.write(loader, reference.toURI(), profile, snapshot);
+            handleReadErrors(reporter, loader);
+        } finally {
+            close(loader);
+        }
+    }
+
+    /**
+     * Release the files held by the loaders, once the check is complete.
+     * The loaders created by a custom factory are left untouched.
+     * @param loaders the loaders.
+     */
+    private static void close(ClassDataLoader... loaders) {
+        for (ClassDataLoader loader : loaders) {
+            if (loader instanceof DefaultClassDataLoader) {
+                close((DefaultClassDataLoader)loader);
+            }
+        }
+    }
+
+    /**
+     * Close a resource once the check is complete.
+     * @param resource the resource.
+     */
+    private static void close(Closeable resource) {
+        try {
+            resource.close();
+        } catch (IOException e) {
+            // the check result does not depend on it.
+        }
+    }
+
+    /**
+     * Get the reporter, or a reporter doing nothing if none is defined.
+     * @return the reporter.
+     */
+    private Reporter getReporterOrStub() {
         Reporter reporter = this.getReporter();
         if (reporter == null) {
             // if reporter is not defined just stub it...
@@ -135,56 +798,171 @@ public class BCChecker {
                 public void report(Report report) { }
             };
         }
-        ClassDataLoader referenceDataLoader = classDataLoaderFactory.createClassDataLoader();
-        reporter.report(new Report(Severity.INFO, "Reading reference artifact: " + reference));
-        referenceDataLoader.read(reference.toURI());
-        for (File file : this.referenceClasspath) {
-            try {
-                reporter.report(new Report(Severity.INFO, "Reading reference dependency: " + file));
-                referenceDataLoader.read(file.toURI());
-            } catch (ReadClassException e){
-                if (this.shouldWarnOnDependencyLoadingError()) {
-                    reporter.report(new Report(Severity.WARNING, e.getMessage()));
-                } else {
-                    throw e;
+        return reporter;
+    }
+
+    /**
+     * Read an artifact and its classpath with a ClassDataLoader.
+     * @param loader the loader.
+     * @param artifact the artifact.
+     * @param lazy true to read the artifact the same way as the dependencies.
+     * @param filter the filter of the artifact class files, unless read lazily.
+     * @param classpath the artifact dependencies.
+     * @param reporter the reporter.
+     * @param artifactMessage the message reported before reading the artifact.
+     * @param dependencyMessage the message reported before reading each dependency.
+     * @return the loader.
+     * @throws IOException
+     */
+    private ClassDataLoader load(final ClassDataLoader loader, File artifact, final boolean lazy, final ClassFilter filter, List<File> classpath,
+            Reporter reporter, String artifactMessage, String dependencyMessage) throws IOException {
+        final List<File> files = new ArrayList<File>(classpath.size() + 1);
+        files.add(artifact);
+        files.addAll(classpath);
+        // only the DefaultClassDataLoader is known to support concurrent reads.
+        boolean concurrent = executor != null && files.size() > 1 && loader instanceof DefaultClassDataLoader;
+        final IOException[] failures = new IOException[files.size()];
+        if (concurrent) {
+            // the positions are reserved upfront, so the classpath order does not
+            // depend on which read completes first.
+            for (File file : files) {
+                ((DefaultClassDataLoader)loader).reserve(file.toURI());
+            }
+            ParallelTasks.execute(executor, files.size(), new ParallelTasks.Task() {
+                @Override
+                public void run(int index) {
+                    failures[index] = read(loader, files.get(index), lazy || index > 0, filter);
                 }
+            });
+        }
+        // the reads are reported, and their errors handled, in classpath order.
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            reporter.report(new Report(Severity.INFO, (i == 0 ? artifactMessage : dependencyMessage) + file));
+            IOException failure = concurrent ? failures[i] : read(loader, file, lazy || i > 0, filter);
+            if (failure == null) {
+                continue;
+            }
+            if (i > 0 && failure instanceof ReadClassException && this.shouldWarnOnDependencyLoadingError()) {
+                reporter.report(new Report(Severity.WARNING, failure.getMessage()));
+            } else {
+                throw failure;
             }
         }
-        List<ClassData> referenceData = referenceDataLoader.getClasses(reference.toURI(), includes, excludes);
-        ClassDataLoader newArtifactDataLoader = classDataLoaderFactory.createClassDataLoader();
-        reporter.report(new Report(Severity.INFO, "Reading artifact: " + newArtifact));
-        newArtifactDataLoader.read(newArtifact.toURI());
-        for (File file : this.newArtifactClasspath) {
-            try {
-                reporter.report(new Report(Severity.INFO, "Reading dependency: " + file));
-                newArtifactDataLoader.read(file.toURI());
-            } catch (ReadClassException e){
-                if (this.shouldWarnOnDependencyLoadingError()) {
-                    reporter.report(new Report(Severity.WARNING, e.getMessage()));
-                } else {
-                    throw e;
+        return loader;
+    }
+
+    /**
+     * Handle the errors which occurred while classes were read on demand,
+     * e.g: out of the dependencies read lazily when the rules resolved them.
+     * They are handled the same way as the errors reading the dependencies.
+     * @param reporter the reporter.
+     * @param loaders the loaders used by the check.
+     * @throws IOException the first error, unless only warned about.
+     */
+    private void handleReadErrors(Reporter reporter, ClassDataLoader... loaders) throws IOException {
+        for (ClassDataLoader loader : loaders) {
+            if (loader instanceof DefaultClassDataLoader) {
+                for (ReadClassException error : ((DefaultClassDataLoader)loader).takeReadErrors()) {
+                    if (this.shouldWarnOnDependencyLoadingError()) {
+                        reporter.report(new Report(Severity.WARNING, error.getMessage()));
+                    } else {
+                        throw error;
+                    }
                 }
             }
         }
-        List<ClassData> newData = newArtifactDataLoader.getClasses(newArtifact.toURI(), includes, excludes);
-        for (ClassData clazz : referenceData) {
-            boolean found = false;
-            for (ClassData newClazz : newData) {
-                if (clazz.isSame(newClazz)) {
-                    for (Rule rule : rules) {
-                        rule.checkBackwardCompatibility(reporter, clazz, newClazz);
-                    }
-                    newClazz.checkBackwardCompatibility(reporter, clazz, rules);
-                    found = true;
-                    break;
+    }
+
+    /**
+     * Read a location with a ClassDataLoader.
+     * @param loader the loader.
+     * @param file the location.
+     * @param lazy true to read it as a dependency.
+     * @param filter the filter of the class files, unless read as a dependency.
+     * @return the error, or null if the location has been read.
+     */
+    private static IOException read(ClassDataLoader loader, File file, boolean lazy, ClassFilter filter) {
+        try {
+            if (lazy && loader instanceof DefaultClassDataLoader) {
+                ((DefaultClassDataLoader)loader).readDependency(file.toURI());
+            } else if (!lazy && loader instanceof DefaultClassDataLoader) {
+                ((DefaultClassDataLoader)loader).read(file.toURI(), filter);
+            } else {
+                loader.read(file.toURI());
+            }
+            return null;
+        } catch (IOException e) {
+            return e;
+        }
+    }
+
+    /**
+     * The loading of one side of a check.
+     */
+    private interface Loading {
+        ClassDataLoader load(Reporter reporter) throws IOException;
+    }
+
+    /**
+     * Load the sides of a check, concurrently if an executor is defined.
+     * The reports of each side are replayed in order, and loading fails
+     * with the error of the first side which failed, as if the sides were
+     * loaded one after the other.
+     * @param reporter the reporter.
+     * @param sides the sides to load.
+     * @return the loaders, by side.
+     * @throws IOException
+     */
+    private ClassDataLoader[] load(Reporter reporter, final Loading... sides) throws IOException {
+        final ClassDataLoader[] loaders = new ClassDataLoader[sides.length];
+        if (executor == null) {
+            for (int i = 0; i < sides.length; i++) {
+                loaders[i] = sides[i].load(reporter);
+            }
+            return loaders;
+        }
+        final BufferedReporter[] buffers = new BufferedReporter[sides.length];
+        final IOException[] failures = new IOException[sides.length];
+        ParallelTasks.execute(executor, sides.length, new ParallelTasks.Task() {
+            @Override
+            public void run(int index) {
+                buffers[index] = new BufferedReporter();
+                try {
+                    loaders[index] = sides[index].load(buffers[index]);
+                } catch (IOException e) {
+                    failures[index] = e;
                 }
             }
-            if (!found && clazz.getVisibility() == Scope.PUBLIC) {
-                reporter.report(new Report(Severity.ERROR, "Public class " + clazz.getName() + " has been removed.", clazz, null));
+        });
+        for (int i = 0; i < sides.length; i++) {
+            for (Report report : buffers[i].getReports()) {
+                reporter.report(report);
+            }
+            if (failures[i] != null) {
+                throw failures[i];
             }
         }
+        return loaders;
     }
-    
+
+    /**
+     * Index classes by name, so pairing a reference class with its new
+     * version is a single lookup. If a name appears several times the first
+     * occurrence is kept, which matches the previous linear search.
+     * @param classes the classes to index.
+     * @return a map of class name to class.
+     */
+    private static Map<String, ClassData> indexByName(List<ClassData> classes) {
+        Map<String, ClassData> index = new HashMap<String, ClassData>(classes.size() * 4 / 3 + 1);
+        for (ClassData clazz : classes) {
+            if (!index.containsKey(clazz.getName())) {
+                index.put(clazz.getName(), clazz);
+            }
+        }
+        return index;
+    }
+
    /**
      * Defines if the checker should just warn on dependency loading error via the reporter,
      *  or simply fails.
@@ -38,7 +38,7 @@ public interface ClassDataLoader {
      * @throws IOException Thrown in case of error.
      */
     void read(URI uri) throws IOException;
-    
+
     /**
      * Get ClassData out of a class name e.g: com.mycompany.mypackage.Class
      * @param name the class name
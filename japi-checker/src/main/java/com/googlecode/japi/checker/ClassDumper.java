@@ -17,9 +17,8 @@ package com.googlecode.japi.checker;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.objectweb.asm.AnnotationVisitor;
@@ -34,19 +33,134 @@ import com.googlecode.japi.checker.model.FieldData;
 import com.googlecode.japi.checker.model.InnerClassData;
 import com.googlecode.japi.checker.model.MethodData;
 
+/**
+ * Build the ClassData models of a class file. A visitor can be reused for
+ * several class files, one at a time, see {@link Pool}.
+ */
 class ClassDumper extends ClassVisitor {
+    private static final Logger LOGGER = Logger.getLogger(ClassDumper.class.getName());
     private ClassDataLoader loader;
-    private Logger logger = Logger.getLogger(ClassDumper.class.getName());
+    private ParseProfile profile;
+    private LazyClassData target;
+    private final SymbolTable loaderSymbols;
+    private SymbolTable symbols;
+    private AbstractClassReader reader;
+    private String entry;
     private ClassData clazz; // current main class being parsed.
-    private Map<String, ClassData> classes = new HashMap<String, ClassData>();
+    private List<ClassData> classes = new ArrayList<ClassData>(1);
     
     /**
      * Create a new visitor instance.
      * @param loader the ClassDataLoader to which the model are associated.
      */
     public ClassDumper(ClassDataLoader loader) {
+        this(loader, ParseProfile.FULL);
+    }
+
+    /**
+     * Create a new visitor instance.
+     * @param loader the ClassDataLoader to which the model are associated.
+     * @param profile the profile defining which part of the class is kept.
+     */
+    public ClassDumper(ClassDataLoader loader, ParseProfile profile) {
+        this(loader, profile, null);
+    }
+
+    /**
+     * Create a visitor which completes a lazily loaded class model rather
+     * than creating a new one.
+     * @param loader the ClassDataLoader to which the model are associated.
+     * @param profile the profile defining which part of the class is kept.
+     * @param target the class model to populate, or null to create a new one.
+     */
+    ClassDumper(ClassDataLoader loader, ParseProfile profile, LazyClassData target) {
         super(Opcodes.ASM4);
         this.loader = loader;
+        this.profile = profile;
+        this.target = target;
+        this.loaderSymbols = SymbolTable.of(loader);
+        this.symbols = loaderSymbols;
+    }
+
+    /**
+     * Visitors shared by the threads parsing a set of class files, each
+     * thread taking a visitor for one class file at a time. A pool is meant
+     * to be dropped with its visitors once the class files are parsed.
+     */
+    static final class Pool {
+        private final ClassDataLoader loader;
+        private final ParseProfile profile;
+        private ClassDumper[] free = new ClassDumper[4];
+        private int size;
+
+        /**
+         * @param loader the ClassDataLoader to which the model are associated.
+         * @param profile the profile defining which part of the class is kept.
+         */
+        Pool(ClassDataLoader loader, ParseProfile profile) {
+            this.loader = loader;
+            this.profile = profile;
+        }
+
+        /**
+         * @return a visitor, to be given back using {@link #release(ClassDumper)}.
+         */
+        synchronized ClassDumper take() {
+            if (size == 0) {
+                return new ClassDumper(loader, profile);
+            }
+            ClassDumper dumper = free[--size];
+            free[size] = null;
+            return dumper;
+        }
+
+        /**
+         * Give a visitor back, it does not keep the last class it parsed.
+         * @param dumper the visitor.
+         */
+        void release(ClassDumper dumper) {
+            dumper.setClassFile(null, null);
+            dumper.setSymbolTable(null);
+            synchronized (this) {
+                if (size == free.length) {
+                    free = Arrays.copyOf(free, size * 2);
+                }
+                free[size++] = dumper;
+            }
+        }
+    }
+
+    /**
+     * Set where the class file comes from, so the class can read its
+     * debug information on demand.
+     * @param reader the reader which can read the class file again.
+     * @param entry the name of the class file in the reader.
+     */
+    void setClassFile(AbstractClassReader reader, String entry) {
+        this.reader = reader;
+        this.entry = entry;
+        this.clazz = null;
+        if (!classes.isEmpty()) {
+            // left by a class file which failed to parse.
+            classes = new ArrayList<ClassData>(1);
+        }
+    }
+
+    /**
+     * Set the table interning the names of the next class files, e.g: a
+     * table only kept while the classes are, rather than the one of the loader.
+     * @param symbols the table, null for the table of the loader.
+     */
+    void setSymbolTable(SymbolTable symbols) {
+        this.symbols = symbols != null ? symbols : loaderSymbols;
+    }
+
+    /**
+     * Get the profile used by this visitor.
+     * @return the parse profile.
+     */
+    public ParseProfile getParseProfile() {
+        return profile;
     }
     
     /**
@@ -54,58 +168,97 @@ class ClassDumper extends ClassVisitor {
      */
     public void visit(int version, int access, String name, String signature,
             String superName, String[] interfaces) {
-        logger.fine("class " + name + " extends " + superName + " {");
-        clazz = new ClassData(loader, null, access, name, signature, superName, interfaces, version);
-        classes.put(name, clazz);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("class " + name + " extends " + superName + " {");
+        }
+        if (target != null) {
+            target.completeSignature(symbols.intern(signature));
+            clazz = target;
+        } else if (reader != null && !profile.parsesDebugInfo()) {
+            clazz = new ClassFileData(loader, reader, entry, access, symbols.intern(name), symbols.intern(signature),
+                    symbols.intern(superName), symbols.intern(interfaces), version);
+        } else {
+            clazz = new ClassData(loader, null, access, symbols.intern(name), symbols.intern(signature),
+                    symbols.intern(superName), symbols.intern(interfaces), version);
+        }
+        classes.add(clazz);
     }
 
     /**
      * {@inheritDoc}
      */
     public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-        return new AnnotationDumper(clazz, desc, visible);
+        // the values are skipped, they are decoded when accessed.
+        clazz.add(new LazyAnnotationData(symbols.intern(desc), visible));
+        return null;
     }
 
     public void visitAttribute(Attribute attribute) {
     }
 
     public void visitEnd() {
-        logger.fine("}");
+        LOGGER.fine("}");
         clazz = null;
     }
 
     public FieldVisitor visitField(int access, String name, String desc,
             String signature, Object value) {
-        logger.fine("    -(field) " + name + " " + signature + " " + desc);
-        clazz.add(new FieldData(loader, clazz, access, name, desc, signature, value));
+        if (!profile.keepMember(access)) {
+            return null;
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("    -(field) " + name + " " + signature + " " + desc);
+        }
+        clazz.add(new FieldData(loader, clazz, access, symbols.intern(name), symbols.intern(desc),
+                symbols.intern(signature), value));
         return null;
     }
 
     public void visitInnerClass(String name, String outerName, String innerName, int access) {
-        logger.fine("    +(ic) " + name + " " + outerName + " " + innerName + " " + access);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("    +(ic) " + name + " " + outerName + " " + innerName + " " + access);
+        }
         //clazz = new ClassData(access, name, innerName);
-        clazz.add(new InnerClassData(loader, clazz, access, name, outerName, innerName));
+        clazz.add(new InnerClassData(loader, clazz, access, symbols.intern(name),
+                symbols.intern(outerName), symbols.intern(innerName)));
     }
 
     public MethodVisitor visitMethod(int access, String name, String descriptor,
             String signature, String[] exceptions) {
-        logger.fine("    +(m) " + name + " " + descriptor + " " + signature + " " + Arrays.toString(exceptions));
-        MethodData method = new MethodData(loader, clazz, access, name, descriptor, signature, exceptions);
+        if (!profile.keepMember(access)) {
+            return null;
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("    +(m) " + name + " " + descriptor + " " + signature + " " + Arrays.toString(exceptions));
+        }
+        MethodData method = new MethodData(loader, clazz, access, symbols.intern(name), symbols.intern(descriptor),
+                symbols.intern(signature), symbols.intern(exceptions));
         clazz.add(method);
-        return new MethodDumper(method);
+        return new MethodDumper(method, symbols);
     }
 
     public void visitOuterClass(String owner, String name, String desc) {
-        logger.fine("    *(oc) " + name + " " + desc);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("    *(oc) " + name + " " + desc);
+        }
     }
 
     public void visitSource(String source, String debug) {
-        logger.fine(" - source: " + source);
-        logger.fine(" - debug: " + debug);
-        clazz.setSource(source);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine(" - source: " + source);
+            LOGGER.fine(" - debug: " + debug);
+        }
+        clazz.setSource(symbols.intern(source));
     }
 
+    /**
+     * Get the classes of the last class file, the visitor is then ready
+     * for the next one.
+     * @return the classes, owned by the caller.
+     */
     public List<ClassData> getClasses() {
-        return new ArrayList<ClassData>(classes.values());
+        List<ClassData> result = classes;
+        classes = new ArrayList<ClassData>(1);
+        return result;
     }
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import com.googlecode.japi.checker.model.ClassData;
+import com.googlecode.japi.checker.model.MethodData;
+
+/**
+ * A ClassData parsed without its debug information. The source file
+ * and the method line numbers are read again out of the class file the
+ * first time they are accessed, which usually only happens for the
+ * classes being reported. Reading the source file alone skips the code
+ * of the methods.
+ */
+class ClassFileData extends ClassData {
+    private static final int SOURCE = 1;
+    private static final int LINE_NUMBERS = 2;
+    private static Logger logger = Logger.getLogger(ClassFileData.class.getName());
+    private final AbstractClassReader reader;
+    private final String entry;
+    // the debug information read so far: nothing, SOURCE or LINE_NUMBERS, which includes the source.
+    private volatile int debugInfoRead;
+    // only accessed while holding the monitor.
+    private boolean readingDebugInfo;
+
+    /**
+     * @param reader the reader which can read the class file again.
+     * @param entry the name of the class file in the reader.
+     */
+    ClassFileData(ClassDataLoader loader, AbstractClassReader reader, String entry, int access, String name,
+            String signature, String superName, String[] interfaces, int version) {
+        super(loader, null, access, name, signature, superName, interfaces, version);
+        this.reader = reader;
+        this.entry = entry;
+    }
+
+    @Override
+    public String getSource() {
+        readDebugInfo(SOURCE);
+        return super.getSource();
+    }
+
+    @Override
+    protected void readLineNumbers() {
+        readDebugInfo(LINE_NUMBERS);
+    }
+
+    /**
+     * Mark the debug information as available, e.g: when it has been
+     * parsed with the rest of the class file.
+     */
+    synchronized void setDebugInfoRead() {
+        debugInfoRead = LINE_NUMBERS;
+    }
+
+    private void readDebugInfo(int level) {
+        if (debugInfoRead < level) {
+            synchronized (this) {
+                // accessing the model from the visitor must not recurse.
+                if (debugInfoRead < level && !readingDebugInfo) {
+                    readingDebugInfo = true;
+                    try {
+                        byte[] data = reader.readEntry(entry);
+                        if (data != null) {
+                            new ClassReader(data).accept(new DebugInfoVisitor(level == LINE_NUMBERS),
+                                    level == LINE_NUMBERS ? ClassReader.SKIP_FRAMES : ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+                        }
+                    } catch (IOException e) {
+                        logger.log(Level.WARNING, "Could not read the debug information of " + getName() + ": " + e.toString(), e);
+                    } catch (RuntimeException e) {
+                        logger.log(Level.WARNING, "Could not read the debug information of " + getName() + ": " + e.toString(), e);
+                    } finally {
+                        readingDebugInfo = false;
+                        // only published once complete, other threads wait on the monitor meanwhile.
+                        debugInfoRead = level;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Collect the source file and the line numbers, the same way the
+     * ClassDumper does when parsing the debug information: the last line
+     * visited is kept for each method.
+     */
+    private class DebugInfoVisitor extends ClassVisitor {
+        private final boolean lineNumbers;
+
+        DebugInfoVisitor(boolean lineNumbers) {
+            super(Opcodes.ASM4);
+            this.lineNumbers = lineNumbers;
+        }
+
+        @Override
+        public void visitSource(String source, String debug) {
+            setSource(SymbolTable.of(getClassDataLoader()).intern(source));
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+            if (!lineNumbers) {
+                return null;
+            }
+            final MethodData method = getMethod(name, desc);
+            if (method == null) {
+                return null;
+            }
+            return new MethodVisitor(Opcodes.ASM4) {
+                @Override
+                public void visitLineNumber(int line, Label start) {
+                    method.setLineNumber(line);
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.googlecode.japi.checker.utils.AntPatternMatcher;
+import com.googlecode.japi.checker.utils.AntPatternSet;
+
+/**
+ * The include and exclude patterns of a check, applied to the class file
+ * paths of an artifact before they are read. The readers skip the class
+ * files which are not checked and prune the directories which cannot
+ * contain any of them, the skipped classes are only parsed if requested
+ * by name.
+ *
+ * A directory is pruned when no include pattern can match below it, using
+ * the literal directory prefix of each pattern, or when an exclude pattern
+ * of the form <code>prefix/**</code> covers it entirely.
+ */
+final class ClassFilter {
+    /** The filter accepting everything. */
+    static final ClassFilter ALL = new ClassFilter(Collections.<AntPatternMatcher>emptyList(),
+            Collections.<AntPatternMatcher>emptyList());
+    private static final String ANY = "**";
+    private final AntPatternSet patterns;
+    private final List<String> includedPrefixes;
+    private final List<String> excludedPrefixes;
+    private final boolean deferred;
+
+    /**
+     * @param includes the include patterns, everything is included if empty.
+     * @param excludes the exclude patterns.
+     */
+    ClassFilter(List<AntPatternMatcher> includes, List<AntPatternMatcher> excludes) {
+        this.patterns = new AntPatternSet(includes, excludes);
+        this.includedPrefixes = new ArrayList<String>();
+        this.excludedPrefixes = new ArrayList<String>();
+        this.deferred = false;
+        for (AntPatternMatcher include : includes) {
+            includedPrefixes.add(getPrefix(include));
+        }
+        for (AntPatternMatcher exclude : excludes) {
+            String prefix = getPrefix(exclude);
+            if (exclude.isCaseSensitive() && prefix.length() > 0
+                    && normalize(exclude.getExpression()).equals(prefix + ANY)) {
+                excludedPrefixes.add(prefix);
+            }
+        }
+    }
+
+    private ClassFilter(ClassFilter filter) {
+        this.patterns = filter.patterns;
+        this.includedPrefixes = filter.includedPrefixes;
+        this.excludedPrefixes = filter.excludedPrefixes;
+        this.deferred = true;
+    }
+
+    /**
+     * Get a filter pruning the same directories, but skipping all the
+     * class files: the classes are listed, and only parsed on demand.
+     * @return the deferring filter.
+     */
+    ClassFilter deferAll() {
+        return new ClassFilter(this);
+    }
+
+    /**
+     * Should a class file be read.
+     * @param path the path of the class file, using '/' as separator.
+     * @return true if the path is included and not excluded.
+     */
+    boolean accept(String path) {
+        return !deferred && patterns.matches(path);
+    }
+
+    /**
+     * Is a class file included by the patterns, whether it is read or deferred.
+     * @param path the path of the class file, using '/' as separator.
+     * @return true if the path is included and not excluded.
+     */
+    boolean matches(String path) {
+        return patterns.matches(path);
+    }
+
+    /**
+     * Can a directory contain class files accepted by this filter.
+     * @param directory the path of the directory, ending with '/'.
+     * @return false if the whole directory can be skipped.
+     */
+    boolean mayContain(String directory) {
+        for (String prefix : excludedPrefixes) {
+            if (directory.startsWith(prefix)) {
+                return false;
+            }
+        }
+        if (includedPrefixes.isEmpty()) {
+            return true;
+        }
+        for (String prefix : includedPrefixes) {
+            if (directory.startsWith(prefix) || prefix.startsWith(directory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the literal directories a pattern starts with: every path the
+     * pattern matches starts with them.
+     * @param pattern the pattern.
+     * @return the prefix ending with '/', or an empty string.
+     */
+    private static String getPrefix(AntPatternMatcher pattern) {
+        if (!pattern.isCaseSensitive()) {
+            return "";
+        }
+        String expression = normalize(pattern.getExpression());
+        int end = expression.length();
+        for (int i = 0; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (c == '*' || c == '?' || c == '[') {
+                end = i;
+                break;
+            }
+        }
+        return expression.substring(0, expression.lastIndexOf('/', end - 1) + 1);
+    }
+
+    private static String normalize(String path) {
+        return path.replace('\\', '/');
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.googlecode.japi.checker.model.ClassData;
+
+/**
+ * The type hierarchy of the classes known by a ClassDataLoader, for the
+ * rules which need to test subtyping.
+ *
+ * Each class name gets a dense int id the first time it is met, its super
+ * class and interfaces being linked by id. Names the loader cannot resolve
+ * are part of the graph as well, without any super type. The graph is built
+ * on demand, so the dependencies read lazily are only parsed when reached.
+ * The super types of a class are computed once as bitsets of ids, so a
+ * subtype test is a single bit test.
+ *
+ * Instances are thread-safe. The classes are resolved from the loader
+ * without holding any lock, only the allocation of the ids is serialized.
+ */
+public final class ClassHierarchy {
+    private static final int NONE = -1;
+    private static final int[] NO_INTERFACES = new int[0];
+    private final ClassDataLoader loader;
+    private final ConcurrentMap<String, Node> nodes = new ConcurrentHashMap<String, Node>();
+    private final Object idLock = new Object();
+    private volatile Node[] byId = new Node[64];
+    private volatile int size;
+
+    /**
+     * A class of the graph. Its links are resolved the first time they are
+     * needed; several threads may resolve them concurrently, they all get
+     * the same ids.
+     */
+    private static final class Node {
+        private final int id;
+        private final String name;
+        private volatile Links links;
+        private volatile BitSet superClassSet;
+        private volatile BitSet superTypeSet;
+
+        Node(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    /**
+     * The super types of a resolved class, or none if the loader does not know it.
+     */
+    private static final class Links {
+        private final boolean resolved;
+        private final int superClass;
+        private final int[] interfaces;
+
+        Links(boolean resolved, int superClass, int[] interfaces) {
+            this.resolved = resolved;
+            this.superClass = superClass;
+            this.interfaces = interfaces;
+        }
+    }
+
+    /**
+     * Create a hierarchy resolving the classes from a loader.
+     * Prefer {@link #of(ClassDataLoader)}, which shares the hierarchy of a loader.
+     * @param loader the loader.
+     */
+    public ClassHierarchy(ClassDataLoader loader) {
+        this.loader = loader;
+    }
+
+    /**
+     * Get the hierarchy of a loader. The DefaultClassDataLoader keeps its
+     * hierarchy until new content is read, for other loaders a new hierarchy
+     * is created on each call.
+     * @param loader the loader.
+     * @return the hierarchy.
+     */
+    public static ClassHierarchy of(ClassDataLoader loader) {
+        if (loader instanceof DefaultClassDataLoader) {
+            return ((DefaultClassDataLoader)loader).getClassHierarchy();
+        }
+        return new ClassHierarchy(loader);
+    }
+
+    /**
+     * Get the id of a class, adding the class and its direct super types
+     * to the graph if needed. Their own super types are added when reached.
+     * @param name the class name.
+     * @return the id, or -1 if name is null.
+     */
+    public int getId(String name) {
+        if (name == null) {
+            return NONE;
+        }
+        Node node = node(name);
+        links(node);
+        return node.id;
+    }
+
+    /**
+     * @return the number of classes in the graph.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param id a class id.
+     * @return the class name.
+     */
+    public String getName(int id) {
+        return get(id).name;
+    }
+
+    /**
+     * @param id a class id.
+     * @return true if the class has been found by the loader.
+     */
+    public boolean isResolved(int id) {
+        return links(get(id)).resolved;
+    }
+
+    /**
+     * @param id a class id.
+     * @return the id of the super class, -1 if none or if the class is not resolved.
+     */
+    public int getSuperClass(int id) {
+        return links(get(id)).superClass;
+    }
+
+    /**
+     * @param id a class id.
+     * @return the ids of the interfaces directly implemented by the class.
+     */
+    public int[] getInterfaces(int id) {
+        return links(get(id)).interfaces.clone();
+    }
+
+    /**
+     * Get all the super types of a class: itself, its super classes and all the
+     * interfaces they implement, directly or not.
+     * @param id a class id.
+     * @return the ids of the super types.
+     */
+    public BitSet getSuperTypes(int id) {
+        return (BitSet)superTypes(get(id)).clone();
+    }
+
+    /**
+     * Check if a class is, or extends, another class. Interfaces are not
+     * considered, this is the class tree checked by
+     * {@link RuleHelpers#isClassPartOfClassTree(ClassDataLoader, String, String)}.
+     * @param name the class name.
+     * @param superClass the possible super class name.
+     * @return true if superClass is part of the super classes of name.
+     */
+    public boolean isSubclassOf(String name, String superClass) {
+        if (name == null || superClass == null) {
+            return false;
+        }
+        // the walk adds the super classes to the graph, so it comes first.
+        BitSet superClasses = superClasses(node(name));
+        Node superNode = nodes.get(superClass);
+        return superNode != null && superClasses.get(superNode.id);
+    }
+
+    /**
+     * Check if a class is assignable to a type, either through its super
+     * classes or its interfaces.
+     * @param name the class name.
+     * @param superType the possible super type name.
+     * @return true if superType is part of the super types of name.
+     */
+    public boolean isSubtypeOf(String name, String superType) {
+        if (name == null || superType == null) {
+            return false;
+        }
+        BitSet superTypes = superTypes(node(name));
+        Node superNode = nodes.get(superType);
+        return superNode != null && superTypes.get(superNode.id);
+    }
+
+    /**
+     * Check if a class is assignable to a type, using ids.
+     * @param id the class id.
+     * @param superTypeId the possible super type id.
+     * @return true if superTypeId is part of the super types of id.
+     */
+    public boolean isSubtypeOf(int id, int superTypeId) {
+        get(superTypeId);
+        return superTypes(get(id)).get(superTypeId);
+    }
+
+    /**
+     * Get the node of a class, registering it if needed.
+     * @param name the class name.
+     * @return the node.
+     */
+    private Node node(String name) {
+        Node node = nodes.get(name);
+        if (node == null) {
+            // the loader is not called here, the lock only keeps the ids dense.
+            synchronized (idLock) {
+                node = nodes.get(name);
+                if (node == null) {
+                    int id = size;
+                    Node[] table = byId;
+                    if (id == table.length) {
+                        table = Arrays.copyOf(table, id * 2);
+                        byId = table;
+                    }
+                    node = new Node(id, name);
+                    table[id] = node;
+                    nodes.put(name, node);
+                    size = id + 1;
+                }
+            }
+        }
+        return node;
+    }
+
+    private Node get(int id) {
+        if (id < 0 || id >= size) {
+            throw new IllegalArgumentException("Unknown class id " + id);
+        }
+        return byId[id];
+    }
+
+    /**
+     * Get the links of a class, resolving it from the loader if not done yet.
+     * @param node the class.
+     * @return the links.
+     */
+    private Links links(Node node) {
+        Links links = node.links;
+        if (links == null) {
+            ClassData clazz = loader.fromName(node.name);
+            if (clazz == null) {
+                links = new Links(false, NONE, NO_INTERFACES);
+            } else {
+                int superClass = clazz.getSuperName() == null ? NONE : node(clazz.getSuperName()).id;
+                List<String> interfaceNames = clazz.getInterfaces();
+                int[] interfaceIds = new int[interfaceNames.size()];
+                for (int i = 0; i < interfaceIds.length; i++) {
+                    interfaceIds[i] = node(interfaceNames.get(i)).id;
+                }
+                links = new Links(true, superClass, interfaceIds);
+            }
+            node.links = links;
+        }
+        return links;
+    }
+
+    private BitSet superClasses(Node node) {
+        BitSet result = node.superClassSet;
+        if (result == null) {
+            result = new BitSet(size);
+            // walking the chain with a bitset also protects against cycles.
+            for (int current = node.id; current != NONE && !result.get(current); current = links(get(current)).superClass) {
+                result.set(current);
+            }
+            node.superClassSet = result;
+        }
+        return result;
+    }
+
+    private BitSet superTypes(Node node) {
+        BitSet result = node.superTypeSet;
+        if (result == null) {
+            result = new BitSet(size);
+            // walked iteratively, so deep hierarchies cannot overflow the stack.
+            Deque<Node> pending = new ArrayDeque<Node>();
+            pending.push(node);
+            while (!pending.isEmpty()) {
+                Node current = pending.pop();
+                if (result.get(current.id)) {
+                    continue;
+                }
+                BitSet known = current.superTypeSet;
+                if (known != null) {
+                    result.or(known);
+                    continue;
+                }
+                result.set(current.id);
+                Links links = links(current);
+                if (links.superClass != NONE) {
+                    pending.push(get(links.superClass));
+                }
+                for (int iface : links.interfaces) {
+                    pending.push(get(iface));
+                }
+            }
+            node.superTypeSet = result;
+        }
+        return result;
+    }
+}
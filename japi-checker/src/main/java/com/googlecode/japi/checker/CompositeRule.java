@@ -0,0 +1,35 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import java.util.List;
+
+/**
+ * A rule delegating to other rules, e.g: to group them. The BCChecker
+ * looks into the aggregated rules to decide if the check can run
+ * concurrently, so a composite holding a {@link SerialRule} must either
+ * implement this interface or be a SerialRule itself.
+ *
+ */
+public interface CompositeRule extends Rule {
+
+    /**
+     * Get the rules this rule delegates to.
+     * @return the aggregated rules, never null.
+     */
+    List<Rule> getRules();
+
+}
@@ -15,23 +15,161 @@
  */
 package com.googlecode.japi.checker;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.Hashtable;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 
 import com.googlecode.japi.checker.model.ClassData;
 import com.googlecode.japi.checker.utils.AntPatternMatcher;
 
 /**
  * Basic implementation of the ClassDataLoader.
- * It populates itself thanks to the read method. 
+ * It populates itself thanks to the read method.
+ * 
+ * Classes are resolved by name the same way a Java ClassLoader does
+ * with its classpath: the first URI read which defines a class wins,
+ * later definitions of the same class are shadowed. Shadowed definitions
+ * can be listed using {@link #getShadowedClasses()}.
+ * 
+ * Archives read as dependencies are indexed from their central directory,
+ * their classes are only parsed when requested by name. The same applies
+ * to the classes left out by the filter given to {@link #read(URI, ClassFilter)}.
+ * 
+ * Several locations can be read concurrently. The position of a location
+ * in the classpath is the order in which its read has been requested, so
+ * the precedence does not depend on which read completes first. Reads only
+ * lock while publishing their content, which never parses any class, and
+ * the lookups never lock.
  */
-class DefaultClassDataLoader implements ClassDataLoader {
-    private Map<URI, AbstractClassReader> readers = new Hashtable<URI, AbstractClassReader>(); 
+public class DefaultClassDataLoader implements ClassDataLoader, Closeable {
+    private final ConcurrentMap<URI, Location> locations = new ConcurrentHashMap<URI, Location>();
+    // the locations which have been read, in classpath order.
+    private final List<Location> classpath = new CopyOnWriteArrayList<Location>();
+    // the locations with directories which have not been listed, in classpath order.
+    private volatile List<Location> pruned = Collections.emptyList();
+    private volatile Index index = new Index();
+    private volatile ClassHierarchy hierarchy;
+    private final ConcurrentMap<ClassData, RuleHelpers.ClassMethods> inheritedMethods = new ConcurrentHashMap<ClassData, RuleHelpers.ClassMethods>();
+    private final Executor executor;
+    private final ParseProfile profile;
+    private final SymbolTable symbols;
+    private final SharedArchives archives;
+
+    /**
+     * A location of the classpath.
+     */
+    static final class Location {
+        private final int position;
+        private volatile AbstractClassReader reader;
+
+        Location(int position) {
+            this.position = position;
+        }
+    }
+
+    /**
+     * The definitions of the classes by name. The index is updated in place
+     * when a location is added, and replaced when it has to be rebuilt.
+     */
+    private static final class Index {
+        private final ConcurrentMap<String, Definition> classes = new ConcurrentHashMap<String, Definition>();
+        private final ConcurrentMap<String, List<Definition>> shadowed = new ConcurrentHashMap<String, List<Definition>>();
+    }
+
+    /**
+     * A definition of a class, either parsed or available on demand from a reader.
+     */
+    private static final class Definition {
+        private final int position;
+        private final String name;
+        private final ClassData clazz;
+        private final AbstractClassReader reader;
+
+        Definition(int position, String name, ClassData clazz, AbstractClassReader reader) {
+            this.position = position;
+            this.name = name;
+            this.clazz = clazz;
+            this.reader = reader;
+        }
+
+        ClassData getClassData() {
+            return clazz != null ? clazz : reader.getOnDemandClass(name);
+        }
+    }
+
+    /**
+     * Create a loader which reads the classes on the calling thread.
+     */
+    public DefaultClassDataLoader() {
+        this(null);
+    }
+
+    /**
+     * Create a loader which uses an executor to parse archive entries concurrently.
+     * @param executor the executor to use, or null to parse on the calling thread.
+     */
+    public DefaultClassDataLoader(Executor executor) {
+        this(executor, ParseProfile.FULL);
+    }
+
+    /**
+     * Create a loader which only keeps the part of the classes described by a profile.
+     * @param executor the executor to use, or null to parse on the calling thread.
+     * @param profile the profile used to parse the class files.
+     */
+    public DefaultClassDataLoader(Executor executor, ParseProfile profile) {
+        this(executor, profile, new SymbolTable());
+    }
+
+    /**
+     * Create a loader sharing its symbol table with other loaders.
+     * @param executor the executor to use, or null to parse on the calling thread.
+     * @param profile the profile used to parse the class files.
+     * @param symbols the table interning the names read from the class files.
+     */
+    public DefaultClassDataLoader(Executor executor, ParseProfile profile, SymbolTable symbols) {
+        this(executor, profile, symbols, null);
+    }
+
+    /**
+     * Create a loader sharing its symbol table and its dependency archives with other loaders.
+     * @param executor the executor to use, or null to parse on the calling thread.
+     * @param profile the profile used to parse the class files.
+     * @param symbols the table interning the names read from the class files.
+     * @param archives the dependency archives shared with other loaders, or null.
+     */
+    DefaultClassDataLoader(Executor executor, ParseProfile profile, SymbolTable symbols, SharedArchives archives) {
+        this.executor = executor;
+        this.profile = profile;
+        this.symbols = symbols;
+        this.archives = archives;
+    }
+
+    /**
+     * Get the profile used to parse the class files.
+     * @return the parse profile.
+     */
+    public ParseProfile getParseProfile() {
+        return profile;
+    }
+
+    /**
+     * Get the table interning the names read from the class files.
+     * @return the symbol table.
+     */
+    public SymbolTable getSymbolTable() {
+        return symbols;
+    }
     
     /**
      * Read a set of classes via this ClassDataLoader. The idea is similar to the regular
@@ -40,14 +178,182 @@ class DefaultClassDataLoader implements ClassDataLoader {
      * @throws IOException thrown in case of error while extracting the class data.
      */
     protected void read(File filename) throws IOException {
-        AbstractClassReader reader;
+        read(filename, ClassFilter.ALL);
+    }
+
+    /**
+     * Read a set of classes, the class files rejected by a filter are
+     * skipped before being read. They can still be resolved by name, e.g:
+     * to walk the class hierarchies, and are parsed when requested.
+     * @param filename the archive file or directory to read class file from.
+     * @param filter the filter of the class files to read.
+     * @throws IOException thrown in case of error while extracting the class data.
+     */
+    void read(File filename, ClassFilter filter) throws IOException {
+        AbstractClassReader reader = createReader(filename);
+        reader.setFilter(filter);
+        register(filename.toURI(), reader);
+    }
+
+    /**
+     * Create the reader of a location read by {@link #read(File)}.
+     * @param filename the archive file or directory to read class file from.
+     * @return the reader.
+     */
+    AbstractClassReader createReader(File filename) {
         if (filename.isDirectory()) {
-            reader = new DirectoryReader(filename, this);
+            return new DirectoryReader(filename, this, executor, profile);
+        }
+        return new JarReader(filename, this, executor, profile);
+    }
+
+    /**
+     * Read a dependency via this ClassDataLoader. Archives are read lazily,
+     * directories are read the same way as {@link #read(File)} does.
+     * An archive already read by a loader of the same factory is shared.
+     * @param filename the archive file or directory to read class file from. 
+     * @throws IOException thrown in case of error while extracting the class data.
+     */
+    protected void readDependency(File filename) throws IOException {
+        if (filename.isDirectory()) {
+            read(filename);
+        } else if (archives != null) {
+            Location location = reserve(filename.toURI());
+            publish(location, archives.read(filename, this, profile));
         } else {
-            reader = new JarReader(filename, this);
+            register(filename.toURI(), new LazyJarReader(filename, this, profile));
+        }
+    }
+
+    /**
+     * Reserve the position of a location in the classpath. A location gets
+     * its position when it is first reserved or read, so reserving several
+     * locations before reading them concurrently keeps their order.
+     * @param uri the location.
+     * @return the location.
+     */
+    Location reserve(URI uri) {
+        Location location = locations.get(uri);
+        if (location == null) {
+            synchronized (this) {
+                location = locations.get(uri);
+                if (location == null) {
+                    location = new Location(locations.size());
+                    locations.put(uri, location);
+                }
+            }
         }
+        return location;
+    }
+
+    /**
+     * Read a reader content and add it to the classpath. The position of
+     * the location is reserved before reading, the content is published
+     * once read.
+     * @param uri the location read by the reader.
+     * @param reader the reader.
+     * @throws IOException thrown in case of error while extracting the class data.
+     */
+    void register(URI uri, AbstractClassReader reader) throws IOException {
+        Location location = reserve(uri);
         reader.read();
-        readers.put(filename.toURI(), reader);
+        publish(location, reader);
+    }
+
+    /**
+     * Add the content of a reader which has been read to the classpath.
+     * @param location the location read by the reader.
+     * @param reader the reader.
+     */
+    private synchronized void publish(Location location, AbstractClassReader reader) {
+        // new classes may change how the hierarchies resolve.
+        hierarchy = null;
+        inheritedMethods.clear();
+        if (location.reader == null) {
+            location.reader = reader;
+            int i = 0;
+            while (i < classpath.size() && classpath.get(i).position < location.position) {
+                i++;
+            }
+            classpath.add(i, location);
+            index(index, location);
+        } else {
+            // an already known location has been read again, its
+            // position in the classpath is kept but its content changed.
+            location.reader = reader;
+            reindex();
+        }
+        List<Location> withPrunedDirectories = new ArrayList<Location>();
+        for (Location current : classpath) {
+            if (current.reader.hasPrunedDirectories()) {
+                withPrunedDirectories.add(current);
+            }
+        }
+        pruned = withPrunedDirectories.isEmpty()
+                ? Collections.<Location>emptyList() : Collections.unmodifiableList(withPrunedDirectories);
+    }
+    
+    /**
+     * Add the classes of a location to the name index. The definition
+     * coming first in the classpath wins, the other ones are recorded as
+     * shadowed.
+     * @param location the location to index.
+     */
+    private static void index(Index index, Location location) {
+        AbstractClassReader reader = location.reader;
+        for (String name : reader.getOnDemandClassNames()) {
+            index(index, new Definition(location.position, name, null, reader));
+        }
+        if (reader instanceof LazyJarReader) {
+            // all its classes are available on demand.
+            return;
+        }
+        for (ClassData clazz : reader.getClasses()) {
+            index(index, new Definition(location.position, clazz.getName(), clazz, null));
+        }
+        for (ClassData clazz : reader.getExternalClasses()) {
+            index(index, new Definition(location.position, clazz.getName(), clazz, null));
+        }
+    }
+
+    private static void index(Index index, Definition definition) {
+        Definition current = index.classes.get(definition.name);
+        if (current == null) {
+            index.classes.put(definition.name, definition);
+        } else if (current.position <= definition.position) {
+            addShadowed(index, definition);
+        } else {
+            // a location read later comes first in the classpath.
+            index.classes.put(definition.name, definition);
+            addShadowed(index, current);
+        }
+    }
+
+    private static void addShadowed(Index index, Definition definition) {
+        // the classes available on demand are only parsed when listed, see toClasses.
+        List<Definition> current = index.shadowed.get(definition.name);
+        List<Definition> duplicates = new ArrayList<Definition>();
+        if (current != null) {
+            duplicates.addAll(current);
+        }
+        int i = 0;
+        while (i < duplicates.size() && duplicates.get(i).position <= definition.position) {
+            i++;
+        }
+        duplicates.add(i, definition);
+        index.shadowed.put(definition.name, Collections.unmodifiableList(duplicates));
+    }
+
+    /**
+     * Rebuild the name index from all the locations in classpath order,
+     * the lookups use the previous index until the new one is complete.
+     */
+    private void reindex() {
+        Index rebuilt = new Index();
+        for (Location location : classpath) {
+            index(rebuilt, location);
+        }
+        index = rebuilt;
     }
     
     /**
@@ -55,24 +361,137 @@ class DefaultClassDataLoader implements ClassDataLoader {
      */
     @Override
     public ClassData fromName(String name) {
-        for (AbstractClassReader reader : readers.values()) {
-            for (ClassData clazz : reader.getClasses()) {
-                if (clazz.getName().equals(name)) {
-                    return clazz;
-                }
+        Definition definition = index.classes.get(name);
+        // the directories which have not been listed may define the class
+        // as well, only the ones coming first in the classpath are looked up.
+        for (Location location : pruned) {
+            if (definition != null && location.position >= definition.position) {
+                break;
+            }
+            ClassData clazz = location.reader.getOnDemandClass(name);
+            if (clazz != null) {
+                return clazz;
+            }
+        }
+        return definition == null ? null : definition.getClassData();
+    }
+
+    /**
+     * Get the errors which occurred while reading classes on demand, e.g:
+     * out of the dependencies read lazily, and forget them.
+     * @return the errors, in classpath order.
+     */
+    List<ReadClassException> takeReadErrors() {
+        List<ReadClassException> errors = new ArrayList<ReadClassException>();
+        for (Location location : classpath) {
+            AbstractClassReader reader = location.reader;
+            if (reader != null) {
+                errors.addAll(reader.takeErrors());
             }
         }
+        return errors;
+    }
+
+    /**
+     * Get the reader of a location read lazily, see {@link #readDependency(URI)}.
+     * @param uri the location.
+     * @return the reader, or null if the location is not read lazily.
+     */
+    LazyJarReader getLazyReader(URI uri) {
+        AbstractClassReader reader = getReader(uri);
+        if (reader instanceof LazyJarReader) {
+            return (LazyJarReader)reader;
+        }
         return null;
     }
 
+    /**
+     * Get the hierarchy of the classes of this loader, it is
+     * kept until new content is read.
+     * @return the hierarchy.
+     */
+    synchronized ClassHierarchy getClassHierarchy() {
+        if (hierarchy == null) {
+            hierarchy = new ClassHierarchy(this);
+        }
+        return hierarchy;
+    }
+
+    /**
+     * Get the cache of the methods resolved through the class hierarchies,
+     * see {@link RuleHelpers#getClassMethodRecursive(ClassData)}.
+     * @return the cache, keyed by class.
+     */
+    ConcurrentMap<ClassData, RuleHelpers.ClassMethods> getInheritedMethods() {
+        return inheritedMethods;
+    }
+
+    /**
+     * Get the definitions of a class which are hidden by the definition
+     * returned by {@link #fromName(String)}, in classpath order.
+     * @param name the class name.
+     * @return the list of shadowed definitions, empty if none.
+     */
+    public List<ClassData> getShadowedClasses(String name) {
+        List<Definition> duplicates = index.shadowed.get(name);
+        if (duplicates == null) {
+            return Collections.emptyList();
+        }
+        return toClasses(duplicates);
+    }
+
+    /**
+     * Get all the shadowed class definitions, indexed by class name.
+     * Only the names defined more than once in the classpath are present.
+     * @return the shadowed definitions, sorted by class name.
+     */
+    public Map<String, List<ClassData>> getShadowedClasses() {
+        Map<String, List<ClassData>> result = new TreeMap<String, List<ClassData>>();
+        for (Map.Entry<String, List<Definition>> entry : index.shadowed.entrySet()) {
+            List<ClassData> classes = toClasses(entry.getValue());
+            if (!classes.isEmpty()) {
+                result.put(entry.getKey(), classes);
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Get the classes of some definitions, the ones available on demand
+     * are parsed, those which cannot be read are left out.
+     * @param definitions the definitions.
+     * @return the classes.
+     */
+    private static List<ClassData> toClasses(List<Definition> definitions) {
+        List<ClassData> result = new ArrayList<ClassData>(definitions.size());
+        for (Definition definition : definitions) {
+            ClassData clazz = definition.getClassData();
+            if (clazz != null) {
+                result.add(clazz);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Get the reader of a location which has been read.
+     * @param uri the location.
+     * @return the reader, or null if the location has not been read.
+     */
+    AbstractClassReader getReader(URI uri) {
+        Location location = locations.get(uri);
+        return location == null ? null : location.reader;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public List<ClassData> getClasses(URI uri) {
         List<ClassData> result = new ArrayList<ClassData>();
-        if (readers.containsKey(uri)) {
-            result.addAll(readers.get(uri).getClasses());
+        AbstractClassReader reader = getReader(uri);
+        if (reader != null) {
+            result.addAll(reader.getClasses());
         }
         return result;
     }
@@ -83,8 +502,8 @@ class DefaultClassDataLoader implements ClassDataLoader {
     @Override
     public List<ClassData> getClasses() {
         List<ClassData> result = new ArrayList<ClassData>();
-        for (AbstractClassReader reader : readers.values()) {
-            result.addAll(reader.getClasses());
+        for (Location location : classpath) {
+            result.addAll(location.reader.getClasses());
         }
         return result;
     }
@@ -95,8 +514,9 @@ class DefaultClassDataLoader implements ClassDataLoader {
     @Override
     public List<ClassData> getClasses(URI uri, List<AntPatternMatcher> includes, List<AntPatternMatcher> excludes) {
         List<ClassData> result = new ArrayList<ClassData>();
-        if (readers.containsKey(uri)) {
-            result.addAll(readers.get(uri).getClasses(includes, excludes));
+        AbstractClassReader reader = getReader(uri);
+        if (reader != null) {
+            result.addAll(reader.getClasses(includes, excludes));
         }
         return result;
     }
@@ -112,4 +532,60 @@ class DefaultClassDataLoader implements ClassDataLoader {
             throw new IOException("Unsupported scheme: " + uri.getScheme());
         }
     }
+
+    /**
+     * Read a set of classes, see {@link #read(File, ClassFilter)}.
+     * @param uri the location to read.
+     * @param filter the filter of the class files to read.
+     * @throws IOException thrown in case of error while extracting the class data.
+     */
+    void read(URI uri, ClassFilter filter) throws IOException {
+        if ("file".equals(uri.getScheme())) {
+            read(new File(uri.getPath()), filter);
+        } else {
+            throw new IOException("Unsupported scheme: " + uri.getScheme());
+        }
+    }
+
+    /**
+     * Read a dependency out of the provided URI. Classes from dependencies
+     * are only looked up by name, so the archives are read lazily: their
+     * classes are parsed when requested through {@link #fromName(String)},
+     * and the errors doing so are kept, see {@link #takeReadErrors()}.
+     * @param uri the URI where to load class file from.
+     * @throws IOException Thrown in case of error.
+     */
+    public void readDependency(URI uri) throws IOException {
+        if ("file".equals(uri.getScheme())) {
+            readDependency(new File(uri.getPath()));
+        } else {
+            throw new IOException("Unsupported scheme: " + uri.getScheme());
+        }
+    }
+
+    /**
+     * Release the files held by the readers, e.g: the dependency archives
+     * read lazily. The classes already parsed remain available, the ones
+     * which were not parsed yet cannot be read anymore.
+     * @throws IOException the first error which occurred while closing a reader.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Location location : classpath) {
+            AbstractClassReader reader = location.reader;
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
 }
@@ -1,11 +1,61 @@
 package com.googlecode.japi.checker;
 
+import java.util.concurrent.Executor;
 
+/**
+ * Factory of DefaultClassDataLoader, all the loaders created
+ * by a factory share the same symbol table.
+ */
 class DefaultClassDataLoaderFactory implements ClassDataLoaderFactory {
+    private final Executor executor;
+    private final ParseProfile profile;
+    private final SymbolTable symbols;
+    private final SharedArchives archives;
+
+    public DefaultClassDataLoaderFactory() {
+        this(null);
+    }
+
+    /**
+     * @param executor the executor the loaders use to parse classes, can be null.
+     */
+    public DefaultClassDataLoaderFactory(Executor executor) {
+        this(executor, ParseProfile.FULL);
+    }
+
+    /**
+     * @param executor the executor the loaders use to parse classes, can be null.
+     * @param profile the profile the loaders use to parse classes.
+     */
+    public DefaultClassDataLoaderFactory(Executor executor, ParseProfile profile) {
+        this(executor, profile, new SymbolTable());
+    }
+
+    /**
+     * @param executor the executor the loaders use to parse classes, can be null.
+     * @param profile the profile the loaders use to parse classes.
+     * @param symbols the symbol table shared by all the loaders.
+     */
+    public DefaultClassDataLoaderFactory(Executor executor, ParseProfile profile, SymbolTable symbols) {
+        this(executor, profile, symbols, null);
+    }
+
+    /**
+     * @param executor the executor the loaders use to parse classes, can be null.
+     * @param profile the profile the loaders use to parse classes.
+     * @param symbols the symbol table shared by all the loaders.
+     * @param archives the dependency archives shared by all the loaders, can be null.
+     */
+    DefaultClassDataLoaderFactory(Executor executor, ParseProfile profile, SymbolTable symbols, SharedArchives archives) {
+        this.executor = executor;
+        this.profile = profile;
+        this.symbols = symbols;
+        this.archives = archives;
+    }
 
     @Override
     public ClassDataLoader createClassDataLoader() {
-        return new DefaultClassDataLoader();
+        return new DefaultClassDataLoader(executor, profile, symbols, archives);
     }
 
 }
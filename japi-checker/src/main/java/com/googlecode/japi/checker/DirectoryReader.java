@@ -15,60 +15,220 @@
  */
 package com.googlecode.japi.checker;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
+import com.googlecode.japi.checker.model.ClassData;
 
+/**
+ * Extract the classes out of a directory.
+ * 
+ * The directory tree is listed first, then the class files are read
+ * whole and parsed, concurrently when an Executor is provided. The content
+ * of the reader follows the listing order whatever the completion order
+ * of the files.
+ * 
+ * The class files rejected by the filter are not read, and the
+ * directories which cannot contain any accepted class file are not
+ * listed. Their classes are parsed on demand.
+ */
 public class DirectoryReader extends AbstractClassReader {
 
     private File path;
     private ClassDataLoader loader;
+    private Executor executor;
+    private ParseProfile profile;
+    private Set<String> skipped = Collections.emptySet();
+    private List<String> pruned = Collections.emptyList();
     
     public DirectoryReader(File path, ClassDataLoader loader) {
+        this(path, loader, ParseProfile.FULL);
+    }
+
+    /**
+     * Create a reader which parses the class files using a profile.
+     * @param path the directory to read.
+     * @param loader the loader the classes belong to.
+     * @param profile the profile used to parse the class files.
+     */
+    public DirectoryReader(File path, ClassDataLoader loader, ParseProfile profile) {
+        this(path, loader, null, profile);
+    }
+
+    /**
+     * Create a reader which reads and parses the class files using an executor.
+     * @param path the directory to read.
+     * @param loader the loader the classes belong to.
+     * @param executor the executor used to read and parse the class files,
+     *        null to do it on the calling thread.
+     * @param profile the profile used to parse the class files.
+     */
+    public DirectoryReader(File path, ClassDataLoader loader, Executor executor, ParseProfile profile) {
         this.path = path;
         this.loader = loader;
+        this.executor = executor;
+        this.profile = profile;
     }
 
     @Override
     public void read() throws IOException {
         clear();
+        final List<File> files = new ArrayList<File>();
+        final List<String> entries = new ArrayList<String>();
+        Set<String> skipped = new LinkedHashSet<String>();
+        List<String> pruned = new ArrayList<String>();
+        scanDir(this.path, "", files, entries, skipped, pruned);
+        final List<List<ClassData>> results = new ArrayList<List<ClassData>>(Collections.<List<ClassData>>nCopies(entries.size(), null));
+        final IOException[] failures = new IOException[entries.size()];
+        final ClassDumper.Pool dumpers = new ClassDumper.Pool(loader, profile);
+        ParallelTasks.execute(executor, entries.size(), new ParallelTasks.Task() {
+            @Override
+            public void run(int index) {
+                try {
+                    byte[] data = readFile(files.get(index));
+                    results.set(index, parseClass(dumpers, entries.get(index), data));
+                } catch (IOException exc) {
+                    failures[index] = exc;
+                }
+            }
+        });
         ReadClassesException errors = new ReadClassesException(); 
-        scanDir(this.path, null, errors);
+        for (int i = 0; i < results.size(); i++) {
+            if (failures[i] instanceof ReadClassException) {
+                errors.add((ReadClassException)failures[i]);
+            } else if (failures[i] != null) {
+                throw failures[i];
+            } else {
+                this.put(entries.get(i), results.get(i));
+            }
+        }
+        this.skipped = skipped;
+        this.pruned = pruned;
         errors.throwIfNeeded();
     }
 
-    private void scanDir(File dir, String path, ReadClassesException errors) throws IOException {
-        byte buffer[] = new byte[2048]; 
-        if (path == null) {
-            path = "";
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    Set<String> getOnDemandClassNames() {
+        return Collections.unmodifiableSet(skipped);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    ClassData getOnDemandClass(String name) {
+        if (skipped.contains(name) || isPruned(name)) {
+            return readOnDemand(new ClassDumper(loader, profile), name);
         }
-        for (File file : dir.listFiles()) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    boolean hasPrunedDirectories() {
+        return !pruned.isEmpty();
+    }
+
+    private boolean isPruned(String name) {
+        for (String directory : pruned) {
+            if (name.startsWith(directory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    byte[] readEntry(String entry) throws IOException {
+        File file = new File(this.path, entry);
+        if (!file.isFile()) {
+            return null;
+        }
+        return readFile(file);
+    }
+
+    /**
+     * Read a file whole, into an array sized by its length.
+     * @param file the file to read.
+     * @return the content of the file.
+     * @throws IOException in case of reading error.
+     */
+    static byte[] readFile(File file) throws IOException {
+        FileInputStream is = new FileInputStream(file);
+        try {
+            FileChannel channel = is.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("File too large: " + file);
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int)size);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            if (buffer.hasRemaining()) {
+                // the file has been truncated while being read.
+                return Arrays.copyOf(buffer.array(), buffer.position());
+            }
+            return buffer.array();
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * List the class files of a directory tree, the directories rejected by
+     * the filter are not listed.
+     * @param dir the directory to list.
+     * @param path the path of the directory, ending with '/' unless empty.
+     * @param files the class files to read.
+     * @param entries the paths of the class files to read.
+     * @param skipped the names of the classes rejected by the filter.
+     * @param pruned the paths of the directories which have not been listed.
+     * @throws IOException if a directory cannot be listed.
+     */
+    private void scanDir(File dir, String path, List<File> files, List<String> entries,
+            Set<String> skipped, List<String> pruned) throws IOException {
+        String[] names = dir.list();
+        if (names == null) {
+            throw new IOException("Could not list directory " + dir);
+        }
+        ClassFilter filter = getFilter();
+        for (String name : names) {
+            File file = new File(dir, name);
             if (file.isDirectory()) {
-                scanDir(file, path + file.getName() + "/", errors);
-            } else if (file.getName().endsWith(".class")) {
-                ClassDumper dumper = new ClassDumper(loader); 
-                ByteArrayOutputStream os =  new ByteArrayOutputStream();
-                InputStream is = null;
-                try {
-                    is = new FileInputStream(file);
-                    int count = 0;
-                    while ((count = is.read(buffer)) != -1) {
-                        os.write(buffer, 0, count);
-                    }
-                    try {
-                        this.readClass(dumper, path + file.getName(), os.toByteArray());
-                    } catch (ReadClassException exc) {
-                        errors.add(exc);
-                    } finally {
-                        os.close();
-                    }
-                } finally {
-                    if (is != null) {
-                        is.close();
-                    }
+                String subpath = path + name + "/";
+                if (filter.mayContain(subpath)) {
+                    scanDir(file, subpath, files, entries, skipped, pruned);
+                } else {
+                    pruned.add(subpath);
+                }
+            } else if (name.endsWith(".class")) {
+                String entry = path + name;
+                if (filter.accept(entry)) {
+                    files.add(file);
+                    entries.add(entry);
+                } else {
+                    skipped.add(entry.substring(0, entry.length() - ".class".length()));
                 }
             }
         }
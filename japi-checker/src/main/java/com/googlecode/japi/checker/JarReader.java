@@ -15,61 +15,194 @@
  */
 package com.googlecode.japi.checker;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
+import com.googlecode.japi.checker.model.ClassData;
+
+/**
+ * Extract the classes out of a jar (or any zip kind of) archive.
+ * 
+ * The class entries are listed from the archive central directory and
+ * read directly from the memory mapped archive. When an Executor is
+ * provided the entries are parsed concurrently. The content of the
+ * reader is the same whatever the completion order of the entries.
+ * The entries rejected by the filter are not read, their classes are
+ * parsed on demand.
+ */
 public class JarReader extends AbstractClassReader {
     private File filename;
     private ClassDataLoader loader;
+    private Executor executor;
+    private ParseProfile profile;
+    private ZipArchive archive;
+    private Set<String> skipped = Collections.emptySet();
     
     public JarReader(File filename, ClassDataLoader loader) {
+        this(filename, loader, null);
+    }
+    
+    /**
+     * Create a reader which parses the archive entries using an executor.
+     * @param filename the archive to read.
+     * @param loader the loader the classes belong to.
+     * @param executor the executor used to parse the entries, null to parse
+     *        them on the calling thread.
+     */
+    public JarReader(File filename, ClassDataLoader loader, Executor executor) {
+        this(filename, loader, executor, ParseProfile.FULL);
+    }
+
+    /**
+     * Create a reader which parses the archive entries using a profile.
+     * @param filename the archive to read.
+     * @param loader the loader the classes belong to.
+     * @param executor the executor used to parse the entries, null to parse
+     *        them on the calling thread.
+     * @param profile the profile used to parse the class files.
+     */
+    public JarReader(File filename, ClassDataLoader loader, Executor executor, ParseProfile profile) {
         this.filename = filename;
         this.loader = loader;
+        this.executor = executor;
+        this.profile = profile;
     }
     
+    /**
+     * Read the archive, each entry being read and parsed by the executor
+     * if any. Results are merged in the central directory order once all
+     * the entries have been processed.
+     * {@inheritDoc}
+     */
     @Override
     public void read() throws IOException {
         this.clear();
-        FileInputStream fis = null;
-        ZipInputStream zis = null;
+        synchronized (this) {
+            // the content may have changed since the archive was opened.
+            if (archive != null) {
+                archive.close();
+                archive = null;
+            }
+        }
+        final ZipArchive zip = ZipArchive.open(this.filename);
+        boolean keep = false;
         try {
-            ReadClassesException errors = new ReadClassesException(); 
-            fis = new FileInputStream(this.filename);
-            zis = new ZipInputStream(new BufferedInputStream(fis));
-            ZipEntry entry = null;
-            byte buffer[] = new byte[2048];
-            int count = 0;
-            while((entry = zis.getNextEntry()) != null) {
-                if (entry.getName().endsWith(".class")) {
-                    ClassDumper dumper = new ClassDumper(loader); 
-
-                    ByteArrayOutputStream os =  new ByteArrayOutputStream();
-                    while ((count = zis.read(buffer)) != -1) {
-                        os.write(buffer, 0, count);
-                    }
+            final List<String> entries = new ArrayList<String>();
+            Set<String> skipped = new LinkedHashSet<String>();
+            ClassFilter filter = getFilter();
+            for (String name : zip.getEntryNames()) {
+                if (!name.endsWith(".class")) {
+                    continue;
+                }
+                if (filter.accept(name)) {
+                    entries.add(name);
+                } else {
+                    skipped.add(name.substring(0, name.length() - ".class".length()));
+                }
+            }
+            this.skipped = skipped;
+            final List<List<ClassData>> results = new ArrayList<List<ClassData>>(Collections.<List<ClassData>>nCopies(entries.size(), null));
+            final IOException[] failures = new IOException[entries.size()];
+            final ClassDumper.Pool dumpers = new ClassDumper.Pool(loader, profile);
+            ParallelTasks.execute(executor, entries.size(), new ParallelTasks.Task() {
+                @Override
+                public void run(int index) {
+                    String name = entries.get(index);
                     try {
-                        this.readClass(dumper, entry.getName(), os.toByteArray());
-                    } catch (ReadClassException exc) {
-                        errors.add(exc);
-                    } finally {
-                        os.close();
+                        byte[] data = zip.read(name);
+                        results.set(index, parseClass(dumpers, name, data));
+                    } catch (IOException exc) {
+                        failures[index] = exc;
                     }
                 }
+            });
+            ReadClassesException errors = new ReadClassesException(); 
+            for (int i = 0; i < results.size(); i++) {
+                if (failures[i] instanceof ReadClassException) {
+                    errors.add((ReadClassException)failures[i]);
+                } else if (failures[i] != null) {
+                    throw failures[i];
+                } else {
+                    this.put(entries.get(i), results.get(i));
+                }
             }
             errors.throwIfNeeded();
+            // a mapped archive holds no file handle, so it is kept for readEntry.
+            keep = !zip.keepsFileOpen();
         } finally {
-            if (fis != null) {
-                fis.close();
-            }
-            if (zis != null) {
-                zis.close();
+            if (keep) {
+                synchronized (this) {
+                    archive = zip;
+                }
+            } else {
+                zip.close();
             }
         }
     }
 
+    /**
+     * Close the archive kept mapped by {@link #read()}, the entries are
+     * then read by opening the archive again.
+     * {@inheritDoc}
+     */
+    @Override
+    void close() throws IOException {
+        ZipArchive archive;
+        synchronized (this) {
+            archive = this.archive;
+            this.archive = null;
+        }
+        if (archive != null) {
+            archive.close();
+        }
+    }
+
+    /**
+     * The entries are read from the archive mapped by {@link #read()}. The
+     * archives which cannot be mapped are opened again for each entry, so
+     * no file is left open.
+     * {@inheritDoc}
+     */
+    @Override
+    byte[] readEntry(String entry) throws IOException {
+        ZipArchive archive;
+        synchronized (this) {
+            archive = this.archive;
+        }
+        if (archive != null) {
+            return archive.read(entry);
+        }
+        ZipArchive zip = ZipArchive.open(this.filename);
+        try {
+            return zip.read(entry);
+        } finally {
+            zip.close();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    Set<String> getOnDemandClassNames() {
+        return Collections.unmodifiableSet(skipped);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    ClassData getOnDemandClass(String name) {
+        if (!skipped.contains(name)) {
+            return null;
+        }
+        return readOnDemand(new ClassDumper(loader, profile), name);
+    }
+
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import com.googlecode.japi.checker.model.AnnotationData;
+
+/**
+ * An annotation created out of its descriptor and visibility only. Its
+ * element values are decoded out of a copy of their encoded form the
+ * first time they are accessed, see {@link AnnotationDumper}.
+ */
+class LazyAnnotationData extends AnnotationData {
+    private volatile AnnotationDumper dumper;
+
+    LazyAnnotationData(String desc, boolean visible) {
+        super(desc, visible);
+    }
+
+    /**
+     * Set the values to decode.
+     * @param dumper the dumper holding the encoded values.
+     */
+    void setValues(AnnotationDumper dumper) {
+        this.dumper = dumper;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void decode() {
+        if (dumper != null) {
+            synchronized (this) {
+                if (dumper != null) {
+                    dumper.decode(this);
+                    dumper = null;
+                }
+            }
+        }
+    }
+}
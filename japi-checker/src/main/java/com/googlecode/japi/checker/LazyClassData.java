@@ -0,0 +1,139 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.googlecode.japi.checker.model.AnnotationData;
+import com.googlecode.japi.checker.model.AttributeData;
+import com.googlecode.japi.checker.model.FieldData;
+import com.googlecode.japi.checker.model.MethodData;
+
+/**
+ * A ClassData created out of the class file header only: access flags,
+ * name, super class, interfaces and version. The rest of the class file
+ * is parsed the first time it is accessed, its debug information
+ * only when needed, see {@link ClassFileData}.
+ */
+class LazyClassData extends ClassFileData {
+    private final LazyJarReader reader;
+    private volatile boolean complete;
+    private boolean loading;
+
+    LazyClassData(ClassDataLoader loader, LazyJarReader reader, int access, String name,
+            String superName, String[] interfaces, int version) {
+        super(loader, reader, name + ".class", access, name, null, superName, interfaces, version);
+        this.reader = reader;
+    }
+
+    /**
+     * Parse the rest of the class file if not done yet. If the class file
+     * cannot be parsed, the error is recorded by the reader and the class
+     * is left with its header only.
+     */
+    private void complete() {
+        if (!complete) {
+            synchronized (this) {
+                if (complete) {
+                    return;
+                }
+                // loading is only true while this thread populates the class.
+                if (loading) {
+                    throw new IllegalStateException("The class " + getName() + " is accessed while being loaded.");
+                }
+                loading = true;
+                try {
+                    reader.readMembers(this);
+                } catch (IOException e) {
+                    setMethods(new ArrayList<MethodData>());
+                    setFields(new ArrayList<FieldData>());
+                    setAttributes(new ArrayList<AttributeData>());
+                    reader.addError(e instanceof ReadClassException ? (ReadClassException)e
+                            : new ReadClassException("Error occurred while loading class " + getName() + ": " + e.toString(), e));
+                } finally {
+                    loading = false;
+                    complete = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Set the signature read out of the class file, the header does not contain it.
+     * @param signature the signature.
+     */
+    void completeSignature(String signature) {
+        setSignature(signature);
+    }
+
+    /**
+     * @return the annotations parsed so far, without completing the class.
+     */
+    List<AnnotationData> getParsedAnnotations() {
+        return super.getAnnotations();
+    }
+
+    /**
+     * @return the methods parsed so far, without completing the class.
+     */
+    List<MethodData> getParsedMethods() {
+        return super.getMethods();
+    }
+
+    @Override
+    public String getSignature() {
+        complete();
+        return super.getSignature();
+    }
+
+    @Override
+    public List<MethodData> getMethods() {
+        complete();
+        return super.getMethods();
+    }
+
+    @Override
+    public List<FieldData> getFields() {
+        complete();
+        return super.getFields();
+    }
+
+    @Override
+    public List<AttributeData> getAttributes() {
+        complete();
+        return super.getAttributes();
+    }
+
+    @Override
+    public String getSource() {
+        complete();
+        return super.getSource();
+    }
+
+    @Override
+    public List<AnnotationData> getAnnotations() {
+        complete();
+        return super.getAnnotations();
+    }
+
+    @Override
+    public AnnotationData getAnnotation(String desc) {
+        complete();
+        return super.getAnnotation(desc);
+    }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.objectweb.asm.ClassReader;
+
+import com.googlecode.japi.checker.model.ClassData;
+import com.googlecode.japi.checker.utils.AntPatternMatcher;
+import com.googlecode.japi.checker.utils.AntPatternSet;
+
+/**
+ * Reads a jar (or any zip kind of) archive on demand. This reader is meant
+ * for dependencies, which are only accessed by name from the rules.
+ *
+ * Reading the archive only lists the class entries from its central directory.
+ * The header of a class is parsed the first time the class is requested,
+ * and the rest of the class file only when its members are accessed.
+ * The archive is kept mapped so the classes can be read at any time.
+ */
+class LazyJarReader extends AbstractClassReader {
+    private static final String CLASS_SUFFIX = ".class";
+    private File filename;
+    private ClassDataLoader loader;
+    private ParseProfile profile;
+    private volatile ZipArchive zip;
+    private boolean ownsArchive;
+    private Set<String> names = Collections.emptySet();
+    private ConcurrentMap<String, ClassData> headers = new ConcurrentHashMap<String, ClassData>();
+    private Set<String> unreadable = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * @param filename the archive to read.
+     * @param loader the loader the classes belong to.
+     * @param profile the profile used to parse the class members.
+     */
+    public LazyJarReader(File filename, ClassDataLoader loader, ParseProfile profile) {
+        this.filename = filename;
+        this.loader = loader;
+        this.profile = profile;
+    }
+
+    /**
+     * Create a reader out of an archive already read, e.g: by the reader
+     * of another loader. The classes are shared with the other readers of
+     * the content, they belong to the loader which parsed them first. The
+     * archive is not closed by this reader, see {@link Content#close()}.
+     * @param filename the archive.
+     * @param loader the loader the classes parsed by this reader belong to.
+     * @param profile the profile used to parse the class members.
+     * @param content the archive content.
+     */
+    LazyJarReader(File filename, ClassDataLoader loader, ParseProfile profile, Content content) {
+        this(filename, loader, profile);
+        this.zip = content.zip;
+        this.names = content.names;
+        this.headers = content.headers;
+        this.unreadable = content.unreadable;
+    }
+
+    /**
+     * The content of a read archive, which can be shared by the readers of
+     * several loaders: the archive, its class names and the classes parsed
+     * out of it so far.
+     */
+    static final class Content {
+        private final ZipArchive zip;
+        private final Set<String> names;
+        private final ConcurrentMap<String, ClassData> headers = new ConcurrentHashMap<String, ClassData>();
+        private final Set<String> unreadable = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        private Content(ZipArchive zip, Set<String> names) {
+            this.zip = zip;
+            this.names = names;
+        }
+
+        /**
+         * Close the archive, the classes not parsed yet cannot be read anymore.
+         * @throws IOException in case of error while closing.
+         */
+        void close() throws IOException {
+            zip.close();
+        }
+    }
+
+    /**
+     * Open an archive and list its classes.
+     * @param filename the archive.
+     * @return the content of the archive.
+     * @throws IOException thrown in case of error while reading the archive.
+     */
+    static Content open(File filename) throws IOException {
+        ZipArchive zip = ZipArchive.open(filename);
+        Set<String> names = new LinkedHashSet<String>();
+        for (String name : zip.getEntryNames()) {
+            if (name.endsWith(CLASS_SUFFIX)) {
+                names.add(name.substring(0, name.length() - CLASS_SUFFIX.length()));
+            }
+        }
+        return new Content(zip, names);
+    }
+
+    @Override
+    void read() throws IOException {
+        Content content = open(this.filename);
+        ZipArchive previous = this.zip;
+        boolean ownedPrevious = this.ownsArchive;
+        this.names = content.names;
+        this.headers = content.headers;
+        this.unreadable = content.unreadable;
+        this.zip = content.zip;
+        this.ownsArchive = true;
+        if (previous != null && ownedPrevious) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Close the archive, unless it is shared with other readers. The classes
+     * already parsed remain available, the other ones cannot be read anymore.
+     * {@inheritDoc}
+     */
+    @Override
+    void close() throws IOException {
+        ZipArchive previous = this.zip;
+        if (previous != null && ownsArchive) {
+            this.zip = null;
+            previous.close();
+        }
+    }
+
+    private ZipArchive getArchive() throws IOException {
+        ZipArchive zip = this.zip;
+        if (zip == null) {
+            throw new IOException("The archive " + filename + " is closed");
+        }
+        return zip;
+    }
+
+    /**
+     * Get the names of the classes available from the archive,
+     * without parsing them.
+     * @return the class names in the central directory order.
+     */
+    Set<String> getClassNames() {
+        return Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * All the classes of the archive are parsed on demand.
+     * {@inheritDoc}
+     */
+    @Override
+    Set<String> getOnDemandClassNames() {
+        return getClassNames();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    ClassData getOnDemandClass(String name) {
+        return getClass(name);
+    }
+
+    /**
+     * Get a class out of the archive, only its header is parsed.
+     * A class which cannot be read is recorded as an error once,
+     * see {@link #takeErrors()}.
+     * @param name the class name.
+     * @return the class or null if not found or not readable.
+     */
+    ClassData getClass(String name) {
+        if (!names.contains(name) || unreadable.contains(name)) {
+            return null;
+        }
+        ClassData clazz = headers.get(name);
+        if (clazz == null) {
+            clazz = readHeader(name);
+            if (clazz != null) {
+                ClassData previous = headers.putIfAbsent(name, clazz);
+                if (previous != null) {
+                    clazz = previous;
+                }
+            }
+        }
+        return clazz;
+    }
+
+    /**
+     * Create a class out of the header of its class file.
+     * @param name the class name.
+     * @return the class, or null in case of error.
+     */
+    private ClassData readHeader(String name) {
+        try {
+            ClassReader cr = new ClassReader(readClassFile(name));
+            // the version is read the same way the ClassReader.accept method does.
+            SymbolTable symbols = SymbolTable.of(loader);
+            return new LazyClassData(loader, this, cr.getAccess(), symbols.intern(cr.getClassName()),
+                    symbols.intern(cr.getSuperName()), symbols.intern(cr.getInterfaces()), cr.readInt(4));
+        } catch (ReadClassException e) {
+            failed(name, e);
+        } catch (IOException e) {
+            failed(name, new ReadClassException("Error occurred while loading class " + name + " from " + filename + ": " + e.toString(), e));
+        } catch (RuntimeException e) {
+            failed(name, new ReadClassException("Error occurred while loading class " + name + " from " + filename + ": " + e.toString(), e));
+        }
+        return null;
+    }
+
+    private void failed(String name, ReadClassException error) {
+        if (unreadable.add(name)) {
+            addError(error);
+        }
+    }
+
+    /**
+     * Parse the whole class file to populate the members of a class.
+     * @param clazz the class to complete.
+     * @throws IOException in case of reading error.
+     */
+    void readMembers(LazyClassData clazz) throws IOException {
+        byte[] data = readClassFile(clazz.getName());
+        try {
+            ClassReader cr = new ClassReader(data);
+            cr.accept(new ClassDumper(loader, profile, clazz), profile.getParsingOptions());
+            AnnotationDumper.bind(cr, clazz.getParsedAnnotations(), clazz.getParsedMethods());
+            if (profile.parsesDebugInfo()) {
+                clazz.setDebugInfoRead();
+            }
+        } catch (RuntimeException exc) {
+            throw new ReadClassException("Error occurred while loading class " + clazz.getName() + ": " + exc.toString(), exc);
+        }
+    }
+
+    /**
+     * Create the visitors to give to {@link #readClass(ClassDumper.Pool, SymbolTable, String)}.
+     * @return a new pool of visitors.
+     */
+    ClassDumper.Pool newDumperPool() {
+        return new ClassDumper.Pool(loader, profile);
+    }
+
+    /**
+     * Parse a class fully, without keeping it in this reader. This is used
+     * to stream the content of an artifact one class at a time.
+     * @param dumpers the visitors to use, see {@link #newDumperPool()}.
+     * @param symbols the table interning the names of the class, so they
+     *        are not kept by the table of the loader once the class is released.
+     * @param name the class name.
+     * @return the classes extracted from the class file.
+     * @throws IOException in case of reading error.
+     */
+    List<ClassData> readClass(ClassDumper.Pool dumpers, SymbolTable symbols, String name) throws IOException {
+        byte[] data = readClassFile(name);
+        ClassDumper dumper = dumpers.take();
+        try {
+            dumper.setSymbolTable(symbols);
+            return parseClass(dumper, name + CLASS_SUFFIX, data);
+        } finally {
+            dumpers.release(dumper);
+        }
+    }
+
+    /**
+     * Get the names of the classes matching the patterns, in sorted order.
+     * @param includes the include patterns.
+     * @param excludes the exclude patterns.
+     * @return the sorted class names.
+     */
+    List<String> getSortedClassNames(List<AntPatternMatcher> includes, List<AntPatternMatcher> excludes) {
+        List<String> result = new ArrayList<String>();
+        AntPatternSet patterns = AntPatternSet.of(includes, excludes);
+        for (String name : names) {
+            if (patterns.matches(name + CLASS_SUFFIX)) {
+                result.add(name);
+            }
+        }
+        Collections.sort(result);
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    byte[] readEntry(String entry) throws IOException {
+        return getArchive().read(entry);
+    }
+
+    private byte[] readClassFile(String name) throws IOException {
+        byte[] data = getArchive().read(name + CLASS_SUFFIX);
+        if (data == null) {
+            throw new ReadClassException("Could not find class " + name + " in " + filename);
+        }
+        return data;
+    }
+
+    /**
+     * Get a filtered list of classes, the headers of all the matching
+     * classes are parsed.
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ClassData> getClasses(List<AntPatternMatcher> includes, List<AntPatternMatcher> excludes) {
+        List<ClassData> result = new ArrayList<ClassData>();
+        AntPatternSet patterns = AntPatternSet.of(includes, excludes);
+        for (String name : names) {
+            if (patterns.matches(name + CLASS_SUFFIX)) {
+                ClassData clazz = getClass(name);
+                if (clazz != null) {
+                    result.add(clazz);
+                }
+            }
+        }
+        return result;
+    }
+}
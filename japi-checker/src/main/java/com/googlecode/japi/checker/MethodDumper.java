@@ -15,6 +15,7 @@
  */
 package com.googlecode.japi.checker;
 
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.objectweb.asm.AnnotationVisitor;
@@ -26,17 +27,36 @@ import org.objectweb.asm.Opcodes;
 import com.googlecode.japi.checker.model.MethodData;
 
 public class MethodDumper extends MethodVisitor {
-    private Logger logger = Logger.getLogger(MethodDumper.class.getName());
+    private static final Logger LOGGER = Logger.getLogger(MethodDumper.class.getName());
     private final MethodData method;
+    private final SymbolTable symbols;
     
+    /**
+     * @param method the method to populate, its descriptors are interned
+     *        by the table of its loader, see {@link SymbolTable#of(ClassDataLoader)}.
+     * @deprecated use {@link #MethodDumper(MethodData, SymbolTable)}, so the
+     *        dumpers of a class file share one table.
+     */
+    @Deprecated
     public MethodDumper(MethodData method) {
+        this(method, SymbolTable.of(method.getClassDataLoader()));
+    }
+
+    /**
+     * @param method the method to populate.
+     * @param symbols the table interning the annotation descriptors.
+     */
+    public MethodDumper(MethodData method, SymbolTable symbols) {
         super(Opcodes.ASM4);
         this.method = method;
+        this.symbols = symbols;
     }
     
     @Override
     public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-        return new AnnotationDumper(method, desc, visible);
+        // the values are skipped, they are decoded when accessed.
+        method.add(new LazyAnnotationData(symbols.intern(desc), visible));
+        return null;
     }
 
     @Override
@@ -91,7 +111,9 @@ public class MethodDumper extends MethodVisitor {
 
     @Override
     public void visitLineNumber(int line, Label start) {
-        logger.fine("       @" + line);
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("       @" + line);
+        }
         method.setLineNumber(line);
     }
 
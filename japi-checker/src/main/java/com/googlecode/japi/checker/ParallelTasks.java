@@ -0,0 +1,156 @@
+/*
+ * Copyright 2012 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs a set of indexed tasks using an Executor.
+ *
+ * The calling thread takes part in the processing, and helpers which have
+ * not been started by the executor when the work is over are simply discarded.
+ * This means the call always completes, even if the executor is saturated
+ * or if it is used again from inside a task.
+ */
+final class ParallelTasks {
+
+    /**
+     * A unit of work, identified by its index.
+     */
+    interface Task {
+        void run(int index);
+    }
+
+    private ParallelTasks() { }
+
+    /**
+     * Run task for every index between 0 and count (excluded). The method returns
+     * once all the indexes have been processed. Tasks are expected to store their
+     * results by index so the caller can merge them in a deterministic order.
+     * @param executor the executor to use, if null everything runs on the calling thread.
+     * @param count the number of indexes to process.
+     * @param task the task to run.
+     */
+    static void execute(Executor executor, int count, Task task) {
+        if (executor == null || count < 2) {
+            for (int i = 0; i < count; i++) {
+                task.run(i);
+            }
+            return;
+        }
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Worker[] helpers = new Worker[Math.min(count - 1, getParallelism(executor))];
+        for (int i = 0; i < helpers.length; i++) {
+            helpers[i] = new Worker(next, count, task, failure);
+            try {
+                executor.execute(helpers[i]);
+            } catch (RejectedExecutionException e) {
+                // the worker will be discarded while waiting for completion.
+            }
+        }
+        new Worker(next, count, task, failure).run();
+        boolean interrupted = false;
+        for (Worker helper : helpers) {
+            interrupted |= helper.await();
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        Throwable throwable = failure.get();
+        if (throwable instanceof RuntimeException) {
+            throw (RuntimeException)throwable;
+        } else if (throwable instanceof Error) {
+            throw (Error)throwable;
+        } else if (throwable != null) {
+            throw new IllegalStateException(throwable);
+        }
+    }
+
+    /**
+     * Guess how many threads the executor can provide.
+     * @param executor the executor
+     * @return the expected number of threads.
+     */
+    private static int getParallelism(Executor executor) {
+        if (executor instanceof ThreadPoolExecutor) {
+            return Math.max(1, ((ThreadPoolExecutor)executor).getMaximumPoolSize());
+        }
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Consume indexes until there is none left.
+     */
+    private static class Worker implements Runnable {
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final AtomicInteger next;
+        private final int count;
+        private final Task task;
+        private final AtomicReference<Throwable> failure;
+
+        Worker(AtomicInteger next, int count, Task task, AtomicReference<Throwable> failure) {
+            this.next = next;
+            this.count = count;
+            this.task = task;
+            this.failure = failure;
+        }
+
+        @Override
+        public void run() {
+            if (!started.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                int index;
+                while (failure.get() == null && (index = next.getAndIncrement()) < count) {
+                    task.run(index);
+                }
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            } finally {
+                done.countDown();
+            }
+        }
+
+        /**
+         * Wait for the worker to complete, or discard it if it has not started yet.
+         * @return true if the waiting thread has been interrupted.
+         */
+        boolean await() {
+            if (started.compareAndSet(false, true)) {
+                return false;
+            }
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    return interrupted;
+                } catch (InterruptedException e) {
+                    // results are still being written, keep waiting.
+                    interrupted = true;
+                }
+            }
+        }
+    }
+}
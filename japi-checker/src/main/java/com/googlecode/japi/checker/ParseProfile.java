@@ -0,0 +1,119 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import java.util.List;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Defines how much of the class files is parsed into the model.
+ * Profiles are declared from the cheapest to the most complete one.
+ * The debug information, source file and method line numbers, is only
+ * parsed upfront by the FULL profile: with the other profiles, the
+ * classes read from a class file read it on demand.
+ */
+public enum ParseProfile {
+    /**
+     * Method bodies are skipped, private and synthetic fields and methods
+     * are not part of the model.
+     */
+    API_ONLY(ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES),
+    /**
+     * Method bodies are skipped, but all the fields and methods are part
+     * of the model.
+     */
+    ALL_MEMBERS(ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES),
+    /**
+     * The whole class file is parsed, the debug information is part of
+     * the model without reading the class file again.
+     */
+    FULL(ClassReader.SKIP_FRAMES);
+    
+    private final int parsingOptions;
+    
+    ParseProfile(int parsingOptions) {
+        this.parsingOptions = parsingOptions;
+    }
+    
+    /**
+     * Get the ASM ClassReader flags to use with this profile.
+     * @return the parsing options.
+     */
+    public int getParsingOptions() {
+        return parsingOptions;
+    }
+
+    /**
+     * @return true if the source file and the line numbers are parsed with
+     *         the rest of the class file.
+     */
+    public boolean parsesDebugInfo() {
+        return (parsingOptions & ClassReader.SKIP_DEBUG) == 0;
+    }
+
+    /**
+     * Check if a field or a method must be part of the model.
+     * @param access the ASM access flags of the member.
+     * @return true if the member must be kept, false otherwise.
+     */
+    public boolean keepMember(int access) {
+        if (this == API_ONLY) {
+            return (access & (Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC)) == 0;
+        }
+        return true;
+    }
+
+    /**
+     * Check if this profile provides everything the other profile provides.
+     * @param profile the profile to compare to.
+     * @return true if this profile satisfies profile.
+     */
+    public boolean satisfies(ParseProfile profile) {
+        return this.ordinal() >= profile.ordinal();
+    }
+
+    /**
+     * Get the profile required by a rule. Rules which don't declare it
+     * require the FULL profile.
+     * @param rule the rule.
+     * @return the required profile.
+     */
+    public static ParseProfile of(Rule rule) {
+        if (rule instanceof ProfiledRule) {
+            ParseProfile profile = ((ProfiledRule)rule).getRequiredParseProfile();
+            return profile == null ? FULL : profile;
+        }
+        return FULL;
+    }
+
+    /**
+     * Get the cheapest profile which satisfies all the rules.
+     * @param rules the rules
+     * @return the cheapest profile.
+     */
+    public static ParseProfile of(List<? extends Rule> rules) {
+        ParseProfile result = API_ONLY;
+        for (Rule rule : rules) {
+            ParseProfile profile = of(rule);
+            if (profile.satisfies(result)) {
+                result = profile;
+            }
+        }
+        return result;
+    }
+}
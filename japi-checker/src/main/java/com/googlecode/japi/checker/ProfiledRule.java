@@ -0,0 +1,32 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+/**
+ * A rule declaring how much of the class files it needs.
+ * The BCChecker uses the cheapest profile satisfying all its rules,
+ * rules not implementing this interface require the FULL profile.
+ *
+ */
+public interface ProfiledRule extends Rule {
+
+    /**
+     * Get the parse profile this rule requires to work properly.
+     * @return the required profile, never null.
+     */
+    ParseProfile getRequiredParseProfile();
+
+}
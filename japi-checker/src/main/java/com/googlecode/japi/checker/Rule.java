@@ -22,6 +22,13 @@ import com.googlecode.japi.checker.model.JavaItem;
 /**
  * Interface defining a validation rule. 
  *
+ * Rules are expected to be stateless and thread-safe: when the BCChecker
+ * has an executor, the class pairs are checked concurrently and the same
+ * rule instance is called from several threads. The reports are still
+ * delivered to the checker reporter in the same order as a serial check.
+ * Rules which cannot honour this contract must implement {@link SerialRule},
+ * and the rules grouping other rules {@link CompositeRule}.
+ *
  */
 public interface Rule {
 	
@@ -16,7 +16,10 @@
 package com.googlecode.japi.checker;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 import com.googlecode.japi.checker.model.ClassData;
 import com.googlecode.japi.checker.model.MethodData;
@@ -47,63 +50,141 @@ public final class RuleHelpers {
      *           inheritance tree (or equal to it), false otherwise.
      */
     public static boolean isClassPartOfClassTree(ClassDataLoader loader, String classname, String topLevelClassname) {
-        if (topLevelClassname != null) {
-            if (classname.equals(topLevelClassname)) {
-                return true;
-            }
-            ClassData superClass = loader.fromName(topLevelClassname);
-            if (superClass != null) {
-                return isClassPartOfClassTree(loader, classname, superClass.getSuperName());
-            }
-        }
-        return false;
+        return ClassHierarchy.of(loader).isSubclassOf(topLevelClassname, classname);
     }
 
     /**
      * Return the list of all methods provided by this class including from
-     * inheritance.
+     * inheritance, the super types being resolved through the loader of the class.
      * @param clazz the class to start recursing from.
      * @return All the methods implemented by the class or the interface.
      */
     public static List<MethodData> getClassMethodRecursive(ClassData clazz) {
-        List<MethodData> result = new ArrayList<MethodData>();
-        result.addAll(clazz.getMethods());
-        ClassData superClass = clazz.getClassDataLoader().fromName(clazz.getSuperName());
-        if (superClass != null) {
-            for (MethodData method : getClassMethodRecursive(superClass)) {
-                if (!containsSame(result, method)) {
-                    result.add(method);
+        return getClassMethodRecursive(clazz.getClassDataLoader(), clazz);
+    }
+
+    /**
+     * Return the list of all methods provided by this class including from
+     * inheritance. The classes of the dependencies can be shared by the loaders
+     * of both sides, so the loader of the side is given explicitly.
+     * @param loader the loader resolving the super types.
+     * @param clazz the class to start recursing from.
+     * @return All the methods implemented by the class or the interface.
+     */
+    public static List<MethodData> getClassMethodRecursive(ClassDataLoader loader, ClassData clazz) {
+        return new ArrayList<MethodData>(getClassMethods(loader, clazz).methods);
+    }
+
+    /**
+     * Find a method with the same name and descriptor among the methods
+     * provided by a class, including from inheritance, the super types
+     * being resolved through the loader of the class.
+     * @param clazz the class to start recursing from.
+     * @param method the method to look for.
+     * @return the method found, or null if the class does not provide it.
+     */
+    public static MethodData findClassMethodRecursive(ClassData clazz, MethodData method) {
+        return findClassMethodRecursive(clazz.getClassDataLoader(), clazz, method);
+    }
+
+    /**
+     * Find a method with the same name and descriptor among the methods
+     * provided by a class, including from inheritance.
+     * @param loader the loader resolving the super types.
+     * @param clazz the class to start recursing from.
+     * @param method the method to look for.
+     * @return the method found, or null if the class does not provide it.
+     */
+    public static MethodData findClassMethodRecursive(ClassDataLoader loader, ClassData clazz, MethodData method) {
+        return getClassMethods(loader, clazz).get(method.getName(), method.getDescriptor());
+    }
+
+    /**
+     * The methods provided by a class, only the first method of a given
+     * name and descriptor is kept, see {@link MethodData#isSame(MethodData)}.
+     * The methods are looked up by name, then by descriptor among the
+     * overloads, so the lookups build no key.
+     */
+    static final class ClassMethods {
+        private final List<MethodData> methods = new ArrayList<MethodData>();
+        private final Map<String, List<MethodData>> methodsByName = new HashMap<String, List<MethodData>>();
+
+        private void add(MethodData method) {
+            List<MethodData> overloads = methodsByName.get(method.getName());
+            if (overloads == null) {
+                overloads = new ArrayList<MethodData>(1);
+                methodsByName.put(method.getName(), overloads);
+            } else if (find(overloads, method.getDescriptor()) != null) {
+                return;
+            }
+            overloads.add(method);
+            methods.add(method);
+        }
+
+        private MethodData get(String name, String descriptor) {
+            List<MethodData> overloads = methodsByName.get(name);
+            return overloads == null ? null : find(overloads, descriptor);
+        }
+
+        private static MethodData find(List<MethodData> overloads, String descriptor) {
+            for (MethodData method : overloads) {
+                if (method.getDescriptor().equals(descriptor)) {
+                    return method;
                 }
             }
+            return null;
+        }
+    }
+
+    /**
+     * Get the methods provided by a class. The super types are resolved
+     * through the loader of the class the recursion started from. The
+     * result is cached by that loader when possible, so each hierarchy is
+     * only resolved once.
+     * @param loader the loader resolving the super types.
+     * @param clazz the class to start recursing from.
+     * @return the methods in declaration order, then the inherited ones.
+     */
+    private static ClassMethods getClassMethods(ClassDataLoader loader, ClassData clazz) {
+        // only the classes resolved by name are cached, so classes
+        // parsed outside of the loader, e.g: while streaming, can be released.
+        if (!(loader instanceof DefaultClassDataLoader) || loader.fromName(clazz.getName()) != clazz) {
+            return resolveClassMethods(loader, clazz);
+        }
+        ConcurrentMap<ClassData, ClassMethods> cache = ((DefaultClassDataLoader)loader).getInheritedMethods();
+        ClassMethods methods = cache.get(clazz);
+        if (methods == null) {
+            methods = resolveClassMethods(loader, clazz);
+            ClassMethods previous = cache.putIfAbsent(clazz, methods);
+            if (previous != null) {
+                methods = previous;
+            }
+        }
+        return methods;
+    }
+
+    private static ClassMethods resolveClassMethods(ClassDataLoader loader, ClassData clazz) {
+        ClassMethods result = new ClassMethods();
+        for (MethodData method : clazz.getMethods()) {
+            result.add(method);
+        }
+        ClassData superClass = loader.fromName(clazz.getSuperName());
+        if (superClass != null) {
+            for (MethodData method : getClassMethods(loader, superClass).methods) {
+                result.add(method);
+            }
         }
         // In case of interface let's include all interface inheritance tree.
         if (clazz.isInterface()) {
             for (String ifaceName : clazz.getInterfaces()) {
-                ClassData iface = clazz.getClassDataLoader().fromName(ifaceName);
+                ClassData iface = loader.fromName(ifaceName);
                 if (iface != null) {
-                    for (MethodData method : getClassMethodRecursive(iface)) {
-                        if (!containsSame(result, method)) {
-                            result.add(method);
-                        }
+                    for (MethodData method : getClassMethods(loader, iface).methods) {
+                        result.add(method);
                     }
                 }
             }
         }
         return result;
     }
-
-    /**
-     * Check if a list already contains a method similar to the one provided.
-     * @param methods
-     * @param method
-     * @return
-     */
-    private static boolean containsSame(List<MethodData> methods, MethodData method) {
-        for (MethodData m : methods) {
-            if (method.isSame(m)) {
-                return true;
-            }
-        }
-        return false;
-    }
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The dependency archives read by the loaders of a check. The reference
+ * and the new artifact usually share most of their dependencies, an
+ * archive found on both classpaths is only opened, listed and parsed once.
+ *
+ * Each loader gets its own reader, so it keeps its own classpath order,
+ * but the classes are shared: a class belongs to the loader which parsed
+ * it first. So the hierarchies are resolved through the loader of the
+ * side being checked, e.g: the loader of the checked class, which is part
+ * of an artifact and never shared, and not the loader of a dependency class.
+ *
+ * An archive is identified by its canonical path, size and modification
+ * time, so a file replaced between two reads is read again.
+ *
+ * Instances are thread-safe.
+ */
+final class SharedArchives implements Closeable {
+    private final ConcurrentMap<String, Archive> archives = new ConcurrentHashMap<String, Archive>();
+
+    /**
+     * An archive, opened by the first loader requesting it.
+     */
+    private static final class Archive {
+        private LazyJarReader.Content content;
+    }
+
+    /**
+     * Get a reader of a dependency archive for a loader, opening the
+     * archive if no loader did yet. A failed read is not kept, so each
+     * loader gets its own error, while a class which cannot be parsed is
+     * only reported by the loader which requested it first.
+     * @param filename the archive.
+     * @param loader the loader requesting the archive.
+     * @param profile the profile used to parse the classes.
+     * @return the reader of the loader, already read.
+     * @throws IOException thrown in case of error while reading the archive.
+     */
+    LazyJarReader read(File filename, ClassDataLoader loader, ParseProfile profile) throws IOException {
+        File file = filename.getCanonicalFile();
+        // the classes are only shared by the loaders parsing them the same way.
+        String key = file.getPath() + '|' + file.length() + '|' + file.lastModified() + '|' + profile;
+        Archive archive = archives.get(key);
+        if (archive == null) {
+            archive = new Archive();
+            Archive previous = archives.putIfAbsent(key, archive);
+            if (previous != null) {
+                archive = previous;
+            }
+        }
+        // only the loaders requesting the same archive wait for each other.
+        LazyJarReader.Content content;
+        synchronized (archive) {
+            if (archive.content == null) {
+                archive.content = LazyJarReader.open(filename);
+            }
+            content = archive.content;
+        }
+        return new LazyJarReader(filename, loader, profile, content);
+    }
+
+    /**
+     * Close the archives, once the loaders sharing them are not used anymore.
+     * The classes already parsed remain available.
+     * @throws IOException the first error which occurred while closing an archive.
+     */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Archive archive : archives.values()) {
+            LazyJarReader.Content content;
+            synchronized (archive) {
+                content = archive.content;
+                archive.content = null;
+            }
+            if (content != null) {
+                try {
+                    content.close();
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    }
+                }
+            }
+        }
+        archives.clear();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @return the number of archives read.
+     */
+    int size() {
+        int count = 0;
+        for (Archive archive : archives.values()) {
+            synchronized (archive) {
+                if (archive.content != null) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import java.io.File;
+import java.util.concurrent.Executor;
+
+/**
+ * ClassDataLoader which reads API snapshots in addition to
+ * directories and archives.
+ */
+class SnapshotClassDataLoader extends DefaultClassDataLoader {
+
+    SnapshotClassDataLoader(Executor executor, ParseProfile profile, SymbolTable symbols, SharedArchives archives) {
+        super(executor, profile, symbols, archives);
+    }
+
+    /**
+     * Read an API snapshot, or a directory or archive as the
+     * DefaultClassDataLoader does.
+     * {@inheritDoc}
+     */
+    @Override
+    AbstractClassReader createReader(File filename) {
+        if (ApiSnapshot.isSnapshot(filename)) {
+            return new SnapshotReader(filename, this, getParseProfile());
+        }
+        return super.createReader(filename);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Factory of ClassDataLoader able to read the API snapshots written
+ * by {@link ApiSnapshot}, so a snapshot can be read where an artifact
+ * is expected.
+ */
+public class SnapshotClassDataLoaderFactory implements ClassDataLoaderFactory {
+    private final Executor executor;
+    private final ParseProfile profile;
+    private final SymbolTable symbols;
+    private final SharedArchives archives;
+
+    /**
+     * Create a factory requiring the profile of the built-in rules.
+     */
+    public SnapshotClassDataLoaderFactory() {
+        this(null, ParseProfile.ALL_MEMBERS);
+    }
+
+    /**
+     * @param executor the executor the loaders use to parse classes, can be null.
+     * @param profile the profile the loaders and snapshots must satisfy.
+     */
+    public SnapshotClassDataLoaderFactory(Executor executor, ParseProfile profile) {
+        this(executor, profile, new SymbolTable());
+    }
+
+    /**
+     * @param executor the executor the loaders use to parse classes, can be null.
+     * @param profile the profile the loaders use to parse classes.
+     * @param symbols the symbol table shared by all the loaders.
+     */
+    public SnapshotClassDataLoaderFactory(Executor executor, ParseProfile profile, SymbolTable symbols) {
+        this(executor, profile, symbols, null);
+    }
+
+    /**
+     * @param executor the executor the loaders use to parse classes, can be null.
+     * @param profile the profile the loaders use to parse classes.
+     * @param symbols the symbol table shared by all the loaders.
+     * @param archives the dependency archives shared by all the loaders, can be null.
+     */
+    SnapshotClassDataLoaderFactory(Executor executor, ParseProfile profile, SymbolTable symbols, SharedArchives archives) {
+        this.executor = executor;
+        this.profile = profile;
+        this.symbols = symbols;
+        this.archives = archives;
+    }
+
+    @Override
+    public ClassDataLoader createClassDataLoader() {
+        return new SnapshotClassDataLoader(executor, profile, symbols, archives);
+    }
+
+}
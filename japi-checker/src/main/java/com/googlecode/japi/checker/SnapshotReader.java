@@ -0,0 +1,147 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.googlecode.japi.checker.model.AnnotationData;
+import com.googlecode.japi.checker.model.AttributeData;
+import com.googlecode.japi.checker.model.ClassData;
+import com.googlecode.japi.checker.model.FieldData;
+import com.googlecode.japi.checker.model.JavaItem;
+import com.googlecode.japi.checker.model.MethodData;
+
+/**
+ * Read the classes out of an API snapshot written by {@link ApiSnapshot}.
+ * The artifact classes are the content of this reader, the dependency
+ * classes recorded in the snapshot can only be resolved by name.
+ */
+class SnapshotReader extends AbstractClassReader {
+    private File filename;
+    private ClassDataLoader loader;
+    private ParseProfile profile;
+    private List<ClassData> dependencies = Collections.emptyList();
+
+    /**
+     * @param filename the snapshot to read.
+     * @param loader the loader the classes belong to.
+     * @param profile the profile the snapshot must satisfy.
+     */
+    public SnapshotReader(File filename, ClassDataLoader loader, ParseProfile profile) {
+        this.filename = filename;
+        this.loader = loader;
+        this.profile = profile;
+    }
+
+    @Override
+    void read() throws IOException {
+        clear();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)));
+        try {
+            if (in.readInt() != ApiSnapshot.MAGIC) {
+                throw new ReadClassException(filename + " is not an API snapshot.");
+            }
+            int version = in.readUnsignedShort();
+            if (version != ApiSnapshot.FORMAT_VERSION) {
+                throw new ReadClassException("Unsupported snapshot format version " + version + " for " + filename + ".");
+            }
+            String snapshotProfile = in.readUTF();
+            try {
+                if (!ParseProfile.valueOf(snapshotProfile).satisfies(profile)) {
+                    throw new ReadClassException("The snapshot " + filename + " has been exported with the "
+                            + snapshotProfile + " parse profile, " + profile + " is required.");
+                }
+            } catch (IllegalArgumentException e) {
+                throw new ReadClassException("Unknown parse profile " + snapshotProfile + " in " + filename + ".");
+            }
+            ApiSnapshot.Reader reader = new ApiSnapshot.Reader(in, SymbolTable.of(loader));
+            for (ClassData clazz : readClasses(reader, in)) {
+                put(clazz.getName() + ".class", Collections.singletonList(clazz));
+            }
+            dependencies = readClasses(reader, in);
+        } catch (EOFException e) {
+            throw new ReadClassException("Truncated snapshot " + filename + ".", e);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Override
+    List<ClassData> getExternalClasses() {
+        return dependencies;
+    }
+
+    private List<ClassData> readClasses(ApiSnapshot.Reader reader, DataInputStream in) throws IOException {
+        int count = ApiSnapshot.readVarInt(in);
+        List<ClassData> classes = new ArrayList<ClassData>(count);
+        for (int i = 0; i < count; i++) {
+            String name = reader.readString();
+            int access = in.readInt();
+            String signature = reader.readString();
+            String superName = reader.readString();
+            String[] interfaces = reader.readStrings();
+            int version = in.readInt();
+            ClassData clazz = new ClassData(loader, null, access, name, signature, superName, interfaces, version);
+            clazz.setSource(reader.readString());
+            readAnnotations(reader, in, clazz);
+            int fields = ApiSnapshot.readVarInt(in);
+            for (int j = 0; j < fields; j++) {
+                String fieldName = reader.readString();
+                int fieldAccess = in.readInt();
+                FieldData field = new FieldData(loader, clazz, fieldAccess, fieldName,
+                        reader.readString(), reader.readString(), reader.readValue());
+                readAnnotations(reader, in, field);
+                clazz.add(field);
+            }
+            int methods = ApiSnapshot.readVarInt(in);
+            for (int j = 0; j < methods; j++) {
+                String methodName = reader.readString();
+                int methodAccess = in.readInt();
+                MethodData method = new MethodData(loader, clazz, methodAccess, methodName,
+                        reader.readString(), reader.readString(), reader.readStrings());
+                readAnnotations(reader, in, method);
+                clazz.add(method);
+            }
+            int attributes = ApiSnapshot.readVarInt(in);
+            for (int j = 0; j < attributes; j++) {
+                String attributeName = reader.readString();
+                clazz.add(new AttributeData(loader, clazz, in.readInt(), attributeName));
+            }
+            classes.add(clazz);
+        }
+        return classes;
+    }
+
+    private void readAnnotations(ApiSnapshot.Reader reader, DataInputStream in, JavaItem item) throws IOException {
+        int count = ApiSnapshot.readVarInt(in);
+        for (int i = 0; i < count; i++) {
+            AnnotationData annotation = new AnnotationData(reader.readString(), in.readBoolean());
+            int values = ApiSnapshot.readVarInt(in);
+            for (int j = 0; j < values; j++) {
+                annotation.put(reader.readString(), reader.readValue());
+            }
+            item.add(annotation);
+        }
+    }
+}
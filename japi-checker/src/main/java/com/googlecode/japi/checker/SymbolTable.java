@@ -0,0 +1,83 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A table of the names, descriptors and signatures read from class files.
+ * Each distinct string is kept only once, so the models of the reference,
+ * the new artifact and their dependencies share the same instances when
+ * their loaders share the same table. Interned strings can also be
+ * compared by identity, which String.equals does first.
+ *
+ * A table keeps its strings as long as it is referenced, so the classes
+ * which are only parsed for a while, e.g: the pairs compared in
+ * streaming mode, use a table of their own rather than the loader's.
+ *
+ * Instances are thread-safe.
+ */
+public final class SymbolTable {
+    private final ConcurrentMap<String, String> symbols = new ConcurrentHashMap<String, String>();
+
+    /**
+     * Get the table of a loader. The DefaultClassDataLoader shares the table
+     * given by its factory, other loaders get a new table on each call.
+     * @param loader the loader.
+     * @return the symbol table.
+     */
+    public static SymbolTable of(ClassDataLoader loader) {
+        if (loader instanceof DefaultClassDataLoader) {
+            return ((DefaultClassDataLoader)loader).getSymbolTable();
+        }
+        return new SymbolTable();
+    }
+
+    /**
+     * Get the shared instance of a string.
+     * @param symbol the string, can be null.
+     * @return the instance equal to symbol kept by this table, or null.
+     */
+    public String intern(String symbol) {
+        if (symbol == null) {
+            return null;
+        }
+        String previous = symbols.putIfAbsent(symbol, symbol);
+        return previous != null ? previous : symbol;
+    }
+
+    /**
+     * Replace the strings of an array by their shared instance.
+     * @param symbols the strings, can be null.
+     * @return the same array.
+     */
+    public String[] intern(String[] symbols) {
+        if (symbols != null) {
+            for (int i = 0; i < symbols.length; i++) {
+                symbols[i] = intern(symbols[i]);
+            }
+        }
+        return symbols;
+    }
+
+    /**
+     * @return the number of distinct strings in this table.
+     */
+    public int size() {
+        return symbols.size();
+    }
+}
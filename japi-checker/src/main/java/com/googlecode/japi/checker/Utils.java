@@ -17,9 +17,11 @@ package com.googlecode.japi.checker;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.zip.ZipFile;
+import java.io.RandomAccessFile;
 
 public final class Utils {
+    private static final int END_SIZE = 22;
+    private static final long ZIP64_MARKER = 0xFFFFFFFFL;
     
     private Utils() { }
     
@@ -38,22 +40,33 @@ public final class Utils {
     }
     
     /**
-     * Check if file denote a zip kind of archive.
+     * Check if file denote a zip kind of archive. The file is identified
+     * by the end of central directory record closing it, so corrupt or
+     * truncated archives are rejected upfront, as well as any file merely
+     * starting with a zip header. Archives with some data prepended
+     * (e.g: self extracting ones) are accepted.
      * @param file
      * @return
      */
     public static boolean isArchive(File file) {
-        ZipFile zf = null;
+        if (!file.isFile()) {
+            return false;
+        }
+        RandomAccessFile raf = null;
         try {
-            zf = new ZipFile(file);
-            zf.entries(); // forcing to do something with the file.
-            return true;
+            raf = new RandomAccessFile(file, "r");
+            long length = raf.length();
+            // most archives have no comment, so the record is the last bytes.
+            if (length >= END_SIZE && hasEndOfCentralDirectory(raf, length, END_SIZE)) {
+                return true;
+            }
+            return hasEndOfCentralDirectory(raf, length, (int)Math.min(length, END_SIZE + 0xFFFF));
         } catch (IOException e) {
             return false;
         } finally {
-            if (zf != null) {
+            if (raf != null) {
                 try {
-                    zf.close();
+                    raf.close();
                 } catch (IOException e) {
                     // swallow the exception...
                 }
@@ -61,4 +74,39 @@ public final class Utils {
         }
     }
 
+    /**
+     * Look for a valid end of central directory record in the tail of a file.
+     * @param raf the file.
+     * @param length the file length.
+     * @param tailLength the number of bytes to look at, from the end of the file.
+     * @return true if the record has been found.
+     * @throws IOException
+     */
+    private static boolean hasEndOfCentralDirectory(RandomAccessFile raf, long length, int tailLength) throws IOException {
+        byte[] tail = new byte[tailLength];
+        raf.seek(length - tailLength);
+        raf.readFully(tail);
+        for (int i = tailLength - END_SIZE; i >= 0; i--) {
+            if (tail[i] == 'P' && tail[i + 1] == 'K' && tail[i + 2] == 5 && tail[i + 3] == 6) {
+                long end = length - tailLength + i;
+                long size = u32(tail, i + 12);
+                long offset = u32(tail, i + 16);
+                // the comment must end the file, and the central directory fit before the record.
+                if (i + END_SIZE + u16(tail, i + 20) == tailLength
+                        && (size == ZIP64_MARKER || offset == ZIP64_MARKER || size <= end)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int u16(byte[] b, int i) {
+        return (b[i] & 0xFF) | ((b[i + 1] & 0xFF) << 8);
+    }
+
+    private static long u32(byte[] b, int i) {
+        return u16(b, i) | ((long)u16(b, i + 2) << 16);
+    }
+
 }
@@ -0,0 +1,419 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Random access to the entries of a zip kind of archive.
+ *
+ * Archives are memory mapped and their central directory is parsed
+ * directly, so entries are read from the page cache into arrays of
+ * their exact size. Archives which cannot be mapped (larger than 2GB,
+ * zip64 or encrypted entries...) are read using a ZipFile instead.
+ *
+ * A mapping is only released once garbage collected, and Windows does
+ * not allow to delete or replace a mapped file, so on Windows archives
+ * are read using a ZipFile, which is released once the archive is closed.
+ *
+ * Reading entries is thread safe.
+ */
+abstract class ZipArchive {
+    private static final Logger LOGGER = Logger.getLogger(ZipArchive.class.getName());
+    private static final boolean MAPPED_FILES_LOCKED = System.getProperty("os.name", "").startsWith("Windows");
+
+    /**
+     * Open an archive.
+     * @param file the archive file.
+     * @return the archive.
+     * @throws IOException if the file is not a readable archive, a
+     *         ReadClassException if it is not an archive at all.
+     */
+    static ZipArchive open(File file) throws IOException {
+        if (!MAPPED_FILES_LOCKED) {
+            try {
+                return new MappedArchive(file);
+            } catch (ZipException e) {
+                LOGGER.fine("Falling back to ZipFile for " + file + ": " + e.getMessage());
+            }
+        }
+        try {
+            return new ZipFileArchive(file);
+        } catch (ZipException e) {
+            throw new ReadClassException("Error occurred while reading archive " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Get the entry names, in the central directory order.
+     * @return the entry names.
+     */
+    abstract List<String> getEntryNames();
+
+    /**
+     * Read the whole content of an entry.
+     * @param name the entry name.
+     * @return the content, or null if the entry does not exist.
+     * @throws IOException in case of reading error.
+     */
+    abstract byte[] read(String name) throws IOException;
+
+    /**
+     * @return true if the archive keeps the file open until it is closed,
+     *         false if it can be kept without holding a file handle.
+     */
+    abstract boolean keepsFileOpen();
+
+    /**
+     * Release the resources associated with this archive.
+     * @throws IOException
+     */
+    abstract void close() throws IOException;
+
+    /**
+     * Archive backed by a read only memory mapping of the whole file.
+     * The file itself is closed once mapped.
+     */
+    private static class MappedArchive extends ZipArchive {
+        private static final int LOCAL_HEADER = 0x04034b50;
+        private static final int CENTRAL_HEADER = 0x02014b50;
+        private static final int END_HEADER = 0x06054b50;
+        private static final int END_SIZE = 22;
+        private static final long ZIP64_MARKER = 0xFFFFFFFFL;
+        private final String filename;
+        // the inflaters and their input buffers are reused until the archive is closed.
+        private Inflation[] inflations = new Inflation[4];
+        private int inflationCount;
+        private boolean closed;
+        private final ByteBuffer buffer;
+        private final List<String> names = new ArrayList<String>();
+        private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+        MappedArchive(File file) throws IOException {
+            this.filename = file.getPath();
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new ZipException("archive too large to be mapped");
+                }
+                this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                this.buffer.order(ByteOrder.LITTLE_ENDIAN);
+            } finally {
+                raf.close();
+            }
+            readCentralDirectory();
+        }
+
+        private void readCentralDirectory() throws ZipException {
+            int end = findEndOfCentralDirectory();
+            int count = u16(end + 10);
+            long size = u32(end + 12);
+            long offset = u32(end + 16);
+            if (count == 0xFFFF || size == ZIP64_MARKER || offset == ZIP64_MARKER) {
+                throw new ZipException("zip64 archives are not supported");
+            }
+            // data may be prepended to the archive, e.g: self extracting archives.
+            long base = end - size - offset;
+            if (base < 0) {
+                throw new ZipException("invalid central directory offset");
+            }
+            int position = (int)(end - size);
+            for (int i = 0; i < count; i++) {
+                if (position + 46 > end || buffer.getInt(position) != CENTRAL_HEADER) {
+                    throw new ZipException("invalid central directory header");
+                }
+                int flags = u16(position + 8);
+                int method = u16(position + 10);
+                long compressedSize = u32(position + 20);
+                long uncompressedSize = u32(position + 24);
+                int nameLength = u16(position + 28);
+                int extraLength = u16(position + 30);
+                int commentLength = u16(position + 32);
+                long headerOffset = u32(position + 42);
+                if (compressedSize == ZIP64_MARKER || uncompressedSize == ZIP64_MARKER || headerOffset == ZIP64_MARKER) {
+                    throw new ZipException("zip64 archives are not supported");
+                }
+                if ((flags & 1) != 0) {
+                    throw new ZipException("encrypted entries are not supported");
+                }
+                // the entries are read into arrays.
+                if (compressedSize > Integer.MAX_VALUE || uncompressedSize > Integer.MAX_VALUE) {
+                    throw new ZipException("entries larger than 2GB are not supported");
+                }
+                String name = decodeName(position + 46, nameLength);
+                // like the ZipFile, a duplicated name is listed once and resolves to its last entry.
+                if (entries.put(name, new Entry(method, (int)compressedSize, (int)uncompressedSize, base + headerOffset)) == null) {
+                    names.add(name);
+                }
+                position += 46 + nameLength + extraLength + commentLength;
+            }
+        }
+
+        private int findEndOfCentralDirectory() throws ZipException {
+            int last = buffer.limit() - END_SIZE;
+            int first = Math.max(0, last - 0xFFFF);
+            for (int position = last; position >= first; position--) {
+                if (buffer.getInt(position) == END_HEADER) {
+                    return position;
+                }
+            }
+            throw new ZipException("end of central directory not found");
+        }
+
+        private String decodeName(int position, int length) throws ZipException {
+            byte[] bytes = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(position);
+            view.get(bytes);
+            try {
+                return new String(bytes, "UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new ZipException(e.getMessage());
+            }
+        }
+
+        @Override
+        List<String> getEntryNames() {
+            return Collections.unmodifiableList(names);
+        }
+
+        @Override
+        byte[] read(String name) throws IOException {
+            Entry entry = entries.get(name);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.headerOffset + 30 > buffer.limit() || buffer.getInt((int)entry.headerOffset) != LOCAL_HEADER) {
+                throw new ZipException("invalid local header for entry " + name + " in " + filename);
+            }
+            int header = (int)entry.headerOffset;
+            int start = header + 30 + u16(header + 26) + u16(header + 28);
+            if (start + (long)entry.compressedSize > buffer.limit()) {
+                throw new ZipException("truncated entry " + name + " in " + filename);
+            }
+            ByteBuffer view = buffer.duplicate();
+            view.position(start);
+            if (entry.method == ZipEntry.STORED) {
+                byte[] data = new byte[entry.size];
+                view.get(data);
+                return data;
+            } else if (entry.method == ZipEntry.DEFLATED) {
+                Inflation inflation = takeInflation();
+                try {
+                    // an extra byte is required by the inflater in nowrap mode.
+                    byte[] compressed = inflation.getInput(entry.compressedSize + 1);
+                    view.get(compressed, 0, entry.compressedSize);
+                    compressed[entry.compressedSize] = 0;
+                    return inflate(name, inflation.inflater, compressed, entry.compressedSize + 1, entry.size);
+                } finally {
+                    releaseInflation(inflation);
+                }
+            }
+            throw new ZipException("unsupported compression method " + entry.method + " for entry " + name + " in " + filename);
+        }
+
+        private byte[] inflate(String name, Inflater inflater, byte[] compressed, int length, int size) throws ZipException {
+            byte[] data = new byte[size];
+            try {
+                inflater.setInput(compressed, 0, length);
+                int offset = 0;
+                while (offset < size) {
+                    int count = inflater.inflate(data, offset, size - offset);
+                    if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    offset += count;
+                }
+                if (offset != size) {
+                    throw new ZipException("unexpected end of entry " + name + " in " + filename);
+                }
+                return data;
+            } catch (DataFormatException e) {
+                throw new ZipException("invalid entry " + name + " in " + filename + ": " + e.getMessage());
+            } finally {
+                inflater.reset();
+            }
+        }
+
+        private synchronized Inflation takeInflation() {
+            if (inflationCount == 0) {
+                return new Inflation();
+            }
+            Inflation inflation = inflations[--inflationCount];
+            inflations[inflationCount] = null;
+            return inflation;
+        }
+
+        private synchronized void releaseInflation(Inflation inflation) {
+            if (closed) {
+                inflation.inflater.end();
+                return;
+            }
+            if (inflationCount == inflations.length) {
+                inflations = Arrays.copyOf(inflations, inflationCount * 2);
+            }
+            inflations[inflationCount++] = inflation;
+        }
+
+        @Override
+        boolean keepsFileOpen() {
+            return false;
+        }
+
+        /**
+         * Release the native memory of the inflaters, the mapping itself
+         * is released once garbage collected.
+         */
+        @Override
+        synchronized void close() {
+            closed = true;
+            for (int i = 0; i < inflationCount; i++) {
+                inflations[i].inflater.end();
+                inflations[i] = null;
+            }
+            inflationCount = 0;
+        }
+
+        private int u16(int position) {
+            return buffer.getShort(position) & 0xFFFF;
+        }
+
+        private long u32(int position) {
+            return buffer.getInt(position) & 0xFFFFFFFFL;
+        }
+
+        /**
+         * An inflater, with a buffer large enough for the compressed
+         * entries it has read so far.
+         */
+        private static class Inflation {
+            final Inflater inflater = new Inflater(true);
+            private byte[] input = new byte[8192];
+
+            byte[] getInput(int length) {
+                if (input.length < length) {
+                    input = new byte[Math.max(length, input.length * 2)];
+                }
+                return input;
+            }
+        }
+
+        private static class Entry {
+            final int method;
+            final int compressedSize;
+            final int size;
+            final long headerOffset;
+
+            Entry(int method, int compressedSize, int size, long headerOffset) {
+                this.method = method;
+                this.compressedSize = compressedSize;
+                this.size = size;
+                this.headerOffset = headerOffset;
+            }
+        }
+    }
+
+    /**
+     * Archive read through a ZipFile, which stays open until closed.
+     */
+    private static class ZipFileArchive extends ZipArchive {
+        private final ZipFile zip;
+        private final List<String> names = new ArrayList<String>();
+
+        ZipFileArchive(File file) throws IOException {
+            this.zip = new ZipFile(file);
+            Set<String> seen = new HashSet<String>();
+            Enumeration<? extends ZipEntry> e = zip.entries();
+            while (e.hasMoreElements()) {
+                String name = e.nextElement().getName();
+                if (seen.add(name)) {
+                    names.add(name);
+                }
+            }
+        }
+
+        @Override
+        List<String> getEntryNames() {
+            return Collections.unmodifiableList(names);
+        }
+
+        @Override
+        byte[] read(String name) throws IOException {
+            ZipEntry entry = zip.getEntry(name);
+            if (entry == null) {
+                return null;
+            }
+            InputStream is = zip.getInputStream(entry);
+            try {
+                if (entry.getSize() >= 0 && entry.getSize() <= Integer.MAX_VALUE) {
+                    byte[] data = new byte[(int)entry.getSize()];
+                    int offset = 0;
+                    int count = 0;
+                    while (offset < data.length && (count = is.read(data, offset, data.length - offset)) != -1) {
+                        offset += count;
+                    }
+                    if (offset == data.length) {
+                        return data;
+                    }
+                    throw new IOException("Unexpected end of entry " + entry.getName() + " in " + zip.getName());
+                }
+                ByteArrayOutputStream os = new ByteArrayOutputStream();
+                byte buffer[] = new byte[2048];
+                int count = 0;
+                while ((count = is.read(buffer)) != -1) {
+                    os.write(buffer, 0, count);
+                }
+                return os.toByteArray();
+            } finally {
+                is.close();
+            }
+        }
+
+        @Override
+        boolean keepsFileOpen() {
+            return true;
+        }
+
+        @Override
+        void close() throws IOException {
+            zip.close();
+        }
+    }
+}
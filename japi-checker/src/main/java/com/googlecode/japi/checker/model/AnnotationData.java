@@ -15,15 +15,29 @@
  */
 package com.googlecode.japi.checker.model;
 
+import java.util.AbstractMap;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Hashtable;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
+/**
+ * An annotation and its element values.
+ *
+ * The values are kept in insertion order in two small arrays, annotations
+ * having only a few elements. Subclasses can fill the values on demand by
+ * overriding {@link #decode()}, which is called before any value is read.
+ */
 public class AnnotationData implements Map<String, Object> {
+    private static final String[] NO_NAMES = new String[0];
+    private static final Object[] NO_VALUES = new Object[0];
     private String desc;
     private boolean visible;
-    private Map<String, Object> parameters = new Hashtable<String, Object>();
+    private String[] names = NO_NAMES;
+    private Object[] values = NO_VALUES;
+    private int size;
 
     public AnnotationData(String desc, boolean visible) {
         this.desc = desc;
@@ -44,9 +58,31 @@ public class AnnotationData implements Map<String, Object> {
         return visible;
     }
 
+    /**
+     * Make sure the element values are available. Does nothing by default.
+     */
+    protected void decode() {
+    }
+
     @Override
     public Object put(String name, Object value) {
-        return parameters.put(name, value);
+        if (name == null || value == null) {
+            throw new NullPointerException();
+        }
+        int index = indexOf(name);
+        if (index >= 0) {
+            Object previous = values[index];
+            values[index] = value;
+            return previous;
+        }
+        if (size == names.length) {
+            int length = Math.max(4, size * 2);
+            names = Arrays.copyOf(names, length);
+            values = Arrays.copyOf(values, length);
+        }
+        names[size] = name;
+        values[size++] = value;
+        return null;
     }
 
     @Override
@@ -56,32 +92,47 @@ public class AnnotationData implements Map<String, Object> {
 
     @Override
     public boolean containsKey(Object key) {
-        return this.parameters.containsKey(key);
+        decode();
+        return indexOf(key) >= 0;
     }
 
     @Override
     public boolean containsValue(Object value) {
-        return this.parameters.containsValue(value);
+        decode();
+        for (int i = 0; i < size; i++) {
+            if (values[i].equals(value)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     @Override
     public Set<java.util.Map.Entry<String, Object>> entrySet() {
-        return this.parameters.entrySet();
+        decode();
+        Set<java.util.Map.Entry<String, Object>> result = new LinkedHashSet<java.util.Map.Entry<String, Object>>();
+        for (int i = 0; i < size; i++) {
+            result.add(new AbstractMap.SimpleImmutableEntry<String, Object>(names[i], values[i]));
+        }
+        return Collections.unmodifiableSet(result);
     }
 
     @Override
     public Object get(Object key) {
-        return this.parameters.get(key);
+        decode();
+        int index = indexOf(key);
+        return index >= 0 ? values[index] : null;
     }
 
     @Override
     public boolean isEmpty() {
-        return this.parameters.isEmpty();
+        return size() == 0;
     }
 
     @Override
     public Set<String> keySet() {
-        return this.parameters.keySet();
+        decode();
+        return Collections.unmodifiableSet(new LinkedHashSet<String>(Arrays.asList(names).subList(0, size)));
     }
 
     @Override
@@ -96,12 +147,22 @@ public class AnnotationData implements Map<String, Object> {
 
     @Override
     public int size() {
-        return this.parameters.size();
+        decode();
+        return size;
     }
 
     @Override
     public Collection<Object> values() {
-        return this.parameters.values();
+        decode();
+        return Collections.unmodifiableList(Arrays.asList(values).subList(0, size));
     }
 
+    private int indexOf(Object name) {
+        for (int i = 0; i < size; i++) {
+            if (names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
 }
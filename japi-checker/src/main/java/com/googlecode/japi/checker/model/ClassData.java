@@ -17,7 +17,9 @@ package com.googlecode.japi.checker.model;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.googlecode.japi.checker.ClassDataLoader;
 import com.googlecode.japi.checker.Reporter;
@@ -33,9 +35,14 @@ public class ClassData extends JavaItem {
     private List<String> interfaces = new ArrayList<String>();
     private int version;
     private String source;
+    private ClassDataLoader classDataLoader;
+    // indexes built on first lookup, and dropped when members are changed.
+    private volatile Map<String, FieldData> fieldsByName;
+    private volatile Map<String, List<MethodData>> methodsByName;
 
     public ClassData(ClassDataLoader loader, ClassData owner, int access, String name, String signature, String superName, String[] interfaces, int version) {
         super(loader, owner, access, name);
+        this.classDataLoader = loader;
         this.setSignature(signature);
         this.superName = superName;
         Collections.addAll(this.interfaces, interfaces);
@@ -44,6 +51,7 @@ public class ClassData extends JavaItem {
     
     public void add(MethodData method) {
         methods.add(method);
+        clearMethodIndexes();
     }
     
     public void add(AttributeData attribute) {
@@ -52,33 +60,118 @@ public class ClassData extends JavaItem {
     
     public void add(FieldData field) {
         fields.add(field);
+        fieldsByName = null;
     }
     
     public void checkBackwardCompatibility(Reporter reporter, ClassData clazz, List<Rule> rules) {
-        for (FieldData oldField : clazz.fields) {
-            for (FieldData newField: this.fields) {
-                if (oldField.isSame(newField)) {
-                    newField.checkBackwardCompatibility(reporter, oldField, rules);
-                    for (Rule rule : rules) {
-                        rule.checkBackwardCompatibility(reporter, oldField, newField);
-                    }
-                    break;
+        for (FieldData oldField : clazz.getFields()) {
+            FieldData newField = this.getField(oldField.getName());
+            if (newField != null) {
+                newField.checkBackwardCompatibility(reporter, oldField, rules);
+                for (Rule rule : rules) {
+                    rule.checkBackwardCompatibility(reporter, oldField, newField);
                 }
             }
         }
-        for (MethodData oldMethod : clazz.methods) {
-            for (MethodData newMethod: this.methods) {
-                if (oldMethod.isSame(newMethod)) {
-                    newMethod.checkBackwardCompatibility(reporter, oldMethod, rules);
-                    for (Rule rule : rules) {
-                        rule.checkBackwardCompatibility(reporter, oldMethod, newMethod);
-                    }
-                    break;
+        for (MethodData oldMethod : clazz.getMethods()) {
+            MethodData newMethod = this.getMethod(oldMethod.getName(), oldMethod.getDescriptor());
+            if (newMethod != null) {
+                newMethod.checkBackwardCompatibility(reporter, oldMethod, rules);
+                for (Rule rule : rules) {
+                    rule.checkBackwardCompatibility(reporter, oldMethod, newMethod);
                 }
             }
         }
     }
 
+    /**
+     * The loader is kept by the class, for itself and all its members.
+     * {@inheritDoc}
+     */
+    @Override
+    public ClassDataLoader getClassDataLoader() {
+        return classDataLoader;
+    }
+
+    @Override
+    protected void setClassDataLoader(ClassDataLoader loader) {
+        this.classDataLoader = loader;
+    }
+
+    /**
+     * Get a field declared by this class.
+     * @param name the field name.
+     * @return the field, or null if not declared by this class.
+     */
+    public FieldData getField(String name) {
+        Map<String, FieldData> index = fieldsByName;
+        if (index == null) {
+            List<FieldData> fields = this.getFields();
+            index = new HashMap<String, FieldData>(fields.size() * 4 / 3 + 1);
+            for (FieldData field : fields) {
+                if (!index.containsKey(field.getName())) {
+                    index.put(field.getName(), field);
+                }
+            }
+            fieldsByName = index;
+        }
+        return index.get(name);
+    }
+
+    /**
+     * Get a method declared by this class, see {@link MethodData#isSame(MethodData)}.
+     * @param name the method name.
+     * @param descriptor the method descriptor.
+     * @return the method, or null if not declared by this class.
+     */
+    public MethodData getMethod(String name, String descriptor) {
+        // the overloads are few, so the lookup builds no key.
+        List<MethodData> overloads = getMethodsByName().get(name);
+        if (overloads != null) {
+            for (MethodData method : overloads) {
+                if (method.getDescriptor().equals(descriptor)) {
+                    return method;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the methods declared by this class with a given name, whatever
+     * their descriptor is.
+     * @param name the method name.
+     * @return the methods in declaration order, empty if none.
+     */
+    public List<MethodData> getMethods(String name) {
+        List<MethodData> result = getMethodsByName().get(name);
+        if (result == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    private Map<String, List<MethodData>> getMethodsByName() {
+        Map<String, List<MethodData>> index = methodsByName;
+        if (index == null) {
+            index = new HashMap<String, List<MethodData>>();
+            for (MethodData method : this.getMethods()) {
+                List<MethodData> overloads = index.get(method.getName());
+                if (overloads == null) {
+                    overloads = new ArrayList<MethodData>(1);
+                    index.put(method.getName(), overloads);
+                }
+                overloads.add(method);
+            }
+            methodsByName = index;
+        }
+        return index;
+    }
+
+    private void clearMethodIndexes() {
+        methodsByName = null;
+    }
+
     public boolean isSame(ClassData newClazz) {
         return this.getName().equals(newClazz.getName());
     }
@@ -157,6 +250,7 @@ public class ClassData extends JavaItem {
      */
     protected void setMethods(List<MethodData> methods) {
         this.methods = methods;
+        clearMethodIndexes();
     }
 
     /**
@@ -171,6 +265,7 @@ public class ClassData extends JavaItem {
      */
     protected void setFields(List<FieldData> fields) {
         this.fields = fields;
+        fieldsByName = null;
     }
 
     /**
@@ -205,6 +300,13 @@ public class ClassData extends JavaItem {
     public String getSource() {
         return source;
     }
+
+    /**
+     * Make sure the line numbers of the methods are available, for the
+     * classes reading them on demand. Does nothing by default.
+     */
+    protected void readLineNumbers() {
+    }
     
     /**
      * Returns the filename representing this item.
@@ -89,6 +89,15 @@ public class FieldData extends JavaItem {
         
     }
 
+    /**
+     * The ACC_TRANSIENT bit of a field is not ACC_VARARGS.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isVariableArity() {
+        return false;
+    }
+
     @Override
     public String getType() {
         return "field";
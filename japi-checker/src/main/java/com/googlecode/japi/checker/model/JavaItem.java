@@ -24,38 +24,58 @@ import org.objectweb.asm.Opcodes;
 import com.googlecode.japi.checker.ClassDataLoader;
 import com.googlecode.japi.checker.Scope;
 
+/**
+ * Base class of the classes and members of the model.
+ *
+ * The modifiers are kept as the ASM access flags, the boolean properties
+ * being derived from them. Members share the ClassDataLoader of their
+ * owner class, only the items created without owner keep their own.
+ */
 public abstract class JavaItem {
-    private Scope visibility = Scope.PROTECTED;
+    private static final int VISIBILITY_MASK = Opcodes.ACC_PUBLIC | Opcodes.ACC_PROTECTED | Opcodes.ACC_PRIVATE;
     private ClassData owner;
-    private String name;
-    private boolean isAbstract;
-    private boolean isInterface;
-    private boolean isFinal;
-    private boolean isStatic;
-    private boolean isTransient;
-    private boolean isVariableArity;
     private ClassDataLoader classDataLoader;
-    private List<AnnotationData> annotations = new ArrayList<AnnotationData>();
+    private String name;
+    private int access;
+    private List<AnnotationData> annotations = Collections.emptyList();
 
     protected JavaItem(ClassDataLoader loader, ClassData owner, int access, String name) {
         this.setOwner(owner);
         this.setName(name);
-        this.setVisibility(toScope(access));
-        this.setAbstract((access & Opcodes.ACC_ABSTRACT) == Opcodes.ACC_ABSTRACT);
-        this.setInterface((access & Opcodes.ACC_INTERFACE) == Opcodes.ACC_INTERFACE);
-        this.setFinal((access & Opcodes.ACC_FINAL) == Opcodes.ACC_FINAL);
-        this.setStatic((access & Opcodes.ACC_STATIC) == Opcodes.ACC_STATIC);
-        this.setTransient((access & Opcodes.ACC_TRANSIENT) == Opcodes.ACC_TRANSIENT);
-        this.setVariableArity((access & Opcodes.ACC_VARARGS) == Opcodes.ACC_VARARGS);
-        this.setClassDataLoader(loader);
+        this.access = access;
+        if (owner == null) {
+            this.classDataLoader = loader;
+        }
+    }
+
+    /**
+     * @return the ASM access flags of this item.
+     */
+    public int getAccess() {
+        return access;
     }
 
     protected void setVisibility(Scope visibility) {
-        this.visibility = visibility;
+        int flag;
+        switch (visibility) {
+        case PUBLIC:
+            flag = Opcodes.ACC_PUBLIC;
+            break;
+        case PROTECTED:
+            flag = Opcodes.ACC_PROTECTED;
+            break;
+        case PRIVATE:
+            flag = Opcodes.ACC_PRIVATE;
+            break;
+        default:
+            flag = 0;
+            break;
+        }
+        access = (access & ~VISIBILITY_MASK) | flag;
     }
 
     public Scope getVisibility() {
-        return visibility;
+        return toScope(access);
     }
     
     public static Scope toScope(int access) {
@@ -74,70 +94,72 @@ public abstract class JavaItem {
      * @param isAbstract the isAbstract to set
      */
     protected void setAbstract(boolean isAbstract) {
-        this.isAbstract = isAbstract;
+        setFlag(Opcodes.ACC_ABSTRACT, isAbstract);
     }
 
     /**
      * @return the isAbstract
      */
     public boolean isAbstract() {
-        return isAbstract;
+        return hasFlag(Opcodes.ACC_ABSTRACT);
     }
 
     /**
      * @param isInterface the isInterface to set
      */
     protected void setInterface(boolean isInterface) {
-        this.isInterface = isInterface;
+        setFlag(Opcodes.ACC_INTERFACE, isInterface);
     }
 
     /**
      * @return the isInterface
      */
     public boolean isInterface() {
-        return isInterface;
+        return hasFlag(Opcodes.ACC_INTERFACE);
     }
 
     /**
      * @param isFinal the isFinal to set
      */
     protected void setFinal(boolean isFinal) {
-        this.isFinal = isFinal;
+        setFlag(Opcodes.ACC_FINAL, isFinal);
     }
 
     /**
      * @return the isFinal
      */
     public boolean isFinal() {
-        return isFinal;
+        return hasFlag(Opcodes.ACC_FINAL);
     }
 
     /**
      * @param isStatic the isStatic to set
      */
     protected void setStatic(boolean isStatic) {
-        this.isStatic = isStatic;
+        setFlag(Opcodes.ACC_STATIC, isStatic);
     }
 
     /**
      * @return the isStatic
      */
     public boolean isStatic() {
-        return isStatic;
+        return hasFlag(Opcodes.ACC_STATIC);
     }
 
     /**
      * @param isTransient the isTransient to set
      */
     protected void setTransient(boolean isTransient) {
-        this.isTransient = isTransient;
+        setFlag(Opcodes.ACC_TRANSIENT, isTransient);
     }
 
     /**
+     * ACC_TRANSIENT and ACC_VARARGS share the same bit, MethodData
+     * only reads it as the variable arity.
      * @return the isTransient
      */
     public boolean isTransient() {
-        return isTransient;
+        return hasFlag(Opcodes.ACC_TRANSIENT);
     }
     
     /**
@@ -154,13 +176,30 @@ public abstract class JavaItem {
         this.name = name;
     }
 
+	/**
+	 * ACC_TRANSIENT and ACC_VARARGS share the same bit, FieldData
+	 * only reads it as transient.
+	 * @return the isVariableArity
+	 */
 	public boolean isVariableArity() {
-		return isVariableArity;
+		return hasFlag(Opcodes.ACC_VARARGS);
 	}
 
 	protected void setVariableArity(boolean isVariableArity) {
-		this.isVariableArity = isVariableArity;
+		setFlag(Opcodes.ACC_VARARGS, isVariableArity);
 	}
+
+    private boolean hasFlag(int flag) {
+        return (access & flag) == flag;
+    }
+
+    private void setFlag(int flag, boolean value) {
+        if (value) {
+            access |= flag;
+        } else {
+            access &= ~flag;
+        }
+    }
     
     /**
      * @return the owner
@@ -187,19 +226,23 @@ public abstract class JavaItem {
     }
 
     /**
-     * Get the ClassDataLoader associated with this instance.
+     * Get the ClassDataLoader associated with this instance,
+     * which is the one of the owner class for the members.
      * {@inheritDoc}
      */
     public ClassDataLoader getClassDataLoader() {
-        return classDataLoader;
+        return owner == null ? classDataLoader : owner.getClassDataLoader();
     }
 
     /**
-     * Get the ClassDataLoader associated with this instance.
-     * {@inheritDoc}
+     * Set the ClassDataLoader associated with this instance. This does
+     * nothing for the members which have an owner, they use its loader.
+     * @param loader the loader.
      */
     protected void setClassDataLoader(ClassDataLoader loader) {
-        classDataLoader = loader;
+        if (owner == null) {
+            this.classDataLoader = loader;
+        }
     }
     
     /**
@@ -207,6 +250,9 @@ public abstract class JavaItem {
      * @return
      */
     public List<AnnotationData> getAnnotations() {
+        if (annotations.isEmpty()) {
+            return annotations;
+        }
         return Collections.<AnnotationData>unmodifiableList(annotations);
     }
     
@@ -215,6 +261,10 @@ public abstract class JavaItem {
      * @param annotations
      */
     public void add(AnnotationData annotation) {
+        if (this.annotations.isEmpty()) {
+            // most items have no annotation, they share the empty list.
+            this.annotations = new ArrayList<AnnotationData>(2);
+        }
         this.annotations.add(annotation);
     }
     
@@ -16,6 +16,7 @@
 package com.googlecode.japi.checker.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -26,15 +27,18 @@ import com.googlecode.japi.checker.Rule;
 public class MethodData extends JavaItem {
     private String signature;
     private String descriptor;
-    private List<String> exceptions = new ArrayList<String>();
+    private List<String> exceptions;
     private int line;
     
     public MethodData(ClassDataLoader loader, ClassData owner, int access, String name, String descriptor, String signature, String[] exceptions) {
         super(loader, owner, access, name);
         this.setSignature(signature);
         this.setDescriptor(descriptor);
-        if (exceptions != null) {
-            Collections.addAll(this.exceptions, exceptions);
+        // most methods share the empty list.
+        if (exceptions == null || exceptions.length == 0) {
+            this.exceptions = Collections.emptyList();
+        } else {
+            this.exceptions = Collections.unmodifiableList(Arrays.asList(exceptions.clone()));
         }
     }
 
@@ -82,24 +86,45 @@ public class MethodData extends JavaItem {
     }
 
     /**
-     * @param exceptions the exceptions to set
+     * @param exceptions the exceptions to set, the list is copied.
      */
     protected void setExceptions(List<String> exceptions) {
-        this.exceptions = exceptions;
+        if (exceptions == null || exceptions.isEmpty()) {
+            this.exceptions = Collections.emptyList();
+        } else {
+            this.exceptions = Collections.unmodifiableList(new ArrayList<String>(exceptions));
+        }
     }
 
     /**
-     * @return the exceptions
+     * @return the exceptions, as an unmodifiable list.
      */
     public List<String> getExceptions() {
         return exceptions;
     }
 
+    /**
+     * The ACC_VARARGS bit of a method is not ACC_TRANSIENT.
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isTransient() {
+        return false;
+    }
+
     public void setLineNumber(int line) {
         this.line = line;
     }
     
+    /**
+     * Get the line of the method, the line numbers may be read
+     * on demand by the owner class.
+     * @return the line number, 0 if not known.
+     */
     public int getLineNumber() {
+        if (getOwner() != null) {
+            getOwner().readLineNumbers();
+        }
         return line;
     }
     
@@ -16,13 +16,17 @@
 package com.googlecode.japi.checker.rules;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import com.googlecode.japi.checker.CompositeRule;
+import com.googlecode.japi.checker.ParseProfile;
+import com.googlecode.japi.checker.ProfiledRule;
 import com.googlecode.japi.checker.Reporter;
 import com.googlecode.japi.checker.Rule;
 import com.googlecode.japi.checker.model.JavaItem;
 
-public class AllRules implements Rule {
+public class AllRules implements ProfiledRule, CompositeRule {
 
     private List<Rule> rules = new ArrayList<Rule>();
     
@@ -50,5 +54,21 @@ public class AllRules implements Rule {
             rule.checkBackwardCompatibility(reporter, reference, newItem);
         }
     }
+
+    /**
+     * The profile satisfying all the aggregated rules.
+     */
+    @Override
+    public ParseProfile getRequiredParseProfile() {
+        return ParseProfile.of(rules);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Rule> getRules() {
+        return Collections.unmodifiableList(rules);
+    }
     
 }
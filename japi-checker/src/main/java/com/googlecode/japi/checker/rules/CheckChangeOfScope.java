@@ -18,11 +18,12 @@ package com.googlecode.japi.checker.rules;
 import com.googlecode.japi.checker.Reporter;
 import com.googlecode.japi.checker.Scope;
 import com.googlecode.japi.checker.Reporter.Report;
-import com.googlecode.japi.checker.Rule;
+import com.googlecode.japi.checker.ParseProfile;
+import com.googlecode.japi.checker.ProfiledRule;
 import com.googlecode.japi.checker.Severity;
 import com.googlecode.japi.checker.model.JavaItem;
 
-public class CheckChangeOfScope implements Rule {
+public class CheckChangeOfScope implements ProfiledRule {
 
     @Override
     public void checkBackwardCompatibility(Reporter reporter,
@@ -41,4 +42,8 @@ public class CheckChangeOfScope implements Rule {
         }
     }
 
+    @Override
+    public ParseProfile getRequiredParseProfile() {
+        return ParseProfile.ALL_MEMBERS;
+    }
 }
@@ -20,10 +20,11 @@ import com.googlecode.japi.checker.Severity;
 import com.googlecode.japi.checker.Reporter.Report;
 import com.googlecode.japi.checker.model.FieldData;
 import com.googlecode.japi.checker.model.JavaItem;
-import com.googlecode.japi.checker.Rule;
+import com.googlecode.japi.checker.ParseProfile;
+import com.googlecode.japi.checker.ProfiledRule;
 import com.googlecode.japi.checker.Scope;
 
-public class CheckFieldChangeToStatic implements Rule {
+public class CheckFieldChangeToStatic implements ProfiledRule {
 
     @Override
     public void checkBackwardCompatibility(Reporter reporter,
@@ -40,4 +41,8 @@ public class CheckFieldChangeToStatic implements Rule {
         }
     }
 
+    @Override
+    public ParseProfile getRequiredParseProfile() {
+        return ParseProfile.ALL_MEMBERS;
+    }
 }
@@ -20,9 +20,10 @@ import com.googlecode.japi.checker.Severity;
 import com.googlecode.japi.checker.Reporter.Report;
 import com.googlecode.japi.checker.model.FieldData;
 import com.googlecode.japi.checker.model.JavaItem;
-import com.googlecode.japi.checker.Rule;
+import com.googlecode.japi.checker.ParseProfile;
+import com.googlecode.japi.checker.ProfiledRule;
 
-public class CheckFieldChangeToTransient implements Rule {
+public class CheckFieldChangeToTransient implements ProfiledRule {
 
     @Override
     public void checkBackwardCompatibility(Reporter reporter,
@@ -37,4 +38,8 @@ public class CheckFieldChangeToTransient implements Rule {
         }
     }
 
+    @Override
+    public ParseProfile getRequiredParseProfile() {
+        return ParseProfile.ALL_MEMBERS;
+    }
 }
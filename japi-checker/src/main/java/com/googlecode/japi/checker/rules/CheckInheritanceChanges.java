@@ -16,13 +16,14 @@
 package com.googlecode.japi.checker.rules;
 
 import com.googlecode.japi.checker.Reporter;
-import com.googlecode.japi.checker.Rule;
+import com.googlecode.japi.checker.ParseProfile;
+import com.googlecode.japi.checker.ProfiledRule;
 import com.googlecode.japi.checker.Severity;
 import com.googlecode.japi.checker.Reporter.Report;
 import com.googlecode.japi.checker.model.ClassData;
 import com.googlecode.japi.checker.model.JavaItem;
 
-public class CheckInheritanceChanges implements Rule {
+public class CheckInheritanceChanges implements ProfiledRule {
 
     @Override
     public void checkBackwardCompatibility(Reporter reporter,
@@ -43,4 +44,8 @@ public class CheckInheritanceChanges implements Rule {
         
     }
 
+    @Override
+    public ParseProfile getRequiredParseProfile() {
+        return ParseProfile.API_ONLY;
+    }
 }
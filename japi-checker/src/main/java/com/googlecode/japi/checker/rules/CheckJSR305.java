@@ -18,12 +18,13 @@ package com.googlecode.japi.checker.rules;
 import com.googlecode.japi.checker.Reporter;
 import com.googlecode.japi.checker.Scope;
 import com.googlecode.japi.checker.Reporter.Report;
-import com.googlecode.japi.checker.Rule;
+import com.googlecode.japi.checker.ParseProfile;
+import com.googlecode.japi.checker.ProfiledRule;
 import com.googlecode.japi.checker.Severity;
 import com.googlecode.japi.checker.model.JavaItem;
 import com.googlecode.japi.checker.model.MethodData;
 
-public class CheckJSR305 implements Rule {
+public class CheckJSR305 implements ProfiledRule {
     private static final String JSR305_NONNULL_DESC = "Ljavax/annotation/Nonnull;";
     private static final String JSR305_NULLABLE_DESC = "Ljavax/annotation/Nullable;";
     
@@ -43,4 +44,8 @@ public class CheckJSR305 implements Rule {
         }
     }
 
+    @Override
+    public ParseProfile getRequiredParseProfile() {
+        return ParseProfile.ALL_MEMBERS;
+    }
 }
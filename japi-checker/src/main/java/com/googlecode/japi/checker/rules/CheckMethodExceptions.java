@@ -17,10 +17,10 @@ package com.googlecode.japi.checker.rules;
 
 import java.util.List;
 
-import com.googlecode.japi.checker.ClassDataLoader;
+import com.googlecode.japi.checker.ClassHierarchy;
 import com.googlecode.japi.checker.Reporter;
-import com.googlecode.japi.checker.Rule;
-import com.googlecode.japi.checker.RuleHelpers;
+import com.googlecode.japi.checker.ParseProfile;
+import com.googlecode.japi.checker.ProfiledRule;
 import com.googlecode.japi.checker.Scope;
 import com.googlecode.japi.checker.Severity;
 import com.googlecode.japi.checker.Reporter.Report;
@@ -33,7 +33,7 @@ import com.googlecode.japi.checker.model.MethodData;
  * The check is not occurring for private scope.
  * '
  */
-public class CheckMethodExceptions implements Rule {
+public class CheckMethodExceptions implements ProfiledRule {
 
 
     /**
@@ -45,13 +45,15 @@ public class CheckMethodExceptions implements Rule {
     	if (reference instanceof MethodData && reference.getVisibility().isMoreVisibleThan(Scope.NO_SCOPE)) {
             MethodData referenceMethod = (MethodData)reference;
             MethodData newMethod = (MethodData)newItem;
+            // the checked items are never shared, so this is the loader of the new side.
+            ClassHierarchy hierarchy = ClassHierarchy.of(newItem.getClassDataLoader());
             for (String exception : referenceMethod.getExceptions()) {
-                if (!isCompatibleWithAnyOfTheException(newItem.getClassDataLoader(), exception, newMethod.getExceptions())) {
+                if (!isCompatibleWithAnyOfTheException(hierarchy, exception, newMethod.getExceptions())) {
                 	reporter.report(new Report(Severity.ERROR, referenceMethod + " is not throwing " + exception + " anymore.", reference, newItem));
                 }
             }
             for (String exception : newMethod.getExceptions()) {
-                if (!hasCompatibleExceptionInItsHierarchy(newItem.getClassDataLoader(), exception, referenceMethod.getExceptions())) {
+                if (!hasCompatibleExceptionInItsHierarchy(hierarchy, exception, referenceMethod.getExceptions())) {
                 	reporter.report(new Report(Severity.ERROR, referenceMethod + " is now throwing " + exception + ".", reference, newItem));
                 }
             }
@@ -60,14 +62,14 @@ public class CheckMethodExceptions implements Rule {
     
     /**
      * Check if exception is part of inheritance tree of any of the referenceExceptions members.
-     * @param loader
+     * @param hierarchy
      * @param exception
      * @param referenceExceptions
      * @return
      */
-    private boolean isCompatibleWithAnyOfTheException(ClassDataLoader loader, String exception, List<String> referenceExceptions) {
+    private boolean isCompatibleWithAnyOfTheException(ClassHierarchy hierarchy, String exception, List<String> referenceExceptions) {
         for (String referenceException : referenceExceptions) {
-            if (RuleHelpers.isClassPartOfClassTree(loader, exception, referenceException)) {
+            if (hierarchy.isSubclassOf(referenceException, exception)) {
                 return true;
             }
         } 
@@ -76,18 +78,22 @@ public class CheckMethodExceptions implements Rule {
     
     /**
      * Check if any of the referenceException are part of the inherirance tree of exception. 
-     * @param loader
+     * @param hierarchy
      * @param exception
      * @param referenceExceptions
      * @return
      */
-    private boolean hasCompatibleExceptionInItsHierarchy(ClassDataLoader loader, String exception, List<String> referenceExceptions) {
+    private boolean hasCompatibleExceptionInItsHierarchy(ClassHierarchy hierarchy, String exception, List<String> referenceExceptions) {
         for (String referenceException : referenceExceptions) {
-            if (RuleHelpers.isClassPartOfClassTree(loader, referenceException, exception)) {
+            if (hierarchy.isSubclassOf(exception, referenceException)) {
                 return true;
             }
         } 
         return false;
     }
-    
+
+    @Override
+    public ParseProfile getRequiredParseProfile() {
+        return ParseProfile.ALL_MEMBERS;
+    }
 }
@@ -18,7 +18,8 @@ package com.googlecode.japi.checker.rules;
 import com.googlecode.japi.checker.Reporter;
 import com.googlecode.japi.checker.Scope;
 import com.googlecode.japi.checker.Reporter.Report;
-import com.googlecode.japi.checker.Rule;
+import com.googlecode.japi.checker.ParseProfile;
+import com.googlecode.japi.checker.ProfiledRule;
 import com.googlecode.japi.checker.Severity;
 import com.googlecode.japi.checker.model.JavaItem;
 import com.googlecode.japi.checker.model.MethodData;
@@ -45,7 +46,7 @@ import com.googlecode.japi.checker.model.MethodData;
  * @author Tomas Rohovsky
  *
  */
-public class CheckMethodVariableArity implements Rule {
+public class CheckMethodVariableArity implements ProfiledRule {
 	
 	@Override
     public void checkBackwardCompatibility(Reporter reporter, JavaItem reference, JavaItem newItem) {
@@ -57,4 +58,9 @@ public class CheckMethodVariableArity implements Rule {
 					+ " has been changed from variable arity to array", newItem, reference));
         }
     }
+
+    @Override
+    public ParseProfile getRequiredParseProfile() {
+        return ParseProfile.ALL_MEMBERS;
+    }
 }
@@ -16,7 +16,8 @@
 package com.googlecode.japi.checker.rules;
 
 import com.googlecode.japi.checker.Reporter;
-import com.googlecode.japi.checker.Rule;
+import com.googlecode.japi.checker.ParseProfile;
+import com.googlecode.japi.checker.ProfiledRule;
 import com.googlecode.japi.checker.Scope;
 import com.googlecode.japi.checker.Reporter.Report;
 import com.googlecode.japi.checker.Severity;
@@ -24,7 +25,7 @@ import com.googlecode.japi.checker.model.ClassData;
 import com.googlecode.japi.checker.model.FieldData;
 import com.googlecode.japi.checker.model.JavaItem;
 
-public class CheckRemovedField implements Rule {
+public class CheckRemovedField implements ProfiledRule {
 
     @Override
     public void checkBackwardCompatibility(Reporter reporter,
@@ -33,13 +34,7 @@ public class CheckRemovedField implements Rule {
             ClassData referenceClass = (ClassData)reference;
             ClassData newClass = (ClassData)newItem;
             for (FieldData oldField : referenceClass.getFields()) {
-                boolean found = false;
-                for (FieldData newField: newClass.getFields()) {
-                    if (oldField.isSame(newField)) {
-                        found = true;
-                        break;
-                    }
-                }
+                boolean found = newClass.getField(oldField.getName()) != null;
                 if (!found && oldField.getVisibility().isMoreVisibleThan(Scope.NO_SCOPE)) {
                 	reporter.report(new Report(Severity.ERROR, "Could not find " + oldField + " in newer version.", reference, newItem));
                 }
@@ -47,6 +42,8 @@ public class CheckRemovedField implements Rule {
         }
     }
 
-    
-    
+    @Override
+    public ParseProfile getRequiredParseProfile() {
+        return ParseProfile.ALL_MEMBERS;
+    }
 }
@@ -22,10 +22,11 @@ import com.googlecode.japi.checker.Reporter.Report;
 import com.googlecode.japi.checker.model.ClassData;
 import com.googlecode.japi.checker.model.JavaItem;
 import com.googlecode.japi.checker.model.MethodData;
-import com.googlecode.japi.checker.Rule;
+import com.googlecode.japi.checker.ParseProfile;
+import com.googlecode.japi.checker.ProfiledRule;
 import com.googlecode.japi.checker.Scope;
 
-public class CheckRemovedMethod implements Rule {
+public class CheckRemovedMethod implements ProfiledRule {
 
     @Override
     public void checkBackwardCompatibility(Reporter reporter,
@@ -35,19 +36,18 @@ public class CheckRemovedMethod implements Rule {
             ClassData newClass = (ClassData)newItem;
             // Let's check that any method implemented by the reference class
             for (MethodData oldMethod : referenceClass.getMethods()) {
-                boolean found = false;
-                // Are still implemented either by the class or its super. 
-                for (MethodData newMethod: RuleHelpers.getClassMethodRecursive(newClass)) {
-                    if (oldMethod.isSame(newMethod)) {
-                        found = true;
-                        break;
-                    }
-                }
+                // Are still implemented either by the class or its super, resolved on the new side.
+                boolean found = newClass.getMethod(oldMethod.getName(), oldMethod.getDescriptor()) != null
+                        || RuleHelpers.findClassMethodRecursive(newClass.getClassDataLoader(), newClass, oldMethod) != null;
                 if (!found && oldMethod.getVisibility().isMoreVisibleThan(Scope.NO_SCOPE)) {
                 	reporter.report(new Report(Severity.ERROR, "Could not find " + oldMethod + " in newer version.", reference, newItem));
                 }
             }
         }
     }
-    
+
+    @Override
+    public ParseProfile getRequiredParseProfile() {
+        return ParseProfile.ALL_MEMBERS;
+    }
 }
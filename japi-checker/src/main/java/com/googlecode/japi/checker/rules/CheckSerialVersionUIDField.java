@@ -16,7 +16,8 @@
 package com.googlecode.japi.checker.rules;
 
 import com.googlecode.japi.checker.Reporter;
-import com.googlecode.japi.checker.Rule;
+import com.googlecode.japi.checker.ParseProfile;
+import com.googlecode.japi.checker.ProfiledRule;
 import com.googlecode.japi.checker.Severity;
 import com.googlecode.japi.checker.Reporter.Report;
 import com.googlecode.japi.checker.model.FieldData;
@@ -27,7 +28,7 @@ import com.googlecode.japi.checker.model.JavaItem;
  * This field is used by the serialized interface to identify the class
  * so changing its value is not a good idea from BC prospective. 
  */
-public class CheckSerialVersionUIDField implements Rule {
+public class CheckSerialVersionUIDField implements ProfiledRule {
 
     @Override
     public void checkBackwardCompatibility(Reporter reporter,
@@ -59,4 +60,8 @@ public class CheckSerialVersionUIDField implements Rule {
         return String.format("0x%x", ((Long)field.getValue()).longValue());
     }
 
+    @Override
+    public ParseProfile getRequiredParseProfile() {
+        return ParseProfile.ALL_MEMBERS;
+    }
 }
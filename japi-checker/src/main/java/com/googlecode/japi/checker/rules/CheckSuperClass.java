@@ -18,7 +18,8 @@ package com.googlecode.japi.checker.rules;
 import com.googlecode.japi.checker.Reporter;
 import com.googlecode.japi.checker.Severity;
 import com.googlecode.japi.checker.Reporter.Report;
-import com.googlecode.japi.checker.Rule;
+import com.googlecode.japi.checker.ParseProfile;
+import com.googlecode.japi.checker.ProfiledRule;
 import com.googlecode.japi.checker.RuleHelpers;
 import com.googlecode.japi.checker.Scope;
 import com.googlecode.japi.checker.model.ClassData;
@@ -37,7 +38,7 @@ import com.googlecode.japi.checker.model.JavaItem;
  * inherits from B or A in the new version. 
  *
  */
-public class CheckSuperClass implements Rule {
+public class CheckSuperClass implements ProfiledRule {
     
     @Override
     public void checkBackwardCompatibility(Reporter reporter,
@@ -52,4 +53,9 @@ public class CheckSuperClass implements Rule {
             }
         }
     }
+
+    @Override
+    public ParseProfile getRequiredParseProfile() {
+        return ParseProfile.API_ONLY;
+    }
 }
@@ -16,8 +16,8 @@
 package com.googlecode.japi.checker.utils;
 
 import java.io.File;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Pattern;
 
 /**
@@ -29,7 +29,7 @@ import java.util.regex.Pattern;
  */
 public class AntPatternMatcher {
 
-    private static Map<String, AntPatternMatcher> matchers = new HashMap<String, AntPatternMatcher>();
+    private static ConcurrentMap<String, AntPatternMatcher> matchers = new ConcurrentHashMap<String, AntPatternMatcher>();
     private boolean casesensitive = true;
     private String expression;
     private Pattern pattern;
@@ -48,14 +48,24 @@ public class AntPatternMatcher {
         return expression;
     }
 
+    /**
+     * @return true if the matching is case sensitive.
+     */
+    public boolean isCaseSensitive() {
+        return casesensitive;
+    }
+
     static public boolean matches(String expression, String path, boolean casesensitive) {
-        if (matchers.containsKey(getKey(casesensitive, expression))) {
-            return matchers.get(getKey(casesensitive, expression)).matches(path);
-        } else {
-            AntPatternMatcher matcher = new AntPatternMatcher(expression, casesensitive);
-            matchers.put(matcher.toString(), matcher);
-            return matcher.matches(path);
+        String key = getKey(casesensitive, expression);
+        AntPatternMatcher matcher = matchers.get(key);
+        if (matcher == null) {
+            matcher = new AntPatternMatcher(expression, casesensitive);
+            AntPatternMatcher previous = matchers.putIfAbsent(key, matcher);
+            if (previous != null) {
+                matcher = previous;
+            }
         }
+        return matcher.matches(path);
     }
     
     static public boolean matches(String expression, String path) {
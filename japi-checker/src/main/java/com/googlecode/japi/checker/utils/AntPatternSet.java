@@ -0,0 +1,388 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A set of include and exclude Ant patterns compiled together, matching
+ * the same paths as {@link AntPatternMatcher} does.
+ *
+ * The literal characters each pattern starts with are folded into a
+ * prefix tree, so matching a path only evaluates the patterns whose prefix
+ * the path starts with. The patterns starting with a wildcard, e.g:
+ * <code>**&#47;*Test.class</code>, and the case insensitive ones have no
+ * prefix: they sit at the root and are evaluated for every path. The rest
+ * of each pattern is matched directly on the characters of the path,
+ * without regular expression nor allocation, except for the non US-ASCII
+ * characters tested against a character class. Paths are expected '/'
+ * separated, as the entry names of an archive.
+ *
+ * Instances are immutable, so they can be shared between threads. Use
+ * {@link #of(List, List)} to reuse the sets compiled for the same patterns.
+ */
+public final class AntPatternSet {
+    private static final byte LITERAL = 0;
+    private static final byte ANY_CHARS = 1;
+    private static final byte ANY_CHAR = 2;
+    private static final byte CHAR_CLASS = 3;
+    private static final byte ANY_DIRS = 4;
+    private static final int CACHE_SIZE = 16;
+    // the sets recently compiled by of(), by patterns.
+    private static final Map<String, AntPatternSet> CACHE = new LinkedHashMap<String, AntPatternSet>(CACHE_SIZE, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, AntPatternSet> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private final Node root = new Node();
+    private final boolean hasIncludes;
+    private final boolean empty;
+
+    /**
+     * A node of the prefix tree, with the patterns whose literal prefix ends here.
+     */
+    private static final class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private Glob[] globs = new Glob[0];
+
+        Node getChild(char key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        Node addChild(char key) {
+            Node child = getChild(key);
+            if (child == null) {
+                child = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                keys[keys.length - 1] = key;
+                children = Arrays.copyOf(children, children.length + 1);
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+
+        void add(Glob glob) {
+            globs = Arrays.copyOf(globs, globs.length + 1);
+            globs[globs.length - 1] = glob;
+        }
+    }
+
+    /**
+     * A pattern compiled into tokens.
+     */
+    private static final class Glob {
+        private final boolean include;
+        private final boolean caseSensitive;
+        private final byte[] kinds;
+        private final char[] chars;
+        private final CharClass[] classes;
+        private final int prefix;
+
+        Glob(AntPatternMatcher matcher, boolean include) {
+            this.include = include;
+            this.caseSensitive = matcher.isCaseSensitive();
+            // tokenized the same way AntPatternMatcher.convertToRegexp does.
+            String expression = matcher.getExpression().replace('\\', '/');
+            int n = expression.length();
+            List<Byte> kinds = new ArrayList<Byte>();
+            StringBuilder chars = new StringBuilder();
+            List<CharClass> classes = new ArrayList<CharClass>();
+            int i = 0;
+            while (i < n) {
+                char c = expression.charAt(i++);
+                byte kind = LITERAL;
+                CharClass charClass = null;
+                if (c == '*') {
+                    if (i < n && expression.charAt(i) == '*') {
+                        kind = ANY_DIRS;
+                        i++;
+                        if (i < n && expression.charAt(i) == '/') {
+                            i++;
+                        }
+                    } else {
+                        kind = ANY_CHARS;
+                    }
+                } else if (c == '?') {
+                    kind = ANY_CHAR;
+                } else if (c == '[') {
+                    int j = i;
+                    if (j < n && expression.charAt(j) == '!') {
+                        j++;
+                    }
+                    if (j < n && expression.charAt(j) == ']') {
+                        j++;
+                    }
+                    while (j < n && expression.charAt(j) != ']') {
+                        j++;
+                    }
+                    if (j < n) {
+                        kind = CHAR_CLASS;
+                        charClass = new CharClass(expression.substring(i, j), caseSensitive);
+                        i = j + 1;
+                    }
+                } else if (c == '/' && i + 2 <= n && expression.charAt(i) == '*' && expression.charAt(i + 1) == '*') {
+                    // the separator is part of the following '**'.
+                    continue;
+                }
+                kinds.add(kind);
+                chars.append(c);
+                classes.add(charClass);
+            }
+            this.kinds = new byte[kinds.size()];
+            for (int k = 0; k < this.kinds.length; k++) {
+                this.kinds[k] = kinds.get(k);
+            }
+            this.chars = chars.toString().toCharArray();
+            this.classes = classes.toArray(new CharClass[classes.size()]);
+            int prefix = 0;
+            if (caseSensitive) {
+                while (prefix < this.kinds.length && this.kinds[prefix] == LITERAL) {
+                    prefix++;
+                }
+            }
+            this.prefix = prefix;
+        }
+
+        /**
+         * Match a path from a token, the same way the regular expression
+         * of the pattern does.
+         * @param t the index of the token.
+         * @param path the path.
+         * @param i the index in the path.
+         * @return true if the rest of the path matches the rest of the pattern.
+         */
+        boolean matches(int t, String path, int i) {
+            int n = path.length();
+            for (; t < kinds.length; t++) {
+                switch (kinds[t]) {
+                case LITERAL:
+                    if (i >= n || !same(chars[t], path.charAt(i))) {
+                        return false;
+                    }
+                    i++;
+                    break;
+                case ANY_CHAR:
+                    if (i >= n || path.charAt(i) == '/') {
+                        return false;
+                    }
+                    i++;
+                    break;
+                case CHAR_CLASS:
+                    if (i >= n || !classes[t].matches(path.charAt(i))) {
+                        return false;
+                    }
+                    i++;
+                    break;
+                case ANY_CHARS:
+                    int end = endOfName(path, i);
+                    for (int j = end; j >= i; j--) {
+                        if (matches(t + 1, path, j)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                default:
+                    return matchesDirs(t, path, i);
+                }
+            }
+            return i == n;
+        }
+
+        /**
+         * The '**' token matches (?:(?:^|/)[^/]+)*(?:^|/|$): any number of
+         * names, each one starting the path or following a separator, then
+         * the start of the path, a separator or its end.
+         */
+        private boolean matchesDirs(int t, String path, int i) {
+            int n = path.length();
+            if ((i == 0 || i == n) && matches(t + 1, path, i)) {
+                return true;
+            }
+            if (i < n && path.charAt(i) == '/' && matches(t + 1, path, i + 1)) {
+                return true;
+            }
+            // a name is always followed by a separator or the end of the path,
+            // so it spans until there.
+            if (i == 0) {
+                int end = endOfName(path, 0);
+                if (end > 0 && matchesDirs(t, path, end)) {
+                    return true;
+                }
+            }
+            if (i < n && path.charAt(i) == '/') {
+                int end = endOfName(path, i + 1);
+                if (end > i + 1 && matchesDirs(t, path, end)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean same(char expected, char actual) {
+            if (expected == actual) {
+                return true;
+            }
+            // as Pattern.CASE_INSENSITIVE, only US-ASCII letters are folded.
+            return !caseSensitive && expected < 128 && actual < 128
+                    && Character.toLowerCase(expected) == Character.toLowerCase(actual);
+        }
+    }
+
+    /**
+     * A character class, evaluated with the regular expression
+     * AntPatternMatcher would use. The US-ASCII characters, which make
+     * most of the paths, are computed upfront.
+     */
+    private static final class CharClass {
+        private final Pattern pattern;
+        private final BitSet ascii = new BitSet(128);
+
+        CharClass(String content, boolean caseSensitive) {
+            String stuff = content.replace("\\", "\\\\");
+            if (stuff.charAt(0) == '!') {
+                stuff = "^" + stuff.substring(1);
+            } else if (stuff.charAt(0) == '^') {
+                stuff = "\\" + stuff;
+            }
+            this.pattern = Pattern.compile("[" + stuff + "]", caseSensitive ? 0 : Pattern.CASE_INSENSITIVE);
+            Matcher matcher = pattern.matcher("");
+            for (char c = 0; c < 128; c++) {
+                if (matcher.reset(String.valueOf(c)).matches()) {
+                    ascii.set(c);
+                }
+            }
+        }
+
+        boolean matches(char c) {
+            if (c < 128) {
+                return ascii.get(c);
+            }
+            return pattern.matcher(String.valueOf(c)).matches();
+        }
+    }
+
+    /**
+     * Get the set compiled for some patterns, the sets recently compiled
+     * are reused.
+     * @param includes the include patterns, all the paths are included if empty.
+     * @param excludes the exclude patterns.
+     * @return the pattern set.
+     */
+    public static AntPatternSet of(List<AntPatternMatcher> includes, List<AntPatternMatcher> excludes) {
+        StringBuilder key = new StringBuilder();
+        appendKey(key, '+', includes);
+        appendKey(key, '-', excludes);
+        synchronized (CACHE) {
+            AntPatternSet patterns = CACHE.get(key.toString());
+            if (patterns == null) {
+                patterns = new AntPatternSet(includes, excludes);
+                CACHE.put(key.toString(), patterns);
+            }
+            return patterns;
+        }
+    }
+
+    private static void appendKey(StringBuilder key, char kind, List<AntPatternMatcher> patterns) {
+        for (AntPatternMatcher pattern : patterns) {
+            key.append(kind).append(pattern.isCaseSensitive() ? 'S' : 'I').append(pattern.getExpression()).append('\0');
+        }
+    }
+
+    /**
+     * @param includes the include patterns, all the paths are included if empty.
+     * @param excludes the exclude patterns.
+     */
+    public AntPatternSet(List<AntPatternMatcher> includes, List<AntPatternMatcher> excludes) {
+        for (AntPatternMatcher include : includes) {
+            add(new Glob(include, true));
+        }
+        for (AntPatternMatcher exclude : excludes) {
+            add(new Glob(exclude, false));
+        }
+        this.hasIncludes = !includes.isEmpty();
+        this.empty = includes.isEmpty() && excludes.isEmpty();
+    }
+
+    private void add(Glob glob) {
+        Node node = root;
+        for (int i = 0; i < glob.prefix; i++) {
+            node = node.addChild(glob.chars[i]);
+        }
+        node.add(glob);
+    }
+
+    /**
+     * @return true if this set has no pattern, so it accepts every path.
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Check a path against the patterns.
+     * @param path the '/' separated path.
+     * @return true if the path is included and not excluded.
+     */
+    public boolean matches(String path) {
+        if (empty) {
+            return true;
+        }
+        boolean included = !hasIncludes;
+        Node node = root;
+        int depth = 0;
+        while (node != null) {
+            Glob[] globs = node.globs;
+            for (int i = 0; i < globs.length; i++) {
+                Glob glob = globs[i];
+                if (glob.include && included) {
+                    continue;
+                }
+                if (glob.matches(glob.prefix, path, depth)) {
+                    if (!glob.include) {
+                        return false;
+                    }
+                    included = true;
+                }
+            }
+            if (depth == path.length()) {
+                break;
+            }
+            node = node.getChild(path.charAt(depth++));
+        }
+        return included;
+    }
+
+    private static int endOfName(String path, int i) {
+        int end = path.indexOf('/', i);
+        return end < 0 ? path.length() : end;
+    }
+}
@@ -81,6 +81,37 @@ public class AbstractBCCheckerUnitTest {
         Logger.getLogger(MethodDumper.class.getName()).removeHandler(handler);
     }
     
+    /**
+     * @return the reference test artifact.
+     */
+    protected File getReference() {
+        return reference;
+    }
+
+    /**
+     * @return the new version of the test artifact.
+     */
+    protected File getNewVersion() {
+        return newVersion;
+    }
+
+    /**
+     * @return the reference test artifact packaged as a jar, whatever the
+     *         packaging of the test artifacts.
+     * @throws IOException
+     */
+    protected File getReferenceJar() throws IOException {
+        return Fixtures.jar(reference);
+    }
+
+    /**
+     * @return the new version of the test artifact packaged as a jar.
+     * @throws IOException
+     */
+    protected File getNewVersionJar() throws IOException {
+        return Fixtures.jar(newVersion);
+    }
+
     /**
      * Run a check with specified rule on a set of class referenced by the includes list.
      * A reporter is returned. It can be used to assert the result of the check.
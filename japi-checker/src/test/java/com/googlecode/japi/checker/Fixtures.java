@@ -0,0 +1,221 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+/**
+ * Files used by the tests: the test artifacts packaged either way, and
+ * class files written to temporary directories.
+ *
+ * The test artifacts are jars when the project is packaged, but their
+ * target/classes directories when only the tests are run, so the tests
+ * depending on the packaging must get it from here.
+ */
+final class Fixtures {
+    private static final Map<File, File> JARS = new HashMap<File, File>();
+
+    private Fixtures() {
+    }
+
+    /**
+     * Get an artifact as a jar, the directories are packaged once into a
+     * temporary jar.
+     * @param artifact the artifact, a jar or a directory.
+     * @return the jar.
+     * @throws IOException
+     */
+    static synchronized File jar(File artifact) throws IOException {
+        if (artifact.isFile()) {
+            return artifact;
+        }
+        File jar = JARS.get(artifact);
+        if (jar == null) {
+            jar = File.createTempFile("japi-checker-", ".jar");
+            jar.deleteOnExit();
+            ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar));
+            try {
+                addEntries(zos, artifact, "");
+            } finally {
+                zos.close();
+            }
+            JARS.put(artifact, jar);
+        }
+        return jar;
+    }
+
+    /**
+     * Write a temporary jar.
+     * @param entries the content of the entries by name, in order.
+     * @return the jar.
+     * @throws IOException
+     */
+    static File jar(Map<String, byte[]> entries) throws IOException {
+        File jar = File.createTempFile("japi-checker-", ".jar");
+        jar.deleteOnExit();
+        ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(jar));
+        try {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zos.putNextEntry(new ZipEntry(entry.getKey()));
+                zos.write(entry.getValue());
+                zos.closeEntry();
+            }
+        } finally {
+            zos.close();
+        }
+        return jar;
+    }
+
+    /**
+     * Extract the class files of an artifact into a new temporary
+     * directory, to be removed using {@link #delete(File)}.
+     * @param artifact the artifact, a jar or a directory.
+     * @return the directory.
+     * @throws IOException
+     */
+    static File directory(File artifact) throws IOException {
+        File dir = createTempDirectory();
+        ZipArchive zip = ZipArchive.open(jar(artifact));
+        try {
+            for (String name : zip.getEntryNames()) {
+                if (name.endsWith(".class")) {
+                    write(new File(dir, name), zip.read(name));
+                }
+            }
+        } finally {
+            zip.close();
+        }
+        return dir;
+    }
+
+    /**
+     * Write class files into a new temporary directory, to be removed
+     * using {@link #delete(File)}.
+     * @param classFiles the content of the class files by entry name.
+     * @return the directory.
+     * @throws IOException
+     */
+    static File directory(Map<String, byte[]> classFiles) throws IOException {
+        File dir = createTempDirectory();
+        for (Map.Entry<String, byte[]> entry : classFiles.entrySet()) {
+            write(new File(dir, entry.getKey()), entry.getValue());
+        }
+        return dir;
+    }
+
+    /**
+     * Create the class file of an empty public class.
+     * @param name the class name.
+     * @param superName the super class name.
+     * @return the content of the class file.
+     */
+    static byte[] classFile(String name, String superName) {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, name, null, superName, null);
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * @return a new empty temporary directory.
+     * @throws IOException
+     */
+    private static File createTempDirectory() throws IOException {
+        File dir = File.createTempFile("japi-checker-", "");
+        assertTrue(dir.delete());
+        assertTrue(dir.mkdir());
+        return dir;
+    }
+
+    /**
+     * Write a file, creating its parent directories.
+     * @param file the file.
+     * @param data the content.
+     * @return the file.
+     * @throws IOException
+     */
+    static File write(File file, byte[] data) throws IOException {
+        if (!file.getParentFile().isDirectory()) {
+            assertTrue(file.getParentFile().mkdirs());
+        }
+        OutputStream os = new FileOutputStream(file);
+        try {
+            os.write(data);
+        } finally {
+            os.close();
+        }
+        return file;
+    }
+
+    /**
+     * Delete a file or a directory tree.
+     * @param file the file.
+     */
+    static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        assertTrue(file.delete());
+    }
+
+    private static void addEntries(ZipOutputStream zos, File dir, String prefix) throws IOException {
+        String[] names = dir.list();
+        if (names == null) {
+            throw new IOException("Could not list " + dir);
+        }
+        // sorted, so the jar is the same whatever the file system.
+        Arrays.sort(names);
+        for (String name : names) {
+            File file = new File(dir, name);
+            if (file.isDirectory()) {
+                zos.putNextEntry(new ZipEntry(prefix + name + "/"));
+                zos.closeEntry();
+                addEntries(zos, file, prefix + name + "/");
+            } else {
+                zos.putNextEntry(new ZipEntry(prefix + name));
+                InputStream is = new FileInputStream(file);
+                try {
+                    byte[] buffer = new byte[2048];
+                    int count = 0;
+                    while ((count = is.read(buffer)) != -1) {
+                        zos.write(buffer, 0, count);
+                    }
+                } finally {
+                    is.close();
+                }
+                zos.closeEntry();
+            }
+        }
+    }
+}
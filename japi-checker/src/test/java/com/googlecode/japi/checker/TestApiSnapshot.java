@@ -0,0 +1,186 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import com.googlecode.japi.checker.Reporter.Report;
+import com.googlecode.japi.checker.model.AnnotationData;
+import com.googlecode.japi.checker.model.ClassData;
+import com.googlecode.japi.checker.model.FieldData;
+import com.googlecode.japi.checker.model.JavaItem;
+import com.googlecode.japi.checker.model.MethodData;
+import com.googlecode.japi.checker.rules.AllRules;
+import com.googlecode.japi.checker.rules.CheckJSR305;
+
+public class TestApiSnapshot extends AbstractBCCheckerUnitTest {
+
+    @Test
+    public void testSnapshotAsReference() throws IOException {
+        File snapshot = export(ParseProfile.FULL);
+        assertTrue(ApiSnapshot.isSnapshot(snapshot));
+        assertFalse(ApiSnapshot.isSnapshot(getReference()));
+        List<String> expected = issues(getReference());
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, issues(snapshot));
+    }
+
+    @Test
+    public void testSnapshotContent() throws IOException {
+        File snapshot = export(ParseProfile.FULL);
+        DefaultClassDataLoader expected = new DefaultClassDataLoader();
+        expected.read(getReference().toURI());
+        ClassDataLoader actual = new SnapshotClassDataLoaderFactory(null, ParseProfile.FULL).createClassDataLoader();
+        actual.read(snapshot.toURI());
+        assertEquals(expected.getClasses().size(), actual.getClasses(snapshot.toURI()).size());
+        for (ClassData clazz : expected.getClasses()) {
+            assertSame(clazz, actual.fromName(clazz.getName()));
+        }
+    }
+
+    @Test(expected = ReadClassException.class)
+    public void testSnapshotProfileMustSatisfyTheRules() throws IOException {
+        File snapshot = export(ParseProfile.API_ONLY);
+        ClassDataLoader loader = new SnapshotClassDataLoaderFactory(null, ParseProfile.ALL_MEMBERS).createClassDataLoader();
+        loader.read(snapshot.toURI());
+    }
+
+    @Test
+    public void testSnapshotKeepsAllAccessFlags() throws IOException {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_ENUM,
+                "a/Flags", null, "java/lang/Enum", null);
+        cw.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL | Opcodes.ACC_ENUM,
+                "VALUE", "La/Flags;", null, null).visitEnd();
+        cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE,
+                "compareTo", "(Ljava/lang/Object;)I", null, null).visitEnd();
+        cw.visitEnd();
+        File dir = Fixtures.directory(Collections.singletonMap("a/Flags.class", cw.toByteArray()));
+        try {
+            File snapshot = export(dir, ParseProfile.FULL);
+            ClassDataLoader loader = new SnapshotClassDataLoaderFactory(null, ParseProfile.FULL).createClassDataLoader();
+            loader.read(snapshot.toURI());
+            ClassData clazz = loader.fromName("a/Flags");
+            assertEquals(Opcodes.ACC_ENUM, clazz.getAccess() & Opcodes.ACC_ENUM);
+            assertEquals(Opcodes.ACC_ENUM, clazz.getFields().get(0).getAccess() & Opcodes.ACC_ENUM);
+            int bridge = Opcodes.ACC_SYNTHETIC | Opcodes.ACC_BRIDGE;
+            assertEquals(bridge, clazz.getMethods().get(0).getAccess() & bridge);
+        } finally {
+            Fixtures.delete(dir);
+        }
+    }
+
+    @Test
+    public void testSnapshotReadByTheCheckerFactory() throws IOException {
+        File snapshot = export(ParseProfile.FULL);
+        final List<ClassDataLoader> loaders = new ArrayList<ClassDataLoader>();
+        BCChecker checker = new BCChecker();
+        checker.setClassDataLoaderFactory(new SnapshotClassDataLoaderFactory() {
+            @Override
+            public ClassDataLoader createClassDataLoader() {
+                ClassDataLoader loader = super.createClassDataLoader();
+                loaders.add(loader);
+                return loader;
+            }
+        });
+        checker.setRules(new ArrayList<Rule>());
+        checker.checkBacwardCompatibility(snapshot, getNewVersion());
+        // both the reference and the new artifact loaders.
+        assertEquals(2, loaders.size());
+    }
+
+    private File export(ParseProfile profile) throws IOException {
+        return export(getReference(), profile);
+    }
+
+    private File export(File reference, ParseProfile profile) throws IOException {
+        File snapshot = File.createTempFile("japi-checker-", ".snapshot");
+        snapshot.deleteOnExit();
+        BCChecker checker = new BCChecker();
+        checker.setParseProfile(profile);
+        checker.exportReferenceSnapshot(reference, snapshot);
+        return snapshot;
+    }
+
+    private List<String> issues(File reference) throws IOException {
+        BCChecker checker = new BCChecker();
+        BasicReporter reporter = new BasicReporter();
+        List<Rule> rules = new ArrayList<Rule>();
+        rules.add(new AllRules());
+        rules.add(new CheckJSR305());
+        checker.setRules(rules);
+        checker.setReporter(reporter);
+        checker.checkBacwardCompatibility(reference, getNewVersion());
+        List<String> result = new ArrayList<String>();
+        for (Report report : reporter.getMessages()) {
+            if (report.getSeverity() != Severity.INFO) {
+                result.add(report.getSeverity() + ": " + report.getSource() + ": " + report.getMessage());
+            }
+        }
+        return result;
+    }
+
+    private static void assertSame(ClassData expected, ClassData actual) {
+        assertItem(expected, actual);
+        assertEquals(expected.getSignature(), actual.getSignature());
+        assertEquals(expected.getSuperName(), actual.getSuperName());
+        assertEquals(expected.getInterfaces(), actual.getInterfaces());
+        assertEquals(expected.getVersion(), actual.getVersion());
+        assertEquals(expected.getSource(), actual.getSource());
+        assertEquals(expected.getFields().size(), actual.getFields().size());
+        for (int i = 0; i < expected.getFields().size(); i++) {
+            FieldData field = expected.getFields().get(i);
+            assertItem(field, actual.getFields().get(i));
+            assertEquals(field.getDescriptor(), actual.getFields().get(i).getDescriptor());
+            assertEquals(field.getSignature(), actual.getFields().get(i).getSignature());
+            assertEquals(field.getValue(), actual.getFields().get(i).getValue());
+        }
+        assertEquals(expected.getMethods().size(), actual.getMethods().size());
+        for (int i = 0; i < expected.getMethods().size(); i++) {
+            MethodData method = expected.getMethods().get(i);
+            assertItem(method, actual.getMethods().get(i));
+            assertEquals(method.getDescriptor(), actual.getMethods().get(i).getDescriptor());
+            assertEquals(method.getSignature(), actual.getMethods().get(i).getSignature());
+            assertEquals(method.getExceptions(), actual.getMethods().get(i).getExceptions());
+            // the reporters only print the line numbers of the new version.
+            assertEquals(0, actual.getMethods().get(i).getLineNumber());
+        }
+    }
+
+    private static void assertItem(JavaItem expected, JavaItem actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getAccess(), actual.getAccess());
+        assertEquals(expected.getAnnotations().size(), actual.getAnnotations().size());
+        for (int i = 0; i < expected.getAnnotations().size(); i++) {
+            AnnotationData annotation = expected.getAnnotations().get(i);
+            assertEquals(annotation.getDesc(), actual.getAnnotations().get(i).getDesc());
+            assertEquals(annotation.isVisible(), actual.getAnnotations().get(i).isVisible());
+            assertEquals(annotation.keySet(), actual.getAnnotations().get(i).keySet());
+        }
+    }
+}
@@ -16,16 +16,36 @@
 package com.googlecode.japi.checker;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
 
 import com.googlecode.japi.checker.Severity;
+import com.googlecode.japi.checker.Reporter.Report;
+import com.googlecode.japi.checker.model.JavaItem;
+import com.googlecode.japi.checker.rules.AllRules;
 import com.googlecode.japi.checker.rules.CheckChangeOfScope;
 import com.googlecode.japi.checker.rules.CheckFieldChangeOfType;
 import com.googlecode.japi.checker.rules.CheckFieldChangeToStatic;
 import com.googlecode.japi.checker.rules.CheckFieldChangeToTransient;
 import com.googlecode.japi.checker.rules.CheckInheritanceChanges;
+import com.googlecode.japi.checker.rules.CheckJSR305;
 import com.googlecode.japi.checker.rules.CheckMethodChangedToFinal;
 import com.googlecode.japi.checker.rules.CheckMethodChangedToStatic;
 import com.googlecode.japi.checker.rules.CheckMethodExceptions;
@@ -56,6 +76,35 @@ public class TestBCChecker extends AbstractBCCheckerUnitTest {
         reporter.assertContains(Severity.ERROR, "Public class com/googlecode/japi/checker/tests/RemovedClass has been removed.");
     }
 
+    @Test
+    public void testOnlyRemovedPublicClassesAreReported() throws IOException {
+        Map<String, byte[]> reference = new LinkedHashMap<String, byte[]>();
+        reference.put("a/Kept.class", classFile("a/Kept", Opcodes.ACC_PUBLIC));
+        reference.put("a/Removed.class", classFile("a/Removed", Opcodes.ACC_PUBLIC));
+        reference.put("a/Hidden.class", classFile("a/Hidden", 0));
+        Map<String, byte[]> newVersion = new LinkedHashMap<String, byte[]>();
+        newVersion.put("a/Kept.class", classFile("a/Kept", Opcodes.ACC_PUBLIC));
+        BasicReporter reporter = check(new ArrayList<Rule>(), Fixtures.jar(reference), Fixtures.jar(newVersion));
+        assertEquals(1, reporter.count(Severity.ERROR));
+        reporter.assertContains(Severity.ERROR, "Public class a/Removed has been removed.");
+    }
+
+    @Test
+    public void testDuplicateClassFirstOccurrenceWins() throws IOException {
+        File reference = Fixtures.jar(Collections.singletonMap("a/A.class", classFile("a/A", Opcodes.ACC_PUBLIC)));
+        List<Rule> rules = new ArrayList<Rule>();
+        rules.add(new ClassChangedToFinal());
+        // the same class is defined twice, only the first one is paired.
+        Map<String, byte[]> newVersion = new LinkedHashMap<String, byte[]>();
+        newVersion.put("a/A.class", classFile("a/A", Opcodes.ACC_PUBLIC));
+        newVersion.put("b/A.class", classFile("a/A", Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL));
+        assertEquals(0, check(rules, reference, Fixtures.jar(newVersion)).count(Severity.ERROR));
+        newVersion = new LinkedHashMap<String, byte[]>();
+        newVersion.put("a/A.class", classFile("a/A", Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL));
+        newVersion.put("b/A.class", classFile("a/A", Opcodes.ACC_PUBLIC));
+        assertEquals(1, check(rules, reference, Fixtures.jar(newVersion)).count(Severity.ERROR));
+    }
+
     @Test
     public void testClassToInterface() throws InstantiationException, IllegalAccessException, IOException {
         BasicReporter reporter = check(ClassChangedToInterface.class, "**/ClassToInterface.class");
@@ -283,4 +332,255 @@ public class TestBCChecker extends AbstractBCCheckerUnitTest {
         reporter.assertContains(Severity.ERROR, "The parameter of the publicArityToArray has been changed from variable arity to array");
         reporter.assertContains(Severity.ERROR, "The parameter of the protectedArityToArray has been changed from variable arity to array");
     }
+
+    @Test
+    public void testConcurrentCheckKeepsReportOrder() throws IOException {
+        List<Rule> rules = new ArrayList<Rule>();
+        rules.add(new AllRules());
+        rules.add(new CheckJSR305());
+        List<String> expected = check(rules, null);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertEquals(expected, check(rules, executor));
+            // a single serial rule makes the whole check serial.
+            final List<Thread> threads = new ArrayList<Thread>();
+            rules.add(new SerialRule() {
+                @Override
+                public void checkBackwardCompatibility(Reporter reporter, JavaItem reference, JavaItem newItem) {
+                    threads.add(Thread.currentThread());
+                }
+            });
+            assertEquals(expected, check(rules, executor));
+            assertEquals(Collections.nCopies(threads.size(), Thread.currentThread()), threads);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testSerialRuleInCompositeKeepsCheckSerial() throws IOException {
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        final Rule serial = new SerialRule() {
+            @Override
+            public void checkBackwardCompatibility(Reporter reporter, JavaItem reference, JavaItem newItem) {
+                threads.add(Thread.currentThread());
+            }
+        };
+        List<Rule> rules = new ArrayList<Rule>();
+        rules.add(new AllRules());
+        rules.add(new CompositeRule() {
+            @Override
+            public void checkBackwardCompatibility(Reporter reporter, JavaItem reference, JavaItem newItem) {
+                serial.checkBackwardCompatibility(reporter, reference, newItem);
+            }
+
+            @Override
+            public List<Rule> getRules() {
+                return Collections.singletonList(serial);
+            }
+        });
+        List<String> expected = check(rules, null);
+        threads.clear();
+        assertEquals(expected, check(rules, new ThreadPerTaskExecutor()));
+        assertFalse(threads.isEmpty());
+        assertEquals(Collections.nCopies(threads.size(), Thread.currentThread()), threads);
+    }
+
+    @Test
+    public void testStreamingReportsTheSameIssues() throws IOException {
+        List<Rule> rules = new ArrayList<Rule>();
+        rules.add(new AllRules());
+        rules.add(new CheckJSR305());
+        List<String> expected = issues(check(rules, null, false));
+        List<String> reports = check(rules, null, true);
+        assertTrue(reports.get(0).startsWith("INFO: null: Streaming reference artifact: "));
+        List<String> streamed = issues(reports);
+        // only the order of the classes differs.
+        Collections.sort(expected);
+        Collections.sort(streamed);
+        assertEquals(expected, streamed);
+    }
+
+    @Test
+    public void testPipelinedStreamingKeepsReportOrder() throws IOException {
+        assertPipelined(true);
+    }
+
+    @Test
+    public void testPipelinedCheckKeepsReportOrder() throws IOException {
+        assertPipelined(false);
+    }
+
+    private void assertPipelined(boolean streaming) throws IOException {
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        List<Rule> rules = new ArrayList<Rule>();
+        rules.add(new AllRules());
+        rules.add(new CheckJSR305());
+        rules.add(new Rule() {
+            @Override
+            public void checkBackwardCompatibility(Reporter reporter, JavaItem reference, JavaItem newItem) {
+                threads.add(Thread.currentThread());
+            }
+        });
+        List<String> expected = check(rules, null, streaming);
+        // each class is parsed and checked by its own stage, off this thread.
+        ThreadPerTaskExecutor executor = new ThreadPerTaskExecutor();
+        threads.clear();
+        assertEquals(expected, check(rules, executor, streaming));
+        assertTrue(executor.count > 0);
+        assertFalse(threads.isEmpty());
+        assertFalse(threads.contains(Thread.currentThread()));
+        // the serial rules are checked on the calling thread, the parsing is still pipelined.
+        rules.add(new SerialRule() {
+            @Override
+            public void checkBackwardCompatibility(Reporter reporter, JavaItem reference, JavaItem newItem) {
+            }
+        });
+        executor.count = 0;
+        threads.clear();
+        assertEquals(expected, check(rules, executor, streaming));
+        assertTrue(executor.count > 0);
+        assertFalse(threads.isEmpty());
+        assertEquals(Collections.nCopies(threads.size(), Thread.currentThread()), threads);
+    }
+
+    /**
+     * Runs each task on a new thread and waits for it, so the stages are
+     * always run before the checker completes them.
+     */
+    private static final class ThreadPerTaskExecutor implements Executor {
+        private int count;
+
+        @Override
+        public void execute(Runnable task) {
+            Thread thread = new Thread(task);
+            thread.start();
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            count++;
+        }
+    }
+
+    @Test
+    public void testConcurrentLoadingKeepsMessageOrder() throws IOException {
+        File broken = File.createTempFile("japi-checker-", ".jar");
+        broken.deleteOnExit();
+        FileOutputStream os = new FileOutputStream(broken);
+        try {
+            os.write("not an archive".getBytes("UTF-8"));
+        } finally {
+            os.close();
+        }
+        List<Rule> rules = new ArrayList<Rule>();
+        rules.add(new AllRules());
+        List<File> classpath = new ArrayList<File>();
+        classpath.add(getNewVersion());
+        classpath.add(broken);
+        classpath.add(getReference());
+        List<String> expected = check(rules, null, classpath, true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            assertEquals(expected, check(rules, executor, classpath, true));
+            try {
+                check(rules, executor, classpath, false);
+                fail("The broken dependency must fail the check.");
+            } catch (ReadClassException e) {
+                try {
+                    check(rules, null, classpath, false);
+                    fail("The broken dependency must fail the check.");
+                } catch (ReadClassException expectedError) {
+                    assertEquals(expectedError.getMessage(), e.getMessage());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDependencyReadOnDemandErrors() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+        entries.put("java/lang/Object.class", new byte[] {1, 2, 3});
+        List<Rule> rules = new ArrayList<Rule>();
+        rules.add(new AllRules());
+        List<File> classpath = Collections.singletonList(Fixtures.jar(entries));
+        List<String> reports = check(rules, null, classpath, true);
+        assertTrue(reports.get(reports.size() - 1).startsWith("WARNING: null: Error occurred while loading class java/lang/Object"));
+        try {
+            check(rules, null, classpath, false);
+            fail("The broken dependency class must fail the check.");
+        } catch (ReadClassException e) {
+            assertTrue(e.getMessage().startsWith("Error occurred while loading class java/lang/Object"));
+        }
+    }
+
+    private static byte[] classFile(String name, int access) {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(Opcodes.V1_6, access, name, null, "java/lang/Object", null);
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static BasicReporter check(List<Rule> rules, File reference, File newVersion) throws IOException {
+        BCChecker checker = new BCChecker();
+        BasicReporter reporter = new BasicReporter();
+        checker.setRules(rules);
+        checker.setReporter(reporter);
+        checker.checkBacwardCompatibility(reference, newVersion);
+        return reporter;
+    }
+
+    private static List<String> issues(List<String> reports) {
+        List<String> result = new ArrayList<String>();
+        for (String report : reports) {
+            if (!report.startsWith(Severity.INFO.toString())) {
+                result.add(report);
+            }
+        }
+        return result;
+    }
+
+    private List<String> check(List<Rule> rules, Executor executor) throws IOException {
+        return check(rules, executor, false);
+    }
+
+    private List<String> check(List<Rule> rules, Executor executor, boolean streaming) throws IOException {
+        BCChecker checker = new BCChecker();
+        checker.setStreaming(streaming);
+        if (streaming) {
+            // only archives are streamed.
+            return check(checker, rules, executor, getReferenceJar(), getNewVersionJar());
+        }
+        return check(checker, rules, executor);
+    }
+
+    private List<String> check(List<Rule> rules, Executor executor, List<File> classpath, boolean warn) throws IOException {
+        BCChecker checker = new BCChecker();
+        checker.setWarnOnDependencyLoadingError(warn);
+        for (File file : classpath) {
+            checker.addToReferenceClasspath(file);
+            checker.addToNewArtifactClasspath(file);
+        }
+        return check(checker, rules, executor);
+    }
+
+    private List<String> check(BCChecker checker, List<Rule> rules, Executor executor) throws IOException {
+        return check(checker, rules, executor, getReference(), getNewVersion());
+    }
+
+    private List<String> check(BCChecker checker, List<Rule> rules, Executor executor, File reference, File newVersion) throws IOException {
+        BasicReporter reporter = new BasicReporter();
+        checker.setRules(rules);
+        checker.setReporter(reporter);
+        checker.setExecutor(executor);
+        checker.checkBacwardCompatibility(reference, newVersion);
+        List<String> result = new ArrayList<String>();
+        for (Report report : reporter.getMessages()) {
+            result.add(report.getSeverity() + ": " + report.getSource() + ": " + report.getMessage());
+        }
+        return result;
+    }
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.googlecode.japi.checker.model.ClassData;
+import com.googlecode.japi.checker.utils.AntPatternMatcher;
+
+public class TestClassFilter extends AbstractBCCheckerUnitTest {
+    private static final String CLASSNAME = "com/googlecode/japi/checker/tests/ClassToAbstract";
+
+    @Test
+    public void testFilteredRead() throws IOException {
+        List<AntPatternMatcher> includes = Arrays.asList(new AntPatternMatcher("**/inheritance/**"));
+        DefaultClassDataLoader loader = new DefaultClassDataLoader();
+        loader.read(getReference().toURI(), new ClassFilter(includes, Collections.<AntPatternMatcher>emptyList()));
+        List<ClassData> classes = loader.getClasses(getReference().toURI());
+        assertFalse(classes.isEmpty());
+        for (String name : names(classes)) {
+            assertTrue(name, name.contains("/inheritance/"));
+        }
+        // the skipped classes are still resolved by name.
+        assertFalse(names(classes).contains(CLASSNAME));
+        assertEquals(CLASSNAME, loader.fromName(CLASSNAME).getName());
+        assertSame(loader.fromName(CLASSNAME), loader.fromName(CLASSNAME));
+    }
+
+    @Test
+    public void testFilteredDirectoryIsPruned() throws IOException {
+        Map<String, byte[]> classFiles = new LinkedHashMap<String, byte[]>();
+        classFiles.put("a/impl/Base.class", Fixtures.classFile("a/impl/Base", "java/lang/Object"));
+        classFiles.put("a/api/Api.class", Fixtures.classFile("a/api/Api", "a/impl/Base"));
+        // reading it would fail the whole directory.
+        classFiles.put("a/impl/Broken.class", new byte[] {1, 2, 3});
+        File dir = Fixtures.directory(classFiles);
+        try {
+            DefaultClassDataLoader loader = new DefaultClassDataLoader();
+            loader.read(dir.toURI(), new ClassFilter(Arrays.asList(new AntPatternMatcher("a/api/**")),
+                    Collections.<AntPatternMatcher>emptyList()));
+            assertEquals(Arrays.asList("a/api/Api"), names(loader.getClasses(dir.toURI())));
+            assertTrue(ClassHierarchy.of(loader).isResolved(ClassHierarchy.of(loader).getId("a/impl/Base")));
+            assertTrue(ClassHierarchy.of(loader).isSubclassOf("a/api/Api", "a/impl/Base"));
+            assertNull(loader.fromName("a/impl/Broken"));
+            assertNull(loader.fromName("a/impl/Broken"));
+            // the unreadable class is reported once.
+            List<ReadClassException> errors = loader.takeReadErrors();
+            assertEquals(1, errors.size());
+            assertTrue(errors.get(0).getMessage().startsWith("Error occurred while loading class a/impl/Broken"));
+            // a name missing from the pruned directories is not probed again.
+            assertNull(loader.fromName("a/impl/Late"));
+            Fixtures.write(new File(dir, "a/impl/Late.class"), Fixtures.classFile("a/impl/Late", "java/lang/Object"));
+            assertNull(loader.fromName("a/impl/Late"));
+        } finally {
+            Fixtures.delete(dir);
+        }
+    }
+
+    private static List<String> names(List<ClassData> classes) {
+        List<String> result = new ArrayList<String>();
+        for (ClassData clazz : classes) {
+            result.add(clazz.getName());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+
+import com.googlecode.japi.checker.model.ClassData;
+import com.googlecode.japi.checker.utils.AntPatternMatcher;
+
+public class TestClassHierarchy extends AbstractBCCheckerUnitTest {
+    @Test
+    public void testClassHierarchy() throws IOException {
+        DefaultClassDataLoader loader = new DefaultClassDataLoader();
+        loader.read(getNewVersion().toURI());
+        ClassHierarchy hierarchy = ClassHierarchy.of(loader);
+        assertSame(hierarchy, ClassHierarchy.of(loader));
+        String pkg = "com/googlecode/japi/checker/tests/";
+        assertTrue(hierarchy.isSubclassOf(pkg + "exceptions/MyNewException", "java/lang/Exception"));
+        assertTrue(hierarchy.isSubclassOf(pkg + "exceptions/MyNewException", pkg + "exceptions/MyNewException"));
+        assertFalse(hierarchy.isSubclassOf(pkg + "exceptions/MyException", pkg + "exceptions/MyNewException"));
+        assertTrue(hierarchy.isSubclassOf(pkg + "inheritance/changetree/A", pkg + "inheritance/changetree/B"));
+        // interfaces are only part of the super types.
+        String iface = pkg + "inheritance/refactoring/IResource";
+        assertFalse(hierarchy.isSubclassOf(iface, pkg + "inheritance/refactoring/Closeable"));
+        assertTrue(hierarchy.isSubtypeOf(iface, pkg + "inheritance/refactoring/Closeable"));
+        int id = hierarchy.getId(iface);
+        assertEquals(iface, hierarchy.getName(id));
+        assertTrue(hierarchy.isResolved(id));
+        assertEquals(1, hierarchy.getInterfaces(id).length);
+        // java/lang/Object is not part of the loader, but still in the graph.
+        int object = hierarchy.getSuperClass(id);
+        assertEquals("java/lang/Object", hierarchy.getName(object));
+        assertFalse(hierarchy.isResolved(object));
+        assertEquals(3, hierarchy.getSuperTypes(id).cardinality());
+        // reading more content drops the hierarchy.
+        loader.read(getReference().toURI());
+        assertFalse(hierarchy == ClassHierarchy.of(loader));
+    }
+
+    @Test
+    public void testDeepClassHierarchy() throws Exception {
+        final int depth = 100000;
+        // c0 extends c1 ... extends c99999, each class also implements i<n>.
+        final ClassDataLoader loader = new ClassDataLoader() {
+            @Override
+            public void read(URI uri) {
+            }
+            @Override
+            public ClassData fromName(String name) {
+                int index = Integer.parseInt(name.substring(1));
+                if (name.charAt(0) == 'i' || index == depth - 1) {
+                    return new ClassData(this, null, Opcodes.ACC_PUBLIC, name, null, null, new String[0], Opcodes.V1_6);
+                }
+                return new ClassData(this, null, Opcodes.ACC_PUBLIC, name, null, "c" + (index + 1), new String[] {"i" + index}, Opcodes.V1_6);
+            }
+            @Override
+            public List<ClassData> getClasses() {
+                return Collections.emptyList();
+            }
+            @Override
+            public List<ClassData> getClasses(URI uri) {
+                return Collections.emptyList();
+            }
+            @Override
+            public List<ClassData> getClasses(URI uri, List<AntPatternMatcher> includes, List<AntPatternMatcher> excludes) {
+                return Collections.emptyList();
+            }
+        };
+        final ClassHierarchy hierarchy = new ClassHierarchy(loader);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int i = 0; i < 4; i++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        return hierarchy.isSubclassOf("c0", "c" + (depth - 1)) && hierarchy.isSubtypeOf("c0", "i" + (depth - 2));
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(2 * depth - 1, hierarchy.size());
+        assertEquals(2 * depth - 1, hierarchy.getSuperTypes(hierarchy.getId("c0")).cardinality());
+        assertFalse(hierarchy.isSubtypeOf("c1", "i0"));
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2012 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.objectweb.asm.Opcodes;
+
+import com.googlecode.japi.checker.model.ClassData;
+import com.googlecode.japi.checker.model.FieldData;
+import com.googlecode.japi.checker.model.MethodData;
+
+public class TestDefaultClassDataLoader extends AbstractBCCheckerUnitTest {
+    private static final String CLASSNAME = "com/googlecode/japi/checker/tests/ClassToAbstract";
+
+    @Test
+    public void testFromNameFollowsClasspathOrder() throws IOException {
+        DefaultClassDataLoader loader = new DefaultClassDataLoader();
+        loader.read(getReference().toURI());
+        loader.read(getNewVersion().toURI());
+        ClassData clazz = loader.fromName(CLASSNAME);
+        assertNotNull(clazz);
+        // ClassToAbstract is only abstract in the new version.
+        assertFalse(clazz.isAbstract());
+        assertNull(loader.fromName("com/googlecode/japi/checker/tests/DoesNotExist"));
+    }
+
+    @Test
+    public void testShadowedClasses() throws IOException {
+        DefaultClassDataLoader loader = new DefaultClassDataLoader();
+        loader.read(getReference().toURI());
+        loader.read(getNewVersion().toURI());
+        List<ClassData> shadowed = loader.getShadowedClasses(CLASSNAME);
+        assertEquals(1, shadowed.size());
+        assertTrue(shadowed.get(0).isAbstract());
+        assertSame(shadowed.get(0), loader.getShadowedClasses().get(CLASSNAME).get(0));
+        // RemovedClass only exists in the reference artifact.
+        assertEquals(0, loader.getShadowedClasses("com/googlecode/japi/checker/tests/RemovedClass").size());
+    }
+
+    @Test
+    public void testConcurrentReadsKeepRequestOrder() throws Exception {
+        final DefaultClassDataLoader loader = new DefaultClassDataLoader();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final File jar = getReferenceJar();
+        final JarReader reference = new JarReader(jar, loader) {
+            @Override
+            public void read() throws IOException {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e.toString());
+                }
+                super.read();
+            }
+        };
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> first = executor.submit(new Callable<Void>() {
+                public Void call() throws IOException {
+                    loader.register(jar.toURI(), reference);
+                    return null;
+                }
+            });
+            started.await();
+            // the new version is read while the reference is still being read.
+            loader.read(getNewVersion().toURI());
+            assertTrue(loader.fromName(CLASSNAME).isAbstract());
+            release.countDown();
+            first.get();
+        } finally {
+            executor.shutdown();
+        }
+        // the reference has been requested first, so it comes first.
+        assertFalse(loader.fromName(CLASSNAME).isAbstract());
+        assertTrue(loader.getShadowedClasses(CLASSNAME).get(0).isAbstract());
+    }
+
+    @Test
+    public void testConcurrentReadIsDeterministic() throws IOException {
+        File jar = getNewVersionJar();
+        DefaultClassDataLoader serial = new DefaultClassDataLoader();
+        serial.read(jar.toURI());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            DefaultClassDataLoader concurrent = new DefaultClassDataLoader(executor);
+            concurrent.read(jar.toURI());
+            assertEquals(names(serial.getClasses()), names(concurrent.getClasses()));
+            // Reading twice must give the same order.
+            concurrent.read(jar.toURI());
+            assertEquals(names(serial.getClasses()), names(concurrent.getClasses()));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testConcurrentDirectoryReadIsDeterministic() throws IOException {
+        File dir = Fixtures.directory(getNewVersion());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            DefaultClassDataLoader serial = new DefaultClassDataLoader();
+            serial.read(dir.toURI());
+            DefaultClassDataLoader concurrent = new DefaultClassDataLoader(executor);
+            concurrent.read(dir.toURI());
+            assertEquals(names(serial.getClasses()), names(concurrent.getClasses()));
+            DefaultClassDataLoader jar = new DefaultClassDataLoader();
+            jar.read(getNewVersionJar().toURI());
+            assertEquals(new TreeSet<String>(names(jar.getClasses())), new TreeSet<String>(names(concurrent.getClasses())));
+        } finally {
+            executor.shutdown();
+            Fixtures.delete(dir);
+        }
+    }
+
+    @Test
+    public void testApiOnlyProfileSkipsPrivateMembers() throws IOException {
+        String name = "com/googlecode/japi/checker/tests/CheckRemovedMethod";
+        DefaultClassDataLoader full = new DefaultClassDataLoader(null, ParseProfile.FULL);
+        full.read(getReference().toURI());
+        DefaultClassDataLoader apiOnly = new DefaultClassDataLoader(null, ParseProfile.API_ONLY);
+        apiOnly.read(getReference().toURI());
+        assertTrue(methodNames(full.fromName(name)).contains("privateMethodRemoved"));
+        assertFalse(methodNames(apiOnly.fromName(name)).contains("privateMethodRemoved"));
+        assertTrue(methodNames(apiOnly.fromName(name)).contains("protectedMethodRemoved"));
+    }
+
+    @Test
+    public void testInheritedMethods() throws IOException {
+        DefaultClassDataLoader loader = new DefaultClassDataLoader();
+        loader.read(getNewVersion().toURI());
+        ClassData iface = loader.fromName("com/googlecode/japi/checker/tests/inheritance/refactoring/IResource");
+        ClassData closeable = loader.fromName("com/googlecode/japi/checker/tests/inheritance/refactoring/Closeable");
+        MethodData close = closeable.getMethods().get(0);
+        assertSame(close, RuleHelpers.findClassMethodRecursive(iface, close));
+        assertNull(RuleHelpers.findClassMethodRecursive(closeable, iface.getMethods().get(0)));
+        List<String> names = new ArrayList<String>();
+        for (MethodData method : RuleHelpers.getClassMethodRecursive(iface)) {
+            names.add(method.getName());
+        }
+        assertEquals(Arrays.asList("open", "close"), names);
+    }
+
+    @Test
+    public void testMemberIndexes() throws IOException {
+        DefaultClassDataLoader loader = new DefaultClassDataLoader();
+        loader.read(getReference().toURI());
+        ClassData clazz = loader.fromName("com/googlecode/japi/checker/tests/PublicScopeFieldTestCases");
+        for (FieldData field : clazz.getFields()) {
+            assertSame(field, clazz.getField(field.getName()));
+        }
+        assertNull(clazz.getField("doesNotExist"));
+        for (MethodData method : clazz.getMethods()) {
+            assertSame(method, clazz.getMethod(method.getName(), method.getDescriptor()));
+            assertTrue(clazz.getMethods(method.getName()).contains(method));
+        }
+        assertNull(clazz.getMethod("<init>", "(I)V"));
+        assertEquals(0, clazz.getMethods("doesNotExist").size());
+    }
+
+    @Test
+    public void testPackedAccessFlags() {
+        DefaultClassDataLoader loader = new DefaultClassDataLoader();
+        ClassData clazz = new ClassData(loader, null, Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "a/A", null,
+                "java/lang/Object", new String[0], Opcodes.V1_6);
+        MethodData method = new MethodData(loader, clazz, Opcodes.ACC_PROTECTED | Opcodes.ACC_VARARGS, "m",
+                "([Ljava/lang/String;)V", null, null);
+        FieldData field = new FieldData(loader, clazz, Opcodes.ACC_PRIVATE | Opcodes.ACC_TRANSIENT, "f", "I", null, null);
+        MethodData other = new MethodData(loader, clazz, Opcodes.ACC_STATIC, "n", "()V", null, new String[0]);
+        assertEquals(Scope.PUBLIC, clazz.getVisibility());
+        assertTrue(clazz.isAbstract());
+        assertEquals(Scope.PROTECTED, method.getVisibility());
+        assertTrue(method.isVariableArity());
+        assertFalse(method.isTransient());
+        assertEquals(Scope.PRIVATE, field.getVisibility());
+        assertTrue(field.isTransient());
+        assertFalse(field.isVariableArity());
+        assertEquals(Scope.NO_SCOPE, other.getVisibility());
+        assertTrue(other.isStatic());
+        assertEquals(Opcodes.ACC_PROTECTED | Opcodes.ACC_VARARGS, method.getAccess());
+        // members use the loader of their class, if any, and empty lists are shared.
+        assertSame(loader, method.getClassDataLoader());
+        assertSame(loader, new FieldData(loader, null, Opcodes.ACC_PUBLIC, "g", "I", null, null).getClassDataLoader());
+        assertSame(method.getExceptions(), other.getExceptions());
+        assertSame(method.getAnnotations(), field.getAnnotations());
+        assertTrue(method.getAnnotations().isEmpty());
+    }
+
+    private static List<String> methodNames(ClassData clazz) {
+        List<String> result = new ArrayList<String>();
+        for (MethodData method : clazz.getMethods()) {
+            result.add(method.getName());
+        }
+        return result;
+    }
+
+    private static List<String> names(List<ClassData> classes) {
+        List<String> result = new ArrayList<String>();
+        for (ClassData clazz : classes) {
+            result.add(clazz.getName());
+        }
+        return result;
+    }
+}
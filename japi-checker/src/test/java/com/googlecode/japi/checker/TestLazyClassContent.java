@@ -0,0 +1,160 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import com.googlecode.japi.checker.model.AnnotationData;
+import com.googlecode.japi.checker.model.ClassData;
+import com.googlecode.japi.checker.model.MethodData;
+
+public class TestLazyClassContent extends AbstractBCCheckerUnitTest {
+    private static final String CLASSNAME = "com/googlecode/japi/checker/tests/ClassToAbstract";
+
+    @Test
+    public void testLazyAnnotationValues() throws IOException {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, "a/Annotated", null, "java/lang/Object", null);
+        AnnotationVisitor av = cw.visitAnnotation("La/Values;", true);
+        av.visit("count", 3);
+        av.visitEnum("kind", "La/Kind;", "ONE");
+        av.visit("name", "value");
+        av.visit("ids", new int[] {1, 2});
+        av.visit("type", Type.getType("Ljava/lang/String;"));
+        av.visit("big", Long.MAX_VALUE);
+        av.visit("ratio", 0.5d);
+        av.visit("text", "caf\u00e9 \u20ac");
+        av.visit("letters", new char[] {'a', '\u00e9'});
+        av.visitEnd();
+        cw.visitAnnotation("La/Marker;", false).visitEnd();
+        cw.visitField(Opcodes.ACC_PUBLIC, "f", "I", null, null).visitAnnotation("La/Values;", true).visitEnd();
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "m", "()V", null, null);
+        av = mv.visitAnnotation("La/Values;", false);
+        av.visit("flag", true);
+        av.visitEnd();
+        mv.visitAnnotation("Ljavax/annotation/Nonnull;", true).visitEnd();
+        mv.visitEnd();
+        cw.visitEnd();
+
+        DefaultClassDataLoader loader = new DefaultClassDataLoader();
+        ClassData clazz = new DirectoryReader(null, loader).parseClass(new ClassDumper(loader), "a/Annotated.class",
+                cw.toByteArray()).get(0);
+        assertEquals(2, clazz.getAnnotations().size());
+        AnnotationData values = clazz.getAnnotation("La/Values;");
+        assertEquals(Arrays.asList("count", "name", "ids", "type", "big", "ratio", "text", "letters"),
+                new ArrayList<String>(values.keySet()));
+        assertEquals(3, values.get("count"));
+        assertEquals("value", values.get("name"));
+        assertTrue(Arrays.equals(new int[] {1, 2}, (int[])values.get("ids")));
+        assertEquals(Type.getType("Ljava/lang/String;"), values.get("type"));
+        assertEquals(Long.MAX_VALUE, values.get("big"));
+        assertEquals(0.5d, values.get("ratio"));
+        assertEquals("caf\u00e9 \u20ac", values.get("text"));
+        assertTrue(Arrays.equals(new char[] {'a', '\u00e9'}, (char[])values.get("letters")));
+        assertTrue(clazz.getAnnotation("La/Marker;").isEmpty());
+        MethodData method = clazz.getMethods().get(0);
+        // the visible annotations come first.
+        assertEquals("Ljavax/annotation/Nonnull;", method.getAnnotations().get(0).getDesc());
+        assertEquals(Boolean.TRUE, method.getAnnotation("La/Values;").get("flag"));
+    }
+
+    @Test
+    public void testDebugInfoReadOnDemand() throws IOException {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, "a/Lines", null, "java/lang/Object", null);
+        cw.visitSource("Lines.java", null);
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "m", "()V", null, null);
+        mv.visitCode();
+        Label first = new Label();
+        mv.visitLabel(first);
+        mv.visitLineNumber(10, first);
+        mv.visitInsn(Opcodes.NOP);
+        Label last = new Label();
+        mv.visitLabel(last);
+        mv.visitLineNumber(12, last);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 1);
+        mv.visitEnd();
+        cw.visitEnd();
+        File dir = Fixtures.directory(Collections.singletonMap("a/Lines.class", cw.toByteArray()));
+        try {
+            DefaultClassDataLoader loader = new DefaultClassDataLoader(null, ParseProfile.API_ONLY);
+            loader.read(dir.toURI());
+            ClassData clazz = loader.fromName("a/Lines");
+            // the source file is read alone first, the line numbers are still read afterwards.
+            assertEquals("Lines.java", clazz.getSource());
+            // the last line of the method is kept, as when parsing the code upfront.
+            assertEquals(12, clazz.getMethods().get(0).getLineNumber());
+            assertEquals("Lines.java", clazz.getSource());
+        } finally {
+            Fixtures.delete(dir);
+        }
+    }
+
+    @Test
+    public void testDebugInfoReadOnceByConcurrentThreads() throws Exception {
+        File dir = Fixtures.directory(getReference());
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            for (ParseProfile profile : ParseProfile.values()) {
+                DefaultClassDataLoader loader = new DefaultClassDataLoader(null, profile);
+                loader.read(dir.toURI());
+                final ClassData clazz = loader.fromName(CLASSNAME);
+                // only the FULL profile parses the debug information upfront.
+                assertEquals(profile == ParseProfile.FULL, !(clazz instanceof ClassFileData));
+                final CountDownLatch start = new CountDownLatch(1);
+                List<Future<String>> sources = new ArrayList<Future<String>>();
+                for (int i = 0; i < 8; i++) {
+                    sources.add(executor.submit(new Callable<String>() {
+                        public String call() throws Exception {
+                            start.await();
+                            return clazz.getSource() + ":" + clazz.getMethods().get(0).getLineNumber();
+                        }
+                    }));
+                }
+                start.countDown();
+                for (Future<String> source : sources) {
+                    assertEquals(profile.name(), "ClassToAbstract.java:" + clazz.getMethods().get(0).getLineNumber(), source.get());
+                }
+                assertTrue(clazz.getMethods().get(0).getLineNumber() > 0);
+            }
+        } finally {
+            executor.shutdown();
+            Fixtures.delete(dir);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import com.googlecode.japi.checker.model.ClassData;
+import com.googlecode.japi.checker.model.MethodData;
+
+public class TestLazyDependencies extends AbstractBCCheckerUnitTest {
+    private static final String CLASSNAME = "com/googlecode/japi/checker/tests/ClassToAbstract";
+
+    @Test
+    public void testLazyDependency() throws IOException {
+        DefaultClassDataLoader loader = new DefaultClassDataLoader();
+        loader.read(getNewVersion().toURI());
+        loader.readDependency(getReference().toURI());
+        // the artifact keeps the precedence over the dependency.
+        assertTrue(loader.fromName(CLASSNAME).isAbstract());
+        assertEquals(1, loader.getShadowedClasses(CLASSNAME).size());
+        assertFalse(loader.getShadowedClasses(CLASSNAME).get(0).isAbstract());
+        // RemovedClass only exists in the reference artifact.
+        ClassData clazz = loader.fromName("com/googlecode/japi/checker/tests/RemovedClass");
+        assertNotNull(clazz);
+        assertSame(clazz, loader.fromName("com/googlecode/japi/checker/tests/RemovedClass"));
+        assertEquals("java/lang/Object", clazz.getSuperName());
+        assertEquals("RemovedClass.java", clazz.getSource());
+        assertTrue(methodNames(clazz).contains("<init>"));
+    }
+
+    @Test
+    public void testLazyDependencyReadErrors() throws IOException {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, "a/Truncated", null, "java/lang/Object", null);
+        cw.visitMethod(Opcodes.ACC_PUBLIC, "m", "()V", null, null).visitEnd();
+        cw.visitEnd();
+        byte[] data = cw.toByteArray();
+        // only the header is left: the access flags, names and interfaces.
+        byte[] truncated = Arrays.copyOf(data, new ClassReader(data).header + 8);
+        Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+        entries.put("a/Broken.class", new byte[] {1, 2, 3});
+        entries.put("a/Truncated.class", truncated);
+        DefaultClassDataLoader loader = new DefaultClassDataLoader();
+        loader.readDependency(Fixtures.jar(entries).toURI());
+        assertNull(loader.fromName("a/Broken"));
+        assertNull(loader.fromName("a/Broken"));
+        ClassData clazz = loader.fromName("a/Truncated");
+        assertEquals("java/lang/Object", clazz.getSuperName());
+        // the members cannot be read, the class is left with its header.
+        assertTrue(clazz.getMethods().isEmpty());
+        assertTrue(clazz.getMethods().isEmpty());
+        List<ReadClassException> errors = loader.takeReadErrors();
+        assertEquals(2, errors.size());
+        assertTrue(errors.get(0).getMessage().startsWith("Error occurred while loading class a/Broken"));
+        assertTrue(errors.get(1).getMessage().startsWith("Error occurred while loading class a/Truncated"));
+        assertTrue(loader.takeReadErrors().isEmpty());
+    }
+
+    @Test
+    public void testClosedDependency() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+        entries.put("a/A.class", Fixtures.classFile("a/A", "java/lang/Object"));
+        entries.put("a/B.class", Fixtures.classFile("a/B", "java/lang/Object"));
+        DefaultClassDataLoader loader = new DefaultClassDataLoader();
+        loader.readDependency(Fixtures.jar(entries).toURI());
+        ClassData clazz = loader.fromName("a/A");
+        loader.close();
+        // the classes parsed before closing remain available.
+        assertSame(clazz, loader.fromName("a/A"));
+        assertNull(loader.fromName("a/B"));
+        List<ReadClassException> errors = loader.takeReadErrors();
+        assertEquals(1, errors.size());
+        assertTrue(errors.get(0).getMessage().startsWith("Error occurred while loading class a/B"));
+    }
+
+    @Test
+    public void testSharedDependencyArchives() throws IOException {
+        SharedArchives archives = new SharedArchives();
+        ClassDataLoaderFactory factory = new DefaultClassDataLoaderFactory(null, ParseProfile.FULL, new SymbolTable(), archives);
+        DefaultClassDataLoader newVersion = (DefaultClassDataLoader)factory.createClassDataLoader();
+        newVersion.read(getNewVersion().toURI());
+        newVersion.readDependency(getReferenceJar().toURI());
+        DefaultClassDataLoader reference = (DefaultClassDataLoader)factory.createClassDataLoader();
+        reference.readDependency(getReferenceJar().toURI());
+        assertEquals(1, archives.size());
+        // the classes are parsed once, by the loader requesting them first.
+        String removed = "com/googlecode/japi/checker/tests/RemovedClass";
+        ClassData clazz = newVersion.fromName(removed);
+        assertSame(clazz, reference.fromName(removed));
+        assertSame(newVersion, clazz.getClassDataLoader());
+        // each loader keeps its own classpath order.
+        assertTrue(newVersion.fromName(CLASSNAME).isAbstract());
+        assertSame(reference.fromName(CLASSNAME), newVersion.getShadowedClasses(CLASSNAME).get(0));
+        assertFalse(reference.fromName(CLASSNAME).isAbstract());
+        // loaders which are not created by the same factory do not share.
+        DefaultClassDataLoader other = new DefaultClassDataLoader();
+        other.readDependency(getReferenceJar().toURI());
+        assertEquals(1, archives.size());
+        assertNotSame(clazz, other.fromName(removed));
+        // the shared archives are closed once the loaders are not used anymore.
+        archives.close();
+        assertEquals(0, archives.size());
+        assertSame(clazz, reference.fromName(removed));
+    }
+
+    @Test
+    public void testSharedClassesResolvedPerSide() throws IOException {
+        ClassWriter cw = new ClassWriter(0);
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, "a/S", null, "java/lang/Object", null);
+        cw.visitMethod(Opcodes.ACC_PUBLIC, "m", "()V", null, null).visitEnd();
+        cw.visitEnd();
+        File referenceDir = Fixtures.directory(Collections.singletonMap("a/S.class", cw.toByteArray()));
+        File newDir = Fixtures.directory(Collections.singletonMap("a/S.class", Fixtures.classFile("a/S", "java/lang/Object")));
+        try {
+            File dependency = Fixtures.jar(Collections.singletonMap("a/D.class", Fixtures.classFile("a/D", "a/S")));
+            ClassDataLoaderFactory factory = new DefaultClassDataLoaderFactory(null, ParseProfile.FULL, new SymbolTable(), new SharedArchives());
+            DefaultClassDataLoader reference = (DefaultClassDataLoader)factory.createClassDataLoader();
+            reference.read(referenceDir.toURI());
+            reference.readDependency(dependency.toURI());
+            DefaultClassDataLoader newVersion = (DefaultClassDataLoader)factory.createClassDataLoader();
+            newVersion.read(newDir.toURI());
+            newVersion.readDependency(dependency.toURI());
+            ClassData clazz = reference.fromName("a/D");
+            assertSame(clazz, newVersion.fromName("a/D"));
+            // the super class is resolved on the side given, not the one which parsed the class.
+            assertTrue(methodNames(RuleHelpers.getClassMethodRecursive(reference, clazz)).contains("m"));
+            assertFalse(methodNames(RuleHelpers.getClassMethodRecursive(newVersion, clazz)).contains("m"));
+            assertTrue(ClassHierarchy.of(newVersion).isSubclassOf("a/D", "a/S"));
+        } finally {
+            Fixtures.delete(referenceDir);
+            Fixtures.delete(newDir);
+        }
+    }
+
+    private static List<String> methodNames(ClassData clazz) {
+        return methodNames(clazz.getMethods());
+    }
+
+    private static List<String> methodNames(List<MethodData> methods) {
+        List<String> result = new ArrayList<String>();
+        for (MethodData method : methods) {
+            result.add(method.getName());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.googlecode.japi.checker.model.ClassData;
+import com.googlecode.japi.checker.model.MethodData;
+
+public class TestSymbolTable extends AbstractBCCheckerUnitTest {
+    private static final String CLASSNAME = "com/googlecode/japi/checker/tests/ClassToAbstract";
+
+    @Test
+    public void testSharedSymbolTable() throws IOException {
+        ClassDataLoaderFactory factory = new DefaultClassDataLoaderFactory(null, ParseProfile.FULL, new SymbolTable());
+        DefaultClassDataLoader reference = (DefaultClassDataLoader)factory.createClassDataLoader();
+        reference.read(getReference().toURI());
+        DefaultClassDataLoader newVersion = (DefaultClassDataLoader)factory.createClassDataLoader();
+        newVersion.readDependency(getNewVersion().toURI());
+        ClassData referenceClass = reference.fromName(CLASSNAME);
+        ClassData newClass = newVersion.fromName(CLASSNAME);
+        assertSame(referenceClass.getName(), newClass.getName());
+        assertSame(referenceClass.getSuperName(), newClass.getSuperName());
+        MethodData referenceMethod = referenceClass.getMethods().get(0);
+        MethodData newMethod = newClass.getMethod(referenceMethod.getName(), referenceMethod.getDescriptor());
+        assertSame(referenceMethod.getName(), newMethod.getName());
+        assertSame(referenceMethod.getDescriptor(), newMethod.getDescriptor());
+        assertSame(SymbolTable.of(reference), SymbolTable.of(newVersion));
+    }
+
+    @Test
+    public void testStreamedClassSymbols() throws IOException {
+        DefaultClassDataLoader loader = new DefaultClassDataLoader();
+        loader.readDependency(getReferenceJar().toURI());
+        LazyJarReader reader = loader.getLazyReader(getReferenceJar().toURI());
+        int size = SymbolTable.of(loader).size();
+        SymbolTable symbols = new SymbolTable();
+        List<ClassData> classes = reader.readClass(reader.newDumperPool(), symbols, CLASSNAME);
+        assertEquals(CLASSNAME, classes.get(0).getName());
+        // the table of the loader does not grow with the streamed classes.
+        assertEquals(size, SymbolTable.of(loader).size());
+        assertSame(symbols.intern(CLASSNAME), classes.get(0).getName());
+    }
+}
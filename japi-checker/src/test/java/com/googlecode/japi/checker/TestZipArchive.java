@@ -0,0 +1,219 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Test;
+
+public class TestZipArchive extends AbstractBCCheckerUnitTest {
+
+    @Test
+    public void testEntriesMatchZipFile() throws IOException {
+        ZipArchive archive = ZipArchive.open(getReferenceJar());
+        ZipFile zip = new ZipFile(getReferenceJar());
+        try {
+            List<String> names = new ArrayList<String>();
+            Enumeration<? extends ZipEntry> e = zip.entries();
+            while (e.hasMoreElements()) {
+                ZipEntry entry = e.nextElement();
+                names.add(entry.getName());
+                assertArrayEquals(entry.getName(), toByteArray(zip.getInputStream(entry)), archive.read(entry.getName()));
+            }
+            assertEquals(names, archive.getEntryNames());
+            assertNull(archive.read("does/not/Exist.class"));
+        } finally {
+            zip.close();
+            archive.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentReads() throws Exception {
+        final ZipArchive archive = ZipArchive.open(getReferenceJar());
+        final List<String> names = archive.getEntryNames();
+        List<byte[]> expected = new ArrayList<byte[]>();
+        for (String name : names) {
+            expected.add(archive.read(name));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<byte[]>>> results = new ArrayList<Future<List<byte[]>>>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(new Callable<List<byte[]>>() {
+                    @Override
+                    public List<byte[]> call() throws IOException {
+                        List<byte[]> contents = new ArrayList<byte[]>();
+                        for (String name : names) {
+                            contents.add(archive.read(name));
+                        }
+                        return contents;
+                    }
+                }));
+            }
+            for (Future<List<byte[]>> result : results) {
+                List<byte[]> contents = result.get();
+                for (int i = 0; i < names.size(); i++) {
+                    assertArrayEquals(names.get(i), expected.get(i), contents.get(i));
+                }
+            }
+        } finally {
+            executor.shutdown();
+            archive.close();
+        }
+        // the inflaters are released, but reading still works.
+        for (int i = 0; i < names.size(); i++) {
+            assertArrayEquals(names.get(i), expected.get(i), archive.read(names.get(i)));
+        }
+    }
+
+    @Test
+    public void testStoredEntriesWithPrependedData() throws IOException {
+        File file = File.createTempFile("japi-checker-", ".jar");
+        file.deleteOnExit();
+        byte[] content = "content".getBytes("UTF-8");
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write("#!/bin/sh\n".getBytes("UTF-8"));
+            ZipOutputStream zos = new ZipOutputStream(fos);
+            ZipEntry entry = new ZipEntry("stored.txt");
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(content.length);
+            entry.setCompressedSize(content.length);
+            CRC32 crc = new CRC32();
+            crc.update(content);
+            entry.setCrc(crc.getValue());
+            zos.putNextEntry(entry);
+            zos.write(content);
+            zos.closeEntry();
+            zos.finish();
+        } finally {
+            fos.close();
+        }
+        assertTrue(Utils.isArchive(file));
+        ZipArchive archive = ZipArchive.open(file);
+        try {
+            assertArrayEquals(content, archive.read("stored.txt"));
+        } finally {
+            archive.close();
+        }
+    }
+
+    @Test
+    public void testIsArchive() throws IOException {
+        assertTrue(Utils.isArchive(getReferenceJar()));
+        assertFalse(Utils.isArchive(getReferenceJar().getParentFile()));
+        File file = File.createTempFile("japi-checker-", ".txt");
+        file.deleteOnExit();
+        assertFalse(Utils.isArchive(file));
+        // a truncated archive still starts with a zip header.
+        byte[] content = toByteArray(new FileInputStream(getReferenceJar()));
+        Fixtures.write(file, Arrays.copyOf(content, content.length / 2));
+        assertFalse(Utils.isArchive(file));
+        Fixtures.write(file, content);
+        assertTrue(Utils.isArchive(file));
+    }
+
+    @Test
+    public void testDuplicateEntries() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+        entries.put("a.txt", "first".getBytes("UTF-8"));
+        entries.put("b.txt", "second".getBytes("UTF-8"));
+        File file = Fixtures.jar(entries);
+        // renaming b.txt in both its local and central headers makes a.txt a duplicate.
+        byte[] content = toByteArray(new FileInputStream(file));
+        String text = new String(content, "ISO-8859-1");
+        for (int i = text.indexOf("b.txt"); i >= 0; i = text.indexOf("b.txt", i + 1)) {
+            content[i] = 'a';
+        }
+        Fixtures.write(file, content);
+        ZipArchive archive = ZipArchive.open(file);
+        ZipFile zip = new ZipFile(file);
+        try {
+            assertEquals(Collections.singletonList("a.txt"), archive.getEntryNames());
+            assertArrayEquals(toByteArray(zip.getInputStream(zip.getEntry("a.txt"))), archive.read("a.txt"));
+            assertArrayEquals("second".getBytes("UTF-8"), archive.read("a.txt"));
+        } finally {
+            zip.close();
+            archive.close();
+        }
+    }
+
+    @Test
+    public void testEntryTooLargeToBeMapped() throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+        entries.put("a.txt", "first".getBytes("UTF-8"));
+        entries.put("b.txt", "second".getBytes("UTF-8"));
+        File file = Fixtures.jar(entries);
+        // a.txt claims an uncompressed size of 2GB in the central directory.
+        byte[] content = toByteArray(new FileInputStream(file));
+        int central = new String(content, "ISO-8859-1").indexOf("PK\1\2");
+        content[central + 24] = 0;
+        content[central + 25] = 0;
+        content[central + 26] = 0;
+        content[central + 27] = (byte)0x80;
+        Fixtures.write(file, content);
+        ZipArchive archive = ZipArchive.open(file);
+        try {
+            // read using a ZipFile instead.
+            assertTrue(archive.keepsFileOpen());
+            assertEquals(Arrays.asList("a.txt", "b.txt"), archive.getEntryNames());
+            assertArrayEquals("second".getBytes("UTF-8"), archive.read("b.txt"));
+        } finally {
+            archive.close();
+        }
+    }
+
+    private static byte[] toByteArray(InputStream is) throws IOException {
+        try {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            byte buffer[] = new byte[2048];
+            int count = 0;
+            while ((count = is.read(buffer)) != -1) {
+                os.write(buffer, 0, count);
+            }
+            return os.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2013 William Bernardet
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.googlecode.japi.checker.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestAntPatternSet {
+    private static final List<String> PATTERNS = Arrays.asList("**/*.class", "**", "com/acme/**",
+            "com/acme/**/*.class", "com/*/api/*.class", "**/Nothing*.class", "com/acme/api/Api?.class",
+            "com/[ab]cme/**", "com/[!a]cme/**", "a**b", "**/impl/**", "com/acme", "Foo.class", "*.class");
+    private static final List<String> PATHS = Arrays.asList("com/acme/api/Api.class", "com/acme/api/Api1.class",
+            "com/acme/impl/Impl.class", "com/bcme/Nothing.class", "com/acme", "com/acmeX/A.class", "Foo.class",
+            "a/b", "ab", "a/x/b", "impl/A.class", "com/acme/api/Nothing2.class", "com/ccme/x/y/Z.class",
+            // non US-ASCII characters are matched by the regular expression of the character classes.
+            "com/\u00e9cme/Api.class");
+
+    @Test
+    public void testSameMatchesAsAntPatternMatcher() {
+        for (String pattern : PATTERNS) {
+            for (boolean caseSensitive : new boolean[] {true, false}) {
+                AntPatternMatcher matcher = new AntPatternMatcher(pattern, caseSensitive);
+                AntPatternSet set = new AntPatternSet(Collections.singletonList(matcher),
+                        Collections.<AntPatternMatcher>emptyList());
+                for (String path : PATHS) {
+                    assertEquals(pattern + " " + path, matcher.matches(path), set.matches(path));
+                    assertEquals(pattern + " " + path, matcher.matches(path.toUpperCase()), set.matches(path.toUpperCase()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIncludesAndExcludes() {
+        List<AntPatternMatcher> includes = new ArrayList<AntPatternMatcher>();
+        for (int i = 0; i < 200; i++) {
+            includes.add(new AntPatternMatcher("com/acme/p" + i + "/**"));
+        }
+        List<AntPatternMatcher> excludes = Arrays.asList(new AntPatternMatcher("**/impl/**"));
+        AntPatternSet set = new AntPatternSet(includes, excludes);
+        assertTrue(set.matches("com/acme/p42/Api.class"));
+        assertTrue(set.matches("com/acme/p199/sub/Api.class"));
+        assertFalse(set.matches("com/acme/p42/impl/Impl.class"));
+        assertFalse(set.matches("com/acme/q42/Api.class"));
+        assertFalse(set.matches("org/Api.class"));
+        assertTrue(new AntPatternSet(Collections.<AntPatternMatcher>emptyList(), excludes).matches("org/Api.class"));
+        assertTrue(new AntPatternSet(Collections.<AntPatternMatcher>emptyList(),
+                Collections.<AntPatternMatcher>emptyList()).isEmpty());
+    }
+
+    @Test
+    public void testCompiledSetsAreReused() {
+        List<AntPatternMatcher> includes = Arrays.asList(new AntPatternMatcher("com/acme/**"));
+        List<AntPatternMatcher> excludes = Arrays.asList(new AntPatternMatcher("**/impl/**"));
+        AntPatternSet set = AntPatternSet.of(includes, excludes);
+        assertSame(set, AntPatternSet.of(Arrays.asList(new AntPatternMatcher("com/acme/**")), excludes));
+        assertNotSame(set, AntPatternSet.of(Arrays.asList(new AntPatternMatcher("com/acme/**", false)), excludes));
+        assertNotSame(set, AntPatternSet.of(excludes, includes));
+        assertTrue(set.matches("com/acme/Api.class"));
+        assertFalse(set.matches("com/acme/impl/Impl.class"));
+    }
+}